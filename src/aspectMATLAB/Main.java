@@ -1,18 +1,32 @@
 package aspectMATLAB;
 
 import Matlab.Nodes.UnitNode;
-import Matlab.Recognizer.INotifier;
 import Matlab.Recognizer.MRecognizer;
 import Matlab.Transformer.NodeToAstTransformer;
-import Matlab.Utils.IReport;
-import Matlab.Utils.Message;
 import Matlab.Utils.Result;
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.driver.BatchWeaver;
+import aspectMATLAB.driver.DiagnosticsCollector;
+import aspectMATLAB.driver.ParseCache;
+import aspectMATLAB.driver.ShardedOutput;
+import aspectMATLAB.driver.WeaveDaemon;
+import aspectMATLAB.driver.WeaveIndex;
 import aspectMATLAB.serialization.decorators.ColumnNumberDecorator;
 import aspectMATLAB.serialization.decorators.LineNumberDecorator;
 import aspectMATLAB.serialization.decorators.OutputSupressedDecorator;
 import aspectMATLAB.serialization.serializers.JSONSerializer;
 import aspectMATLAB.serialization.serializers.XMLSerializer;
+import aspectMATLAB.transformer.aspect.AdviceInliner;
+import aspectMATLAB.transformer.aspect.AspectExprTransformer;
+import aspectMATLAB.transformer.aspect.AspectProgramTransformer;
+import aspectMATLAB.transformer.stmt.examples.BufferedStatementTracing;
+import aspectMATLAB.utils.OverrideVFAnalysis;
+import ast.ASTNode;
+import ast.AspectDef;
 import ast.CompilationUnits;
+import ast.Program;
+import natlab.toolkits.analysis.varorfun.VFAnalysis;
+import org.json.simple.JSONValue;
 import org.w3c.dom.Document;
 
 import javax.xml.transform.OutputKeys;
@@ -22,26 +36,52 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final String ASPECT_OPTION = "--aspect=";
+    private static final String CACHE_OPTION = "--cache=";
+    private static final String INDEX_OPTION = "--index=";
+    private static final String DAEMON_OPTION = "--daemon";
+    private static final String OUTPUT_OPTION = "--output=";
+    private static final String FORMAT_OPTION = "--format=";
+    private static final String TRACE_OPTION = "--trace=";
+    private static final String INLINE_OPTION = "--inline";
+    private static final String CAPTURE_OPTION = "--capture=";
+    private static final String BUFFERED_TRACE = "buffered";
+
+    public static Optional<CompilationUnits> parse(String path, DiagnosticsCollector diagnostics) {
+        Optional.ofNullable(diagnostics).orElseThrow(NullPointerException::new);
+        Result<UnitNode> result = MRecognizer.RecognizeFile(path, true, diagnostics);
+        if (!result.GetIsOk() || result.GetValue() == null || diagnostics.hasFailed(path)) {
+            diagnostics.markFailed(path);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(NodeToAstTransformer.Transform(result.GetValue()));
+    }
+
     public static CompilationUnits parseOrDie(String path) {
-        Result<UnitNode> result = MRecognizer.RecognizeFile(path, true, new INotifier() {
-            @Override
-            public void Notify(String s, IReport iReport) {
-                if (iReport.GetIsOk()) return;
-                System.out.println(String.format("At file %s:", s));
-                for (Message message : iReport) {
-                    System.out.println(String.format("[%3d:%3d]\t%s:%s",
-                            message.GetLine(),
-                            message.GetColumn(),
-                            message.GetSeverity(),
-                            message.GetText()
-                    ));
-                    System.exit(1);
-                }
-            }
-        });
-        return NodeToAstTransformer.Transform(result.GetValue());
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+        Optional<CompilationUnits> compilationUnits = parse(path, diagnostics);
+        if (!compilationUnits.isPresent()) {
+            diagnostics.printReport(System.out);
+            System.exit(1);
+        }
+        return compilationUnits.get();
+    }
+
+    /** print the xml form of the node to the standard output, indented, without building a dom document */
+    public static final void prettyPrint(ASTNode astNode) throws Exception {
+        new XMLSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .setIndentation("    ")
+                .serialize(astNode, System.out);
+        System.out.println();
     }
 
     public static final void prettyPrint(Document xml) throws Exception {
@@ -53,35 +93,202 @@ public class Main {
         System.out.println(out.toString());
     }
 
+    /**
+     * @param inlineThreshold size threshold of inlined advice, {@code null} to disable inlining
+     * @param operandCapture how exposed operands are handed over to advice
+     */
+    private static AspectProgramTransformer buildTransformer(
+            Collection<Action> actions,
+            VFAnalysis kindAnalysis,
+            Integer inlineThreshold,
+            AspectExprTransformer.OperandCapture operandCapture) {
+        AspectProgramTransformer transformer = new AspectProgramTransformer(actions, kindAnalysis)
+                .setOperandCapture(operandCapture);
+        if (inlineThreshold != null) transformer.setAdviceInliner(new AdviceInliner(inlineThreshold));
+        return transformer;
+    }
+
     public static void main(String args[]) throws Exception {
-        final String path = "/Users/k9/Desktop/AspectMATLAB/src/aspectMATLAB/aspect.matlab";
+        List<String> inputs = new LinkedList<>();
+        List<String> aspectInputs = new LinkedList<>();
+        ParseCache parseCache = null;
+        Path indexFile = null;
+        String daemonPort = null;
+        Path outputDirectory = null;
+        Set<ShardedOutput.Format> formats = EnumSet.of(ShardedOutput.Format.PRETTY);
+        boolean bufferedTracing = false;
+        Integer inlineThreshold = null;
+        AspectExprTransformer.OperandCapture operandCapture = AspectExprTransformer.OperandCapture.Copy;
+        for (String arg : args) {
+            if (arg.startsWith(ASPECT_OPTION)) {
+                aspectInputs.add(arg.substring(ASPECT_OPTION.length()));
+            } else if (arg.startsWith(CACHE_OPTION)) {
+                parseCache = new ParseCache(Paths.get(arg.substring(CACHE_OPTION.length())));
+            } else if (arg.startsWith(INDEX_OPTION)) {
+                indexFile = Paths.get(arg.substring(INDEX_OPTION.length()));
+            } else if (arg.equals(DAEMON_OPTION)) {
+                daemonPort = "";
+            } else if (arg.startsWith(DAEMON_OPTION + "=")) {
+                daemonPort = arg.substring(DAEMON_OPTION.length() + 1);
+            } else if (arg.startsWith(OUTPUT_OPTION)) {
+                outputDirectory = Paths.get(arg.substring(OUTPUT_OPTION.length()));
+            } else if (arg.startsWith(FORMAT_OPTION)) {
+                formats = EnumSet.noneOf(ShardedOutput.Format.class);
+                for (String format : arg.substring(FORMAT_OPTION.length()).split(",")) {
+                    formats.add(ShardedOutput.Format.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                }
+            } else if (arg.startsWith(TRACE_OPTION)) {
+                if (!arg.substring(TRACE_OPTION.length()).equals(BUFFERED_TRACE)) {
+                    throw new IllegalArgumentException(String.format("unknown trace mode: %s", arg));
+                }
+                bufferedTracing = true;
+            } else if (arg.equals(INLINE_OPTION)) {
+                inlineThreshold = AdviceInliner.DEFAULT_SIZE_THRESHOLD;
+            } else if (arg.startsWith(INLINE_OPTION + "=")) {
+                inlineThreshold = Integer.parseInt(arg.substring(INLINE_OPTION.length() + 1));
+            } else if (arg.startsWith(CAPTURE_OPTION)) {
+                String capture = arg.substring(CAPTURE_OPTION.length());
+                operandCapture = Arrays.stream(AspectExprTransformer.OperandCapture.values())
+                        .filter(value -> value.name().equalsIgnoreCase(capture))
+                        .findFirst()
+                        .orElseThrow(() ->
+                                new IllegalArgumentException(String.format("unknown capture mode: %s", arg)));
+            } else {
+                inputs.add(arg);
+            }
+        }
+
+        Integer adviceInlineThreshold = inlineThreshold;
+        AspectExprTransformer.OperandCapture adviceOperandCapture = operandCapture;
+        if (daemonPort != null) {
+            WeaveDaemon daemon = new WeaveDaemon(
+                    (daemonActions, kindAnalysis) ->
+                            buildTransformer(daemonActions, kindAnalysis, adviceInlineThreshold, adviceOperandCapture),
+                    false,
+                    parseCache,
+                    Runtime.getRuntime().availableProcessors()
+            );
+            if (daemonPort.isEmpty()) {
+                daemon.serve(System.in, System.out);
+            } else {
+                daemon.serve(Integer.parseInt(daemonPort));
+            }
+            return;
+        }
+
+        if (inputs.isEmpty()) {
+            System.err.println(String.format(
+                    "usage: aspectMATLAB [%s<directory>] [%s[=<threshold>]] [%scopy|reference] " +
+                            "(%s[=<port>] | [%s<file>] [%s<aspect file or directory> ...] " +
+                            "[%s%s] [%s<directory> [%spretty,json,binary]] <file or directory> ...)",
+                    CACHE_OPTION,
+                    INLINE_OPTION,
+                    CAPTURE_OPTION,
+                    DAEMON_OPTION,
+                    INDEX_OPTION,
+                    ASPECT_OPTION,
+                    TRACE_OPTION,
+                    BUFFERED_TRACE,
+                    OUTPUT_OPTION,
+                    FORMAT_OPTION
+            ));
+            System.exit(1);
+        }
+
+        List<String> paths = BatchWeaver.collectSourceFiles(inputs);
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+
+        List<Action> actions = new LinkedList<>();
+        Map<String, String> actionFingerprints = new HashMap<>();
+        for (String aspectPath : BatchWeaver.collectSourceFiles(aspectInputs)) {
+            Optional<CompilationUnits> aspectUnits = (parseCache == null) ?
+                    parse(aspectPath, diagnostics) :
+                    parseCache.parse(aspectPath, diagnostics);
+            if (!aspectUnits.isPresent()) continue;
+            actions.addAll(BatchWeaver.collectActions(aspectPath, aspectUnits.get()));
+            for (Program program : aspectUnits.get().getProgramList()) {
+                if (program instanceof AspectDef) {
+                    actionFingerprints.putAll(WeaveIndex.actionFingerprints((AspectDef) program));
+                }
+            }
+        }
+        if (!diagnostics.isOk()) {
+            diagnostics.printReport(System.err);
+            System.exit(1);
+        }
+
+        /* without actions, units are only parsed */
+        BatchWeaver weaver = new BatchWeaver(actions.isEmpty() ? null : compilationUnits ->
+                buildTransformer(
+                        actions,
+                        OverrideVFAnalysis.analyzeKinds(compilationUnits),
+                        adviceInlineThreshold,
+                        adviceOperandCapture
+                )
+        ).setParseCache(parseCache);
 
-        CompilationUnits compilationUnits = parseOrDie(path);
+        /* the index keeps the woven units, programs found up to date are reused rather than woven again */
+        WeaveIndex weaveIndex = null;
+        if (indexFile != null) {
+            weaveIndex = WeaveIndex.load(indexFile).setActionFingerprints(actionFingerprints).setActions(actions);
+            weaver.setWeaveIndex(weaveIndex);
+        }
 
-        /*
-        InplaceProgramTransformer<StatementTracing, InplacePatternTransformer> transformer = new InplaceProgramTransformer<>(
-                new StatementTracing(),
-                new InplacePatternTransformer()
-        );
-        */
+        Map<String, CompilationUnits> compilationUnitsMap = weaver.weave(paths, diagnostics);
+        if (weaveIndex != null) weaveIndex.save(indexFile);
 
-        compilationUnits.setIndentTab("    ");
+        /* join point ids are shared by every traced program, their table is written along the programs */
+        BufferedStatementTracing tracing = null;
+        if (bufferedTracing) {
+            tracing = new BufferedStatementTracing();
+            for (Map.Entry<String, CompilationUnits> entry : compilationUnitsMap.entrySet()) {
+                tracing.instrument(entry.getKey(), entry.getValue());
+            }
+        }
 
-        //transformer.transform(compilationUnits);
-        System.out.println(compilationUnits.getPrettyPrinted());
+        if (outputDirectory != null) {
+            ShardedOutput output = new ShardedOutput(outputDirectory, formats, weaver.getParallelism())
+                    .setJSONSerializer(new JSONSerializer()
+                            .appendNumberDecorator(new ColumnNumberDecorator())
+                            .appendNumberDecorator(new LineNumberDecorator())
+                            .appendBooleanDecorator(new OutputSupressedDecorator()));
+            output.write(compilationUnitsMap, diagnostics);
+            if (tracing != null) output.writeTraceTable(tracing.getJoinPointTable());
+            if (!diagnostics.isOk()) {
+                diagnostics.printReport(System.err);
+                System.exit(1);
+            }
+            return;
+        }
 
         JSONSerializer serializerJSON = new JSONSerializer()
                 .appendNumberDecorator(new ColumnNumberDecorator())
                 .appendNumberDecorator(new LineNumberDecorator())
-                .appendBooleanDecorator(new OutputSupressedDecorator());
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .setForkJoinPool(ForkJoinPool.commonPool());
         XMLSerializer serializerXML = new XMLSerializer()
                 .appendNumberDecorator(new ColumnNumberDecorator())
                 .appendNumberDecorator(new LineNumberDecorator())
-                .appendBooleanDecorator(new OutputSupressedDecorator());
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .setForkJoinPool(ForkJoinPool.commonPool());
+
+        for (CompilationUnits compilationUnits : compilationUnitsMap.values()) {
+            compilationUnits.setIndentTab("    ");
+            System.out.println(compilationUnits.getPrettyPrinted());
 
-        System.out.println(serializerJSON.serializeAsString(compilationUnits));
+            serializerJSON.serialize(compilationUnits, System.out);
+            System.out.println();
 
-        System.out.println(serializerXML.serializeAsString(compilationUnits));
+            serializerXML.serialize(compilationUnits, System.out);
+            System.out.println();
+        }
+        if (tracing != null) {
+            System.out.println(JSONValue.toJSONString(tracing.getJoinPointTable()));
+        }
 
+        if (!diagnostics.isOk()) {
+            diagnostics.printReport(System.err);
+            System.exit(1);
+        }
     }
 }
@@ -4,9 +4,9 @@ import aspectMATLAB.abstractPattern.utils.ContentExposureType;
 import aspectMATLAB.abstractPattern.utils.WeaveType;
 import ast.*;
 import aspectMATLAB.joinpoint.AMSourceCodePos;
-import aspectMATLAB.transformer.pattern.ExpandPatternTransformer;
 import aspectMATLAB.utils.CompilationInfo;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Optional;
@@ -22,10 +22,22 @@ public final class Action {
     private final Set<Function> nestedFunctionSet = new HashSet<>();
     private final List<Stmt> statementList = new List<>();
     private final Set<ContentExposureType> contentExposures = new HashSet<>();
+    private final Set<String> aspectMemberNameSet = new HashSet<>();
     private final WeaveType weaveType;
     private final String name;
+    private final String qualifiedName;
 
     public Action(ast.Action action, HashMap<String, Expr> predefinedPattern, CompilationInfo compilationInfo) {
+        this(action, new PatternExpansionCache(predefinedPattern), compilationInfo);
+    }
+
+    /**
+     * @param action action AST node
+     * @param expansionCache named pattern expansion shared by the actions of the enclosing aspect
+     * @param compilationInfo compilation information
+     */
+    public Action(ast.Action action, PatternExpansionCache expansionCache, CompilationInfo compilationInfo) {
+        Optional.ofNullable(expansionCache).orElseThrow(NullPointerException::new);
         startLineNumber = Optional.ofNullable(action).orElseThrow(NullPointerException::new).getStartLine();
         startColumnNumber = Optional.ofNullable(action).orElseThrow(NullPointerException::new).getStartColumn();
         enclosingFilename = Optional
@@ -34,10 +46,7 @@ public final class Action {
                 .getASTNodeEnclosingFile(action);
         Expr patternExpression = Optional.ofNullable(action.getExpr()).orElseThrow(IllegalArgumentException::new);
 
-        ExpandPatternTransformer transformer = new ExpandPatternTransformer(predefinedPattern);
-        patternExpression = transformer.transform(patternExpression);
-
-        pattern = Pattern.buildAbstractPattern(patternExpression, enclosingFilename);
+        pattern = expansionCache.getPattern(patternExpression, enclosingFilename);
 
         Optional.ofNullable(action.getNestedFunctionList()).orElseGet(List::new).forEach(nestedFunctionSet::add);
         Optional.ofNullable(action.getStmtList()).orElseGet(List::new).forEach(statementList::add);
@@ -47,6 +56,18 @@ public final class Action {
 
         weaveType = WeaveType.fromString(action.getType());
         name = action.getName();
+
+        ASTNode enclosingNode = action.getParent();
+        while (enclosingNode != null && !(enclosingNode instanceof AspectDef)) enclosingNode = enclosingNode.getParent();
+        qualifiedName = (enclosingNode == null) ? name : String.format("%s.%s", ((AspectDef) enclosingNode).getName(), name);
+        if (enclosingNode != null) {
+            for (Properties properties : ((AspectDef) enclosingNode).getPropertyList()) {
+                properties.getPropertyList().forEach(property -> aspectMemberNameSet.add(property.getName()));
+            }
+            for (Methods methods : ((AspectDef) enclosingNode).getMethodList()) {
+                methods.getFunctionList().forEach(function -> aspectMemberNameSet.add(function.getName().getID()));
+            }
+        }
     }
 
     @SuppressWarnings("deprecation")
@@ -58,10 +79,36 @@ public final class Action {
         return statementList;
     }
 
+    public Set<Function> getNestedFunctionSet() {
+        return Collections.unmodifiableSet(nestedFunctionSet);
+    }
+
+    /** names of the properties and methods of the enclosing aspect, which the statements of the action may refer to */
+    public Set<String> getAspectMemberNameSet() {
+        return Collections.unmodifiableSet(aspectMemberNameSet);
+    }
+
     public Pattern getPattern() {
         return pattern;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    /** action name qualified by the name of its enclosing aspect, e.g. {@code aspect.action} */
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    public WeaveType getWeaveType() {
+        return weaveType;
+    }
+
+    public Set<ContentExposureType> getContentExposures() {
+        return Collections.unmodifiableSet(contentExposures);
+    }
+
     @Override
     public String toString() {
         StringBuffer stringBuffer = new StringBuffer();
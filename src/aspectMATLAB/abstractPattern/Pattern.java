@@ -9,6 +9,7 @@ import ast.ASTNode;
 import ast.Expr;
 import aspectMATLAB.joinpoint.AMSourceCodePos;
 
+import java.util.Map;
 import java.util.Optional;
 
 /** a abstract representation on the patternExpand */
@@ -79,12 +80,12 @@ public abstract class Pattern{
      */
     public static Pattern buildAbstractPattern(Expr patternExpression, String enclosingFilename) {
         if (patternExpression == null) throw new NullPointerException();
-        if (!PatternType.isPatternExpression(patternExpression)) throw new IllegalArgumentException();
-        PatternTypeAnalysis analysisResult = PatternTypeAnalysis.analyze(patternExpression);
+        Map<Expr, PatternTypeAnalysis> analysisResultMap = PatternTypeAnalysis.analyzeAll(patternExpression);
+        PatternTypeAnalysis analysisResult = analysisResultMap.get(patternExpression);
         if (analysisResult == PatternTypeAnalysis.Modifier)
-            return Modifier.buildAbstractModifier(patternExpression, enclosingFilename);
+            return Modifier.buildAbstractModifier(patternExpression, enclosingFilename, analysisResultMap);
         if (analysisResult == PatternTypeAnalysis.Primitive)
-            return Primitive.buildAbstractPrimitive(patternExpression, enclosingFilename);
+            return Primitive.buildAbstractPrimitive(patternExpression, enclosingFilename, analysisResultMap);
         assert analysisResult == PatternTypeAnalysis.Invalid;
         throw new IllegalArgumentException();
     }
@@ -0,0 +1,114 @@
+package aspectMATLAB.abstractPattern;
+
+import aspectMATLAB.transformer.CyclicPatternName;
+import aspectMATLAB.transformer.UnboundedPatternName;
+import aspectMATLAB.transformer.pattern.CopyPatternTransformer;
+import ast.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * memoized expansion of the named patterns declared in an aspect, shared by all the actions of the aspect.
+ * each named pattern is expanded (named patterns it refers to included) and built into an abstract pattern
+ * at most once, hence loading an aspect does not grow with the number of actions times the nesting depth of
+ * the named patterns.
+ */
+public final class PatternExpansionCache {
+    private final Map<String, Expr> predefinedPattern;
+    private final Map<String, Expr> expandedMap = new HashMap<>();
+    private final Map<String, Map<String, Pattern>> patternMap = new HashMap<>();
+    private final java.util.Set<String> expandingSet = new HashSet<>();
+
+    private final class Expander extends CopyPatternTransformer {
+        @Override
+        protected Expr caseName(PatternName patternName) {
+            return getExpandedExpr(patternName).treeCopy();
+        }
+    }
+
+    /**
+     * @param predefinedPattern named patterns, keyed by name
+     * @throws NullPointerException if {@code predefinedPattern} is {@code null}
+     */
+    public PatternExpansionCache(Map<String, Expr> predefinedPattern) {
+        this.predefinedPattern = new HashMap<>(
+                Optional.ofNullable(predefinedPattern).orElseThrow(NullPointerException::new)
+        );
+    }
+
+    /**
+     * @param aspectDef aspect declaring the named patterns
+     * @return expansion cache over the named patterns of the aspect
+     * @throws NullPointerException if {@code aspectDef} is {@code null}
+     */
+    public static PatternExpansionCache fromAspect(AspectDef aspectDef) {
+        Map<String, Expr> predefinedPattern = new HashMap<>();
+        for (Patterns patterns : Optional.ofNullable(aspectDef).orElseThrow(NullPointerException::new).getPatternList()) {
+            for (ast.Pattern pattern : patterns.getPatternList()) {
+                predefinedPattern.put(pattern.getName(), pattern.getExpr());
+            }
+        }
+        return new PatternExpansionCache(predefinedPattern);
+    }
+
+    /**
+     * expand the named patterns in a pattern expression, a bare named pattern yields the shared expansion, which
+     * must not be modified, otherwise a fresh copy is returned
+     * @param patternExpression pattern expression
+     * @return expanded pattern expression
+     * @throws NullPointerException if {@code patternExpression} is {@code null}
+     * @throws UnboundedPatternName if the expression refers to an undeclared named pattern
+     * @throws CyclicPatternName if named patterns refer to each other cyclically
+     */
+    public synchronized Expr expand(Expr patternExpression) {
+        Optional.ofNullable(patternExpression).orElseThrow(NullPointerException::new);
+        if (patternExpression instanceof PatternName) return getExpandedExpr((PatternName) patternExpression);
+        return new Expander().transform(patternExpression);
+    }
+
+    /**
+     * build the abstract pattern of a pattern expression, the abstract pattern of a bare named pattern is built
+     * once and shared
+     * @param patternExpression pattern expression
+     * @param enclosingFilename enclosing aspect file path
+     * @return abstract pattern
+     * @throws NullPointerException if {@code patternExpression} or {@code enclosingFilename} is {@code null}
+     * @throws UnboundedPatternName if the expression refers to an undeclared named pattern
+     * @throws CyclicPatternName if named patterns refer to each other cyclically
+     */
+    public synchronized Pattern getPattern(Expr patternExpression, String enclosingFilename) {
+        Optional.ofNullable(patternExpression).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(enclosingFilename).orElseThrow(NullPointerException::new);
+        if (!(patternExpression instanceof PatternName)) {
+            return Pattern.buildAbstractPattern(expand(patternExpression), enclosingFilename);
+        }
+
+        String name = ((PatternName) patternExpression).getName().getID();
+        Map<String, Pattern> builtMap = patternMap.computeIfAbsent(name, key -> new HashMap<>());
+        Pattern pattern = builtMap.get(enclosingFilename);
+        if (pattern == null) {
+            pattern = Pattern.buildAbstractPattern(getExpandedExpr((PatternName) patternExpression), enclosingFilename);
+            builtMap.put(enclosingFilename, pattern);
+        }
+        return pattern;
+    }
+
+    private Expr getExpandedExpr(PatternName patternName) {
+        String name = patternName.getName().getID();
+        Expr expanded = expandedMap.get(name);
+        if (expanded != null) return expanded;
+
+        if (!predefinedPattern.containsKey(name)) throw new UnboundedPatternName(patternName);
+        if (!expandingSet.add(name)) throw new CyclicPatternName(patternName);
+        try {
+            expanded = new Expander().transform(predefinedPattern.get(name));
+        } finally {
+            expandingSet.remove(name);
+        }
+        expandedMap.put(name, expanded);
+        return expanded;
+    }
+}
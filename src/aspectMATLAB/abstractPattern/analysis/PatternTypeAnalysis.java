@@ -4,6 +4,8 @@ import ast.*;
 import aspectMATLAB.utils.LiteralBuilder;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /** patternExpand type analysis */
@@ -169,4 +171,47 @@ public enum PatternTypeAnalysis {
             throw new AssertionError();
         }
     }
+
+    /**
+     * perform patternExpand type analysis on every node of a given patternExpand in a single bottom-up pass, so that
+     * building the abstract patternExpand does not analyze the same subtree repeatedly.
+     * @param pattern patternExpand to be analyzed
+     * @return the patternExpand type of every node of the patternExpand, keyed by node identity
+     * @throws IllegalArgumentException if the input argument is not a patternExpand expression
+     */
+    public static Map<Expr, PatternTypeAnalysis> analyzeAll(Expr pattern) {
+        Map<Expr, PatternTypeAnalysis> resultMap = new IdentityHashMap<>();
+        analyzeAll(pattern, resultMap);
+        return resultMap;
+    }
+
+    private static PatternTypeAnalysis analyzeAll(Expr pattern, Map<Expr, PatternTypeAnalysis> resultMap) {
+        PatternTypeAnalysis result;
+        if (PatternType.isBasicPatternExpression(pattern)) {
+            PatternType patternType = PatternType.fromASTNodes(pattern.getClass());
+            if (primitivePatternSet.contains(patternType)) {
+                result = Primitive;
+            } else if (modifierPatternSet.contains(patternType)) {
+                result = Modifier;
+            } else {
+                /* control flow should not reach here */
+                throw new AssertionError();
+            }
+        } else if (pattern instanceof AndExpr) {
+            PatternTypeAnalysis lhs = analyzeAll(((AndExpr) pattern).getLHS(), resultMap);
+            PatternTypeAnalysis rhs = analyzeAll(((AndExpr) pattern).getRHS(), resultMap);
+            result = andMerge(lhs, rhs);
+        } else if (pattern instanceof OrExpr) {
+            PatternTypeAnalysis lhs = analyzeAll(((OrExpr) pattern).getLHS(), resultMap);
+            PatternTypeAnalysis rhs = analyzeAll(((OrExpr) pattern).getRHS(), resultMap);
+            result = orMerge(lhs, rhs);
+        } else if (pattern instanceof NotExpr) {
+            PatternTypeAnalysis operand = analyzeAll(((NotExpr) pattern).getOperand(), resultMap);
+            result = notMerge(operand);
+        } else {
+            throw new IllegalArgumentException();
+        }
+        resultMap.put(pattern, result);
+        return result;
+    }
 }
@@ -6,6 +6,7 @@ import aspectMATLAB.abstractPattern.analysis.PatternTypeAnalysis;
 import ast.*;
 import aspectMATLAB.utils.MergableHashSet;
 
+import java.util.Map;
 import java.util.function.Function;
 
 /** an abstract representation on the modifier patternExpand */
@@ -38,11 +39,36 @@ public abstract class Modifier extends Pattern {
      * @throws IllegalArgumentException if {@code patternExpression} do not resolve as {@code Modifier} from
      *                                  {@link PatternTypeAnalysis#analyze(Expr)}
      */
-    @SuppressWarnings("deprecation")
     public static Modifier buildAbstractModifier(Expr patternExpression, String enclosingFilename) {
         if (patternExpression == null) throw new NullPointerException();
         if (!PatternType.isPatternExpression(patternExpression)) throw new IllegalArgumentException();
-        if (PatternTypeAnalysis.analyze(patternExpression) != PatternTypeAnalysis.Modifier) {
+        return buildAbstractModifier(
+                patternExpression,
+                enclosingFilename,
+                PatternTypeAnalysis.analyzeAll(patternExpression)
+        );
+    }
+
+    /**
+     * build abstract modifier patternExpand from patten expression, using precomputed patternExpand type analysis
+     * results
+     * @param patternExpression patternExpand expression
+     * @param enclosingFilename enclosing aspect file path
+     * @param analysisResultMap patternExpand type of every node of {@code patternExpression}, see
+     *                          {@link PatternTypeAnalysis#analyzeAll(Expr)}
+     * @return the constructed abstract modifier patternExpand
+     * @throws NullPointerException if {@code patternExpression} or {@code analysisResultMap} is {@code null}
+     * @throws IllegalArgumentException if {@code patternExpression} do not resolve as {@code Modifier} in
+     *                                  {@code analysisResultMap}
+     */
+    @SuppressWarnings("deprecation")
+    public static Modifier buildAbstractModifier(
+            Expr patternExpression,
+            String enclosingFilename,
+            Map<Expr, PatternTypeAnalysis> analysisResultMap) {
+        if (patternExpression == null) throw new NullPointerException();
+        if (analysisResultMap == null) throw new NullPointerException();
+        if (analysisResultMap.get(patternExpression) != PatternTypeAnalysis.Modifier) {
             throw new IllegalArgumentException();
         }
 
@@ -53,18 +79,22 @@ public abstract class Modifier extends Pattern {
         if (patternExpression instanceof PatternWithin)
             return new Scope((PatternWithin) patternExpression, enclosingFilename);
         if (patternExpression instanceof AndExpr) {
-            Modifier lhsModifier = buildAbstractModifier(((AndExpr) patternExpression).getLHS(), enclosingFilename);
-            Modifier rhsModifier = buildAbstractModifier(((AndExpr) patternExpression).getRHS(), enclosingFilename);
+            Modifier lhsModifier = buildAbstractModifier(((AndExpr) patternExpression).getLHS(), enclosingFilename,
+                    analysisResultMap);
+            Modifier rhsModifier = buildAbstractModifier(((AndExpr) patternExpression).getRHS(), enclosingFilename,
+                    analysisResultMap);
             return new ModifierAnd(lhsModifier, rhsModifier, enclosingFilename);
         }
         if (patternExpression instanceof OrExpr) {
-            Modifier lhsModifier = buildAbstractModifier(((OrExpr) patternExpression).getLHS(), enclosingFilename);
-            Modifier rhsModifier = buildAbstractModifier(((OrExpr) patternExpression).getRHS(), enclosingFilename);
+            Modifier lhsModifier = buildAbstractModifier(((OrExpr) patternExpression).getLHS(), enclosingFilename,
+                    analysisResultMap);
+            Modifier rhsModifier = buildAbstractModifier(((OrExpr) patternExpression).getRHS(), enclosingFilename,
+                    analysisResultMap);
             return new ModifierOr(lhsModifier, rhsModifier, enclosingFilename);
         }
         if (patternExpression instanceof NotExpr) {
             Modifier operandModifier = buildAbstractModifier(((NotExpr) patternExpression).getOperand(),
-                    enclosingFilename);
+                    enclosingFilename, analysisResultMap);
             return new ModifierNot(operandModifier, enclosingFilename);
         }
         /* control flow should not reach here */
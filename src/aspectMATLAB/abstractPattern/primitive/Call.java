@@ -7,6 +7,9 @@ import ast.*;
 import natlab.toolkits.analysis.varorfun.VFDatum;
 import aspectMATLAB.transformer.TransformQueryEnv;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -88,6 +91,21 @@ public final class Call extends Primitive {
         return false;
     }
 
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return new HashSet<>(Arrays.asList(NameExpr.class, ParameterizedExpr.class));
+    }
+
+    @Override
+    public Optional<java.util.Set<String>> getIdentifierKeys() {
+        if (identifier.equals("*")) return Optional.empty();
+        return Optional.of(Collections.singleton(identifier));
+    }
+
     @Override
     public String toString() {
         StringBuilder inputSignatureBuffer = new StringBuilder();
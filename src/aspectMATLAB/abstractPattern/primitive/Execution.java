@@ -4,7 +4,10 @@ import Matlab.Utils.IReport;
 import Matlab.Utils.Report;
 import aspectMATLAB.abstractPattern.signature.FullSignature;
 import ast.PatternExecution;
+import ast.ASTNode;
+import ast.Function;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -69,6 +72,11 @@ public final class Execution extends Primitive {
         return report;
     }
 
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return Collections.singleton(Function.class);
+    }
+
     @Override
     public String toString() {
         StringBuilder inputSignatureBuffer = new StringBuilder();
@@ -6,6 +6,9 @@ import ast.*;
 import natlab.toolkits.analysis.varorfun.VFDatum;
 import aspectMATLAB.transformer.TransformQueryEnv;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 
 /** an abstract representation on the get patternExpand */
@@ -133,6 +136,21 @@ public final class Get extends Primitive {
         }
     }
 
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return new HashSet<>(Arrays.asList(NameExpr.class, ParameterizedExpr.class, CellIndexExpr.class, DotExpr.class));
+    }
+
+    @Override
+    public Optional<java.util.Set<String>> getIdentifierKeys() {
+        if (identifier.equals("*")) return Optional.empty();
+        return Optional.of(Collections.singleton(identifier));
+    }
+
     @Override
     public String toString() {
         return getModifierToString(String.format("get(%s:%s)", identifier, fullSignature.toString()));
@@ -6,7 +6,12 @@ import aspectMATLAB.abstractPattern.utils.LoopType;
 import ast.Name;
 import ast.PatternLoop;
 import ast.PatternLoopBody;
+import ast.ASTNode;
+import ast.ForStmt;
+import ast.WhileStmt;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Optional;
 
 /** an abstract representation on the loop body patternExpand */
@@ -67,6 +72,11 @@ public final class LoopBody extends Primitive {
         return report;
     }
 
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return new HashSet<>(Arrays.asList(ForStmt.class, WhileStmt.class));
+    }
+
     @Override
     public String toString() {
         return getModifierToString(String.format("loopbody(%s:%s)", loopType.toString(), identifier));
@@ -5,7 +5,12 @@ import Matlab.Utils.Report;
 import aspectMATLAB.abstractPattern.utils.LoopType;
 import ast.Name;
 import ast.PatternLoopHead;
+import ast.ASTNode;
+import ast.ForStmt;
+import ast.WhileStmt;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Optional;
 
 /** an abstract representation on the loop head patternExpand */
@@ -65,6 +70,11 @@ public final class LoopHead extends Primitive {
         return report;
     }
 
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return new HashSet<>(Arrays.asList(ForStmt.class, WhileStmt.class));
+    }
+
     @Override
     public String toString() {
         return getModifierToString(String.format("loophead(%s:%s)", loopType.toString(), identifier));
@@ -3,6 +3,10 @@ package aspectMATLAB.abstractPattern.primitive;
 import Matlab.Utils.IReport;
 import Matlab.Utils.Report;
 import ast.PatternMainExecution;
+import ast.ASTNode;
+import ast.Script;
+
+import java.util.Collections;
 
 /** an abstract representation on the main execution patternExpand */
 public final class MainExecution extends Primitive {
@@ -26,6 +30,11 @@ public final class MainExecution extends Primitive {
         return new Report();
     }
 
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return Collections.singleton(Script.class);
+    }
+
     @Override
     public String toString() {
         return getModifierToString("mainexecution()");
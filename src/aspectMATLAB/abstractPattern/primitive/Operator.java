@@ -5,19 +5,15 @@ import Matlab.Utils.Report;
 import aspectMATLAB.abstractPattern.signature.FullSignature;
 import aspectMATLAB.abstractPattern.utils.OperatorType;
 import ast.*;
-import org.javatuples.Pair;
-import org.javatuples.Tuple;
-import org.javatuples.Unit;
 import aspectMATLAB.transformer.TransformQueryEnv;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Collections;
 import java.util.Optional;
 
 /** an abstract representation on the operator patternExpand */
 public final class Operator extends Primitive {
     private final OperatorType operatorType;
-    private final Tuple operandSignautre;
+    private final FullSignature[] operandSignatures;
 
     /**
      * construct from {@link PatternOperator} AST node. If the operator patternExpand do not provide enough operand
@@ -42,7 +38,7 @@ public final class Operator extends Primitive {
             ast.FullSignature rawOperandSignature = Optional
                     .ofNullable(((PatternOperator) originalPattern).getFullSignature(0))
                     .orElseGet(ast.FullSignature::new);
-            operandSignautre = new Unit<>(new FullSignature(rawOperandSignature, enclosingFilename));
+            operandSignatures = new FullSignature[]{new FullSignature(rawOperandSignature, enclosingFilename)};
         } else {
             assert ((PatternOperator) originalPattern).getNumFullSignature() == 2;
             ast.FullSignature rawLHSSignature = Optional
@@ -51,10 +47,10 @@ public final class Operator extends Primitive {
             ast.FullSignature rawRHSSignature = Optional
                     .ofNullable(((PatternOperator) originalPattern).getFullSignature(1))
                     .orElseGet(ast.FullSignature::new);
-            operandSignautre = new Pair<>(
+            operandSignatures = new FullSignature[]{
                     new FullSignature(rawLHSSignature, enclosingFilename),
                     new FullSignature(rawRHSSignature, enclosingFilename)
-            );
+            };
         }
     }
 
@@ -78,9 +74,8 @@ public final class Operator extends Primitive {
                     "wildcard [..] is not a valid matcher in operator patternExpand for operator type, use [*] instead"
             );
         }
-        for (Object signature : operandSignautre.toList()) {
-            assert signature instanceof FullSignature;
-            if ("".equals(((FullSignature) signature).getTypeSignature().getSignature())) {
+        for (FullSignature signature : operandSignatures) {
+            if ("".equals(signature.getTypeSignature().getSignature())) {
                 report.AddError(
                         enclosingFilename,
                         startLineNumber, startColumnNumber,
@@ -133,15 +128,36 @@ public final class Operator extends Primitive {
         }
     }
 
+    public OperatorType getOperatorType() {
+        return operatorType;
+    }
+
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        switch (operatorType) {
+            case Plus:      return Collections.singleton(PlusExpr.class);
+            case Minus:     return Collections.singleton(MinusExpr.class);
+            case mTimes:    return Collections.singleton(MTimesExpr.class);
+            case Time:      return Collections.singleton(ETimesExpr.class);
+            case mrDivide:  return Collections.singleton(MDivExpr.class);
+            case rDivide:   return Collections.singleton(EDivExpr.class);
+            case mlDivide:  return Collections.singleton(MLDivExpr.class);
+            case lDivide:   return Collections.singleton(ELDivExpr.class);
+            case mPower:    return Collections.singleton(MPowExpr.class);
+            case Power:     return Collections.singleton(EPowExpr.class);
+            case Transpose: return Collections.singleton(ArrayTransposeExpr.class);
+            case mTranspose:return Collections.singleton(MTransposeExpr.class);
+        }
+        /* control flow should not reach here */
+        throw new AssertionError();
+    }
+
     @Override
     public String toString() {
         StringBuilder operandBuffer = new StringBuilder();
-        List<FullSignature> operandSignatureList = new LinkedList<>();
-        operandSignautre.toList().stream()
-                .forEachOrdered(signature -> operandSignatureList.add((FullSignature) signature));
-        for (int index = 0; index < operandSignatureList.size(); index++) {
-            operandBuffer.append(operandSignatureList.get(index).toString());
-            if (index + 1 < operandSignatureList.size()) operandBuffer.append(", ");
+        for (int index = 0; index < operandSignatures.length; index++) {
+            operandBuffer.append(operandSignatures[index].toString());
+            if (index + 1 < operandSignatures.length) operandBuffer.append(", ");
         }
         return getModifierToString(
                 String.format("op(%s:%s)", operatorType.toString(), operandBuffer.toString())
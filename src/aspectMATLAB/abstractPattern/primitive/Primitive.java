@@ -69,11 +69,36 @@ public abstract class Primitive extends Pattern {
      * @throws IllegalArgumentException if {@code patternExpression} do not resolve as {@code Primitive} from
      *                                  {@link PatternTypeAnalysis#analyze(Expr)}
      */
-    @SuppressWarnings("deprecation")
     public static Primitive buildAbstractPrimitive(Expr patternExpression, String enclosingFilename) {
         if (patternExpression == null) throw new NullPointerException();
         if (!PatternType.isPatternExpression(patternExpression)) throw new IllegalArgumentException();
-        if (PatternTypeAnalysis.analyze(patternExpression) != PatternTypeAnalysis.Primitive) {
+        return buildAbstractPrimitive(
+                patternExpression,
+                enclosingFilename,
+                PatternTypeAnalysis.analyzeAll(patternExpression)
+        );
+    }
+
+    /**
+     * build abstract primitive patternExpand from patternExpand expression, using precomputed patternExpand type
+     * analysis results
+     * @param patternExpression patternExpand expression
+     * @param enclosingFilename enclosing aspect file path
+     * @param analysisResultMap patternExpand type of every node of {@code patternExpression}, see
+     *                          {@link PatternTypeAnalysis#analyzeAll(Expr)}
+     * @return constructed abstract primitive patternExpand
+     * @throws NullPointerException if {@code patternExpression} or {@code analysisResultMap} is {@code null}
+     * @throws IllegalArgumentException if {@code patternExpression} do not resolve as {@code Primitive} in
+     *                                  {@code analysisResultMap}
+     */
+    @SuppressWarnings("deprecation")
+    public static Primitive buildAbstractPrimitive(
+            Expr patternExpression,
+            String enclosingFilename,
+            Map<Expr, PatternTypeAnalysis> analysisResultMap) {
+        if (patternExpression == null) throw new NullPointerException();
+        if (analysisResultMap == null) throw new NullPointerException();
+        if (analysisResultMap.get(patternExpression) != PatternTypeAnalysis.Primitive) {
             throw new IllegalArgumentException();
         }
 
@@ -99,19 +124,32 @@ public abstract class Primitive extends Pattern {
             return new Set((PatternSet) patternExpression, enclosingFilename);
 
         if (patternExpression instanceof AndExpr) {
-            PatternTypeAnalysis lhsAnalysisResult = PatternTypeAnalysis.analyze(((AndExpr) patternExpression).getLHS());
-            PatternTypeAnalysis rhsAnalysisResult = PatternTypeAnalysis.analyze(((AndExpr) patternExpression).getRHS());
+            PatternTypeAnalysis lhsAnalysisResult = analysisResultMap.get(((AndExpr) patternExpression).getLHS());
+            PatternTypeAnalysis rhsAnalysisResult = analysisResultMap.get(((AndExpr) patternExpression).getRHS());
             if (lhsAnalysisResult == PatternTypeAnalysis.Primitive) {
                 if (rhsAnalysisResult == PatternTypeAnalysis.Primitive) {
-                    Primitive lhs = buildAbstractPrimitive(((AndExpr) patternExpression).getLHS(), enclosingFilename);
-                    Primitive rhs = buildAbstractPrimitive(((AndExpr) patternExpression).getRHS(), enclosingFilename);
+                    Primitive lhs = buildAbstractPrimitive(
+                            ((AndExpr) patternExpression).getLHS(),
+                            enclosingFilename,
+                            analysisResultMap
+                    );
+                    Primitive rhs = buildAbstractPrimitive(
+                            ((AndExpr) patternExpression).getRHS(),
+                            enclosingFilename,
+                            analysisResultMap
+                    );
                     return new PrimitiveAnd(lhs, rhs, enclosingFilename);
                 } else {
                     assert rhsAnalysisResult == PatternTypeAnalysis.Modifier;
-                    Primitive lhs = buildAbstractPrimitive(((AndExpr) patternExpression).getLHS(), enclosingFilename);
+                    Primitive lhs = buildAbstractPrimitive(
+                            ((AndExpr) patternExpression).getLHS(),
+                            enclosingFilename,
+                            analysisResultMap
+                    );
                     Modifier rhs = Modifier.buildAbstractModifier(
                             ((AndExpr) patternExpression).getRHS(),
-                            enclosingFilename
+                            enclosingFilename,
+                            analysisResultMap
                     ).simplifyModifier();
                     return lhs.addModifier(rhs);
                 }
@@ -120,9 +158,14 @@ public abstract class Primitive extends Pattern {
                 if (rhsAnalysisResult == PatternTypeAnalysis.Primitive) {
                     Modifier lhs = Modifier.buildAbstractModifier(
                             ((AndExpr) patternExpression).getLHS(),
-                            enclosingFilename
+                            enclosingFilename,
+                            analysisResultMap
                     ).simplifyModifier();
-                    Primitive rhs = buildAbstractPrimitive(((AndExpr) patternExpression).getRHS(), enclosingFilename);
+                    Primitive rhs = buildAbstractPrimitive(
+                            ((AndExpr) patternExpression).getRHS(),
+                            enclosingFilename,
+                            analysisResultMap
+                    );
                     return rhs.addModifier(lhs);
                 } else {
                     assert rhsAnalysisResult == PatternTypeAnalysis.Modifier;
@@ -132,10 +175,18 @@ public abstract class Primitive extends Pattern {
             }
         }
         if (patternExpression instanceof OrExpr) {
-            assert PatternTypeAnalysis.analyze(((OrExpr) patternExpression).getLHS()) == PatternTypeAnalysis.Primitive;
-            assert PatternTypeAnalysis.analyze(((OrExpr) patternExpression).getRHS()) == PatternTypeAnalysis.Primitive;
-            Primitive lhsPrimitive = buildAbstractPrimitive(((OrExpr) patternExpression).getLHS(), enclosingFilename);
-            Primitive rhsPrimitive = buildAbstractPrimitive(((OrExpr) patternExpression).getRHS(), enclosingFilename);
+            assert analysisResultMap.get(((OrExpr) patternExpression).getLHS()) == PatternTypeAnalysis.Primitive;
+            assert analysisResultMap.get(((OrExpr) patternExpression).getRHS()) == PatternTypeAnalysis.Primitive;
+            Primitive lhsPrimitive = buildAbstractPrimitive(
+                    ((OrExpr) patternExpression).getLHS(),
+                    enclosingFilename,
+                    analysisResultMap
+            );
+            Primitive rhsPrimitive = buildAbstractPrimitive(
+                    ((OrExpr) patternExpression).getRHS(),
+                    enclosingFilename,
+                    analysisResultMap
+            );
             return new PrimitiveOr(lhsPrimitive, rhsPrimitive, enclosingFilename);
         }
         /* control flow should not reach here */
@@ -151,4 +202,22 @@ public abstract class Primitive extends Pattern {
     public boolean isPossibleJoinPoint(ASTNode astNode, TransformQueryEnv transformQueryEnv) {
         return false;
     }
+
+    /**
+     * AST node types which can be a join point for current pattern, {@link #isPossibleJoinPoint} only returns
+     * {@code true} on instances of these types (or of their subtypes).
+     * @return set of AST node types
+     */
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * identifier names a join point of current pattern must refer to, {@link #isPossibleJoinPoint} only returns
+     * {@code true} on nodes referring to one of these names.
+     * @return set of identifier names, or empty if current pattern is not restricted to specific names
+     */
+    public Optional<java.util.Set<String>> getIdentifierKeys() {
+        return Optional.empty();
+    }
 }
@@ -6,7 +6,10 @@ import Matlab.Utils.Report;
 import aspectMATLAB.abstractPattern.modifier.Modifier;
 import ast.AndExpr;
 import ast.Expr;
+import ast.ASTNode;
+import aspectMATLAB.transformer.TransformQueryEnv;
 
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,6 +71,44 @@ public final class PrimitiveAnd extends Primitive {
         return this;
     }
 
+    @Override
+    public boolean isPossibleJoinPoint(ASTNode astNode, TransformQueryEnv transformQueryEnv) {
+        return lhsPrimitive.isPossibleJoinPoint(astNode, transformQueryEnv) &&
+                rhsPrimitive.isPossibleJoinPoint(astNode, transformQueryEnv);
+    }
+
+    /**
+     * a join point of the and primitive pattern must be a join point of both side
+     * @return intersection of the node types of both side
+     */
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        java.util.Set<Class<? extends ASTNode>> retSet = new HashSet<>();
+        for (Class<? extends ASTNode> lhsClass : lhsPrimitive.getJoinPointNodeClasses()) {
+            for (Class<? extends ASTNode> rhsClass : rhsPrimitive.getJoinPointNodeClasses()) {
+                if (rhsClass.isAssignableFrom(lhsClass)) retSet.add(lhsClass);
+                if (lhsClass.isAssignableFrom(rhsClass)) retSet.add(rhsClass);
+            }
+        }
+        return retSet;
+    }
+
+    /**
+     * a join point of the and primitive pattern must refer to a name accepted by both side
+     * @return intersection of the identifier names of both side
+     */
+    @Override
+    public Optional<java.util.Set<String>> getIdentifierKeys() {
+        Optional<java.util.Set<String>> lhsKeys = lhsPrimitive.getIdentifierKeys();
+        Optional<java.util.Set<String>> rhsKeys = rhsPrimitive.getIdentifierKeys();
+        if (!lhsKeys.isPresent()) return rhsKeys;
+        if (!rhsKeys.isPresent()) return lhsKeys;
+
+        java.util.Set<String> retSet = new HashSet<>(lhsKeys.get());
+        retSet.retainAll(rhsKeys.get());
+        return Optional.of(retSet);
+    }
+
     @Override
     public String toString() {
         return getModifierToString(String.format("(%s & %s)", lhsPrimitive.toString(), lhsPrimitive.toString()));
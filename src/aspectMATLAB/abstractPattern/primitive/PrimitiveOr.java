@@ -6,7 +6,10 @@ import Matlab.Utils.Report;
 import aspectMATLAB.abstractPattern.modifier.Modifier;
 import ast.Expr;
 import ast.OrExpr;
+import ast.ASTNode;
+import aspectMATLAB.transformer.TransformQueryEnv;
 
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,6 +71,39 @@ public final class PrimitiveOr extends Primitive {
         return this;
     }
 
+    @Override
+    public boolean isPossibleJoinPoint(ASTNode astNode, TransformQueryEnv transformQueryEnv) {
+        return lhsPrimitive.isPossibleJoinPoint(astNode, transformQueryEnv) ||
+                rhsPrimitive.isPossibleJoinPoint(astNode, transformQueryEnv);
+    }
+
+    /**
+     * a join point of the or primitive pattern is a join point of either side
+     * @return union of the node types of both side
+     */
+    @Override
+    public java.util.Set<Class<? extends ASTNode>> getJoinPointNodeClasses() {
+        java.util.Set<Class<? extends ASTNode>> retSet = new HashSet<>();
+        retSet.addAll(lhsPrimitive.getJoinPointNodeClasses());
+        retSet.addAll(rhsPrimitive.getJoinPointNodeClasses());
+        return retSet;
+    }
+
+    /**
+     * a join point of the or primitive pattern refers to a name accepted by either side
+     * @return union of the identifier names of both side, or empty if either side is not restricted
+     */
+    @Override
+    public Optional<java.util.Set<String>> getIdentifierKeys() {
+        Optional<java.util.Set<String>> lhsKeys = lhsPrimitive.getIdentifierKeys();
+        Optional<java.util.Set<String>> rhsKeys = rhsPrimitive.getIdentifierKeys();
+        if (!lhsKeys.isPresent() || !rhsKeys.isPresent()) return Optional.empty();
+
+        java.util.Set<String> retSet = new HashSet<>(lhsKeys.get());
+        retSet.addAll(rhsKeys.get());
+        return Optional.of(retSet);
+    }
+
     @Override
     public String toString() {
         return getModifierToString(String.format("(%s | %s)", lhsPrimitive.toString(), rhsPrimitive.toString()));
@@ -9,6 +9,7 @@ import ast.DimensionSignature;
 public final class FullSignature extends Pattern {
     private final ShapeSignature shapeSignature;
     private final TypeSignature typeSignature;
+    private final FullSignatureMatcher matcher;
 
     /**
      * construct from {@link FullSignature} AST node. If the full signature do not have a dimension signature, it
@@ -31,6 +32,9 @@ public final class FullSignature extends Pattern {
         shapeSignature = new ShapeSignature(((ast.FullSignature) originalPattern).getDimensionSignature(),
                 enclosingFilename);
         typeSignature = new TypeSignature(((ast.FullSignature) originalPattern).getTypeSignature(), enclosingFilename);
+        matcher = (typeSignature.isTrivial() && shapeSignature.isTrivial()) ?
+                FullSignatureMatcher.ANY :
+                new FullSignatureMatcher(typeSignature.getMatcher(), shapeSignature.getMatcher());
     }
 
     /** @return the shape part of this full signature */
@@ -43,6 +47,11 @@ public final class FullSignature extends Pattern {
         return typeSignature;
     }
 
+    /** @return the compiled signature, built once on construction */
+    public FullSignatureMatcher getMatcher() {
+        return matcher;
+    }
+
     /** @return the structural validation report on full signature by concatenating shape part and type part */
     @Override
     public IReport getStructureValidationReport() {
@@ -0,0 +1,58 @@
+package aspectMATLAB.abstractPattern.signature;
+
+import java.util.Optional;
+
+/** compiled form of a {@link FullSignature}, an immutable predicate over a type code and a shape */
+public final class FullSignatureMatcher {
+    /** matcher of the trivial signature, accepting any value */
+    public static final FullSignatureMatcher ANY = new FullSignatureMatcher(TypeMatcher.ANY, ShapeMatcher.ANY);
+
+    private final TypeMatcher typeMatcher;
+    private final ShapeMatcher shapeMatcher;
+    private final boolean isTrivial;
+
+    /**
+     * @param typeMatcher compiled type signature
+     * @param shapeMatcher compiled shape signature
+     * @throws NullPointerException if {@code typeMatcher} or {@code shapeMatcher} is {@code null}
+     */
+    public FullSignatureMatcher(TypeMatcher typeMatcher, ShapeMatcher shapeMatcher) {
+        this.typeMatcher = Optional.ofNullable(typeMatcher).orElseThrow(NullPointerException::new);
+        this.shapeMatcher = Optional.ofNullable(shapeMatcher).orElseThrow(NullPointerException::new);
+        this.isTrivial = typeMatcher.isWildcard() && shapeMatcher.isTrivial();
+    }
+
+    public TypeMatcher getTypeMatcher() {
+        return typeMatcher;
+    }
+
+    public ShapeMatcher getShapeMatcher() {
+        return shapeMatcher;
+    }
+
+    public boolean isTrivial() {
+        return isTrivial;
+    }
+
+    /**
+     * @param typeCode type code of the value (see {@link TypeMatcher#typeCode(String)})
+     * @param shape dimensions of the value
+     * @return {@code true} if the value is accepted
+     */
+    public boolean matches(int typeCode, int[] shape) {
+        return isTrivial || (typeMatcher.matches(typeCode) && shapeMatcher.matches(shape));
+    }
+
+    /**
+     * static matching, an unknown type ({@link TypeMatcher#UNKNOWN_TYPE}) or an unknown shape ({@code null}) may be
+     * any type or shape
+     * @param typeCode type code of the value, or {@link TypeMatcher#UNKNOWN_TYPE}
+     * @param shape dimensions of the value, or {@code null}
+     * @return {@code true} if the value may be accepted
+     */
+    public boolean mayMatch(int typeCode, int[] shape) {
+        if (isTrivial) return true;
+        if (!typeMatcher.mayMatch(typeCode)) return false;
+        return shape == null || shapeMatcher.matches(shape);
+    }
+}
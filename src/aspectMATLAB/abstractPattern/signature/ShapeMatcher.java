@@ -0,0 +1,105 @@
+package aspectMATLAB.abstractPattern.signature;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * compiled form of a {@link ShapeSignature}, an immutable predicate over shapes given as {@code int[]} dimensions.
+ * the signature is held as an array of dimensions, where {@link #ANY_DIMENSION} stands for the [*] wildcard (any
+ * single dimension) and {@link #ANY_DIMENSIONS} stands for the [..] wildcard (any number of dimensions).
+ */
+public final class ShapeMatcher {
+    public static final int ANY_DIMENSION = -1;
+    public static final int ANY_DIMENSIONS = -2;
+
+    /** matcher of the trivial [..] signature */
+    public static final ShapeMatcher ANY = new ShapeMatcher(new int[]{ANY_DIMENSIONS});
+
+    private final int[] dimensions;
+    private final boolean isTrivial;
+
+    private ShapeMatcher(int[] dimensions) {
+        this.dimensions = dimensions;
+        this.isTrivial = Arrays.stream(dimensions).allMatch(dimension -> dimension == ANY_DIMENSIONS);
+    }
+
+    /**
+     * compile a shape signature, consecutive [..] wildcards are merged. a dimension which is not a non-negative
+     * integer can not be checked and is compiled as a [*] wildcard.
+     * @param signature shape signature, [..] wildcard is given as {@code ""}, [*] wildcard is given as {@code "*"}
+     * @return compiled matcher
+     * @throws NullPointerException if {@code signature} is {@code null}
+     */
+    public static ShapeMatcher compile(List<String> signature) {
+        Optional.ofNullable(signature).orElseThrow(NullPointerException::new);
+        int[] buffer = new int[signature.size()];
+        int size = 0;
+        for (String dimension : signature) {
+            int compiled = compileDimension(dimension);
+            if (compiled == ANY_DIMENSIONS && size > 0 && buffer[size - 1] == ANY_DIMENSIONS) continue;
+            buffer[size++] = compiled;
+        }
+        if (size == 1 && buffer[0] == ANY_DIMENSIONS) return ANY;
+        return new ShapeMatcher(Arrays.copyOf(buffer, size));
+    }
+
+    private static int compileDimension(String dimension) {
+        if (dimension.equals("")) return ANY_DIMENSIONS;
+        if (dimension.equals("*")) return ANY_DIMENSION;
+        try {
+            int value = Integer.parseInt(dimension);
+            return (value < 0) ? ANY_DIMENSION : value;
+        } catch (NumberFormatException exception) {
+            return ANY_DIMENSION;
+        }
+    }
+
+    public boolean isTrivial() {
+        return isTrivial;
+    }
+
+    /** @return number of entries in the compiled signature (wildcards included) */
+    public int getNumDimension() {
+        return dimensions.length;
+    }
+
+    /** @return the compiled entry at the given index */
+    public int getDimension(int index) {
+        return dimensions[index];
+    }
+
+    /**
+     * match a shape against the signature, without allocation
+     * @param shape dimensions of the value
+     * @return {@code true} if the shape is accepted
+     * @throws NullPointerException if {@code shape} is {@code null}
+     */
+    public boolean matches(int[] shape) {
+        if (isTrivial) return true;
+        if (shape == null) throw new NullPointerException();
+
+        /* wildcard matching, backtracking to the last [..] wildcard on mismatch */
+        int patternIndex = 0;
+        int shapeIndex = 0;
+        int starPatternIndex = -1;
+        int starShapeIndex = 0;
+        while (shapeIndex < shape.length) {
+            if (patternIndex < dimensions.length && dimensions[patternIndex] == ANY_DIMENSIONS) {
+                starPatternIndex = patternIndex++;
+                starShapeIndex = shapeIndex;
+            } else if (patternIndex < dimensions.length &&
+                    (dimensions[patternIndex] == ANY_DIMENSION || dimensions[patternIndex] == shape[shapeIndex])) {
+                patternIndex++;
+                shapeIndex++;
+            } else if (starPatternIndex >= 0) {
+                patternIndex = starPatternIndex + 1;
+                shapeIndex = ++starShapeIndex;
+            } else {
+                return false;
+            }
+        }
+        while (patternIndex < dimensions.length && dimensions[patternIndex] == ANY_DIMENSIONS) patternIndex++;
+        return patternIndex == dimensions.length;
+    }
+}
@@ -8,12 +8,15 @@ import aspectMATLAB.abstractPattern.Pattern;
 import ast.DimensionSignature;
 import ast.Name;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /** an abstract representation on the shape signature */
 public final class ShapeSignature extends Pattern implements Iterable<String> {
+    private final List<String> signature;
+    private final ShapeMatcher matcher;
 
     /**
      * construct from {@link DimensionSignature} AST node.
@@ -24,6 +27,15 @@ public final class ShapeSignature extends Pattern implements Iterable<String> {
     @SuppressWarnings("deprecation")
     public ShapeSignature(DimensionSignature dimensionSignature, String enclosingFilename) {
         super(dimensionSignature, enclosingFilename);
+        assert originalPattern instanceof DimensionSignature;
+        List<String> signature = new ArrayList<>();
+        for (Name shapeName : ((DimensionSignature) originalPattern).getDimensionList()) {
+            String shapeString = shapeName.getID();
+            signature.add(shapeString);
+        }
+        if (signature.isEmpty()) signature.add("");
+        this.signature = Collections.unmodifiableList(signature);
+        this.matcher = ShapeMatcher.compile(this.signature);
     }
 
     /**
@@ -31,23 +43,21 @@ public final class ShapeSignature extends Pattern implements Iterable<String> {
      * @return shape signature
      * */
     public List<String> getSignature() {
-        assert originalPattern instanceof DimensionSignature;
-        List<String> signature = new LinkedList<>();
-        for (Name shapeName : ((DimensionSignature) originalPattern).getDimensionList()) {
-            String shapeString = shapeName.getID();
-            signature.add(shapeString);
-        }
-        if (signature.isEmpty()) signature.add("");
         return signature;
     }
 
+    /** @return the compiled shape signature */
+    public ShapeMatcher getMatcher() {
+        return matcher;
+    }
+
     /**
      * determine if a shape signature is trivial (i.e. no additional runtime checking is required, the patternExpand will
      * match to any matrix shape).
      * @return {@code true} if the shape signature is trivial, otherwise return {@code false}
      */
     public boolean isTrivial() {
-        return getSignature().stream().allMatch(shape -> shape.equals(""));
+        return matcher.isTrivial();
     }
 
     /**
@@ -0,0 +1,78 @@
+package aspectMATLAB.abstractPattern.signature;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * compiled form of a {@link TypeSignature}, an immutable predicate over type codes. type names are mapped to
+ * dense integer codes once (see {@link #typeCode(String)}), so that matching does not compare strings.
+ */
+public final class TypeMatcher {
+    /** type code of a value whose type is unknown, only matched by the [*] wildcard */
+    public static final int UNKNOWN_TYPE = -1;
+
+    private static final Map<String, Integer> typeCodeMap = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextTypeCode = new AtomicInteger(0);
+
+    /** matcher of the [*] wildcard */
+    public static final TypeMatcher ANY = new TypeMatcher(true, UNKNOWN_TYPE);
+
+    private final boolean isWildcard;
+    private final int typeCode;
+
+    private TypeMatcher(boolean isWildcard, int typeCode) {
+        this.isWildcard = isWildcard;
+        this.typeCode = typeCode;
+    }
+
+    /**
+     * compile a type signature string
+     * @param signature type signature, [*] wildcard is given as {@code "*"}
+     * @return compiled matcher
+     * @throws NullPointerException if {@code signature} is {@code null}
+     */
+    public static TypeMatcher compile(String signature) {
+        if (Optional.ofNullable(signature).orElseThrow(NullPointerException::new).equals("*")) return ANY;
+        return new TypeMatcher(false, typeCode(signature));
+    }
+
+    /**
+     * dense integer code of a type name, the same name always yields the same code within a run
+     * @param typeName type name (e.g. {@code double})
+     * @return type code
+     * @throws NullPointerException if {@code typeName} is {@code null}
+     */
+    public static int typeCode(String typeName) {
+        return typeCodeMap.computeIfAbsent(
+                Optional.ofNullable(typeName).orElseThrow(NullPointerException::new),
+                key -> nextTypeCode.getAndIncrement()
+        );
+    }
+
+    public boolean isWildcard() {
+        return isWildcard;
+    }
+
+    public int getTypeCode() {
+        return typeCode;
+    }
+
+    /**
+     * @param typeCode type code of the value, or {@link #UNKNOWN_TYPE}
+     * @return {@code true} if the value type is accepted
+     */
+    public boolean matches(int typeCode) {
+        return isWildcard || this.typeCode == typeCode;
+    }
+
+    /**
+     * static matching, a value of unknown type may be of any type
+     * @param typeCode type code of the value, or {@link #UNKNOWN_TYPE}
+     * @return {@code true} if the value type may be accepted
+     */
+    public boolean mayMatch(int typeCode) {
+        return isWildcard || typeCode == UNKNOWN_TYPE || this.typeCode == typeCode;
+    }
+}
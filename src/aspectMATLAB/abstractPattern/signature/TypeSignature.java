@@ -7,6 +7,9 @@ import ast.Name;
 
 /** an abstract representation on the type signature */
 public final class TypeSignature extends Pattern {
+    private final String signature;
+    private final TypeMatcher matcher;
+
     /**
      * construct from {@link TypeSignature} AST node.
      * @param typeSignature  {@link TypeSignature} AST node
@@ -16,6 +19,10 @@ public final class TypeSignature extends Pattern {
     @SuppressWarnings("deprecation")
     public TypeSignature(ast.TypeSignature typeSignature, String enclosingFilename) {
         super(typeSignature, enclosingFilename);
+        assert originalPattern instanceof ast.TypeSignature;
+        Name signatureName = ((ast.TypeSignature) originalPattern).getType();
+        signature = (signatureName == null) ? "*" : signatureName.getID();
+        matcher = TypeMatcher.compile(signature);
     }
 
     /**
@@ -24,12 +31,12 @@ public final class TypeSignature extends Pattern {
      * @return the type signature
      */
     public String getSignature() {
-        assert originalPattern instanceof ast.TypeSignature;
-        if (((ast.TypeSignature) originalPattern).getType() == null) {
-            return "*";
-        }
-        Name signatureName = ((ast.TypeSignature) originalPattern).getType();
-        return signatureName.getID();
+        return signature;
+    }
+
+    /** @return the compiled type signature */
+    public TypeMatcher getMatcher() {
+        return matcher;
     }
 
     /**
@@ -38,8 +45,7 @@ public final class TypeSignature extends Pattern {
      * @return {@code true} if the patternExpand is a trivial patternExpand, otherwise {@code false}
      */
     public boolean isTrivial() {
-        String signature = getSignature();
-        return signature.equals("*");
+        return matcher.isWildcard();
     }
 
     /**
@@ -2,12 +2,68 @@ package aspectMATLAB.abstractPattern.utils;
 
 import ast.Name;
 
+import java.util.Optional;
+
 /** an abstract representation on content exposure selectors */
 public enum ContentExposureType {
-    // TODO
-    ;
+    /** arguments of the join point, i.e. operands of an operator */    Args,
+    /** value assigned at a set join point */                             NewVal,
+    /** object the join point operates on */                              Obj,
+    /** number of times the join point is reached */                      Counter,
+    /** name of the join point, e.g. variable or function name */        Identifier,
+    /** pattern matching the join point */                                Pat,
+    /** enclosing file of the join point */                               File,
+    /** line of the join point */                                         Line,
+    /** source location of the join point */                              Loc,
+    /** output values of the join point, i.e. result of an operator */    AOutput,
+    /** variable output values of the join point */                       Varargout;
+
+    /**
+     * parse {@link ContentExposureType} from the selector name of an action parameter
+     * @param name selector name
+     * @return the corresponding {@link ContentExposureType}, {@code null} if the name is not a known selector
+     * @throws NullPointerException if {@code name} is {@code null}
+     */
     public static ContentExposureType valueOf(Name name) {
-        // TODO
+        switch (Optional.ofNullable(name).orElseThrow(NullPointerException::new).getID()) {
+            case "args":        return Args;
+            case "newVal":      return NewVal;
+            case "obj":         return Obj;
+            case "counter":     return Counter;
+            case "name":        return Identifier;
+            case "pat":         return Pat;
+            case "file":        return File;
+            case "line":        return Line;
+            case "loc":         return Loc;
+            case "aoutput":     return AOutput;
+            case "varargout":   return Varargout;
+        }
         return null;
     }
+
+    /**
+     * {@code true} if the exposed content is a value the join point operates on, which have to be evaluated into a
+     * variable before the advice runs
+     * @return {@code true} if the exposed content is an operand value
+     */
+    public boolean isOperandValue() {
+        switch (this) {
+            case Args:          return true;
+            case NewVal:        return true;
+            case Obj:           return true;
+            default:            return false;
+        }
+    }
+
+    /**
+     * {@code true} if the exposed content is the value the join point evaluates to, available to after advice only
+     * @return {@code true} if the exposed content is a result value
+     */
+    public boolean isResultValue() {
+        switch (this) {
+            case AOutput:       return true;
+            case Varargout:     return true;
+            default:            return false;
+        }
+    }
 }
@@ -0,0 +1,225 @@
+package aspectMATLAB.driver;
+
+import aspectMATLAB.Main;
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.abstractPattern.PatternExpansionCache;
+import aspectMATLAB.transformer.MatchReporter;
+import aspectMATLAB.transformer.aspect.JoinPointMatcherIndex;
+import aspectMATLAB.transformer.program.AbstractProgramTransformer;
+import ast.Actions;
+import ast.AspectDef;
+import ast.CompilationUnits;
+import ast.Program;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * weave a set of matlab source files, each file is parsed, transformed and woven as an
+ * independent compilation unit on a bounded worker pool
+ */
+public final class BatchWeaver {
+    public static final String MATLAB_FILE_EXTENSION = ".m";
+
+    private final int parallelism;
+    private final Function<CompilationUnits, ? extends AbstractProgramTransformer<?, ?>> transformerFactory;
+    private ParseCache parseCache = null;
+    private WeaveIndex weaveIndex = null;
+    private final Set<String> upToDateFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param parallelism number of worker threads
+     * @param transformerFactory builds the program transformer of a parsed unit, transformers are stateful,
+     *                           hence a fresh one is requested for each unit (may be null, in which case
+     *                           units are only parsed)
+     */
+    public BatchWeaver(
+            int parallelism,
+            Function<CompilationUnits, ? extends AbstractProgramTransformer<?, ?>> transformerFactory) {
+        if (parallelism <= 0) throw new IllegalArgumentException();
+        this.parallelism = parallelism;
+        this.transformerFactory = transformerFactory;
+    }
+
+    public BatchWeaver(Function<CompilationUnits, ? extends AbstractProgramTransformer<?, ?>> transformerFactory) {
+        this(Runtime.getRuntime().availableProcessors(), transformerFactory);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /** look up parsed units in the given cache before parsing (may be null to disable caching) */
+    public BatchWeaver setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+        return this;
+    }
+
+    /** expand directories (recursively) into the matlab files they contain, plain files are kept as is */
+    public static List<String> collectSourceFiles(Collection<String> paths) {
+        Optional.ofNullable(paths).orElseThrow(NullPointerException::new);
+        List<String> collected = new LinkedList<>();
+        for (String path : paths) {
+            Path root = Paths.get(path);
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> walk = Files.walk(root)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> file.getFileName().toString().endsWith(MATLAB_FILE_EXTENSION))
+                            .map(Path::toString)
+                            .sorted()
+                            .forEachOrdered(collected::add);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            } else {
+                collected.add(path);
+            }
+        }
+        return collected.stream().distinct().collect(Collectors.toList());
+    }
+
+    /** actions declared by the aspect definitions within the compilation units parsed from the given path */
+    public static List<Action> collectActions(String path, CompilationUnits compilationUnits) {
+        Optional.ofNullable(path).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(compilationUnits).orElseThrow(NullPointerException::new);
+        List<Action> actions = new LinkedList<>();
+        for (Program program : compilationUnits.getProgramList()) {
+            if (!(program instanceof AspectDef)) continue;
+            AspectDef aspectDef = (AspectDef) program;
+
+            PatternExpansionCache expansionCache = PatternExpansionCache.fromAspect(aspectDef);
+            for (Actions actionList : aspectDef.getActionList()) {
+                for (ast.Action action : actionList.getActionList()) {
+                    actions.add(new Action(action, expansionCache, astNode -> path));
+                }
+            }
+        }
+        return actions;
+    }
+
+    public WeaveIndex getWeaveIndex() {
+        return weaveIndex;
+    }
+
+    /**
+     * weave incrementally against the given index (may be null to weave every file), files whose source
+     * and relevant actions did not change since the index was recorded are not woven again, their previous
+     * result kept by the index is reused instead
+     */
+    public BatchWeaver setWeaveIndex(WeaveIndex weaveIndex) {
+        this.weaveIndex = weaveIndex;
+        return this;
+    }
+
+    /** files whose previous result was reused by the last incremental weave, as they were already up to date */
+    public Set<String> getUpToDateFiles() {
+        return Collections.unmodifiableSet(upToDateFiles);
+    }
+
+    /**
+     * weave the given files, the returned map is keyed by path in the same order as the input paths,
+     * files that fail to parse are reported to the diagnostics collector and left out of the result
+     */
+    public Map<String, CompilationUnits> weave(List<String> paths, DiagnosticsCollector diagnostics)
+            throws InterruptedException, ExecutionException {
+        Optional.ofNullable(paths).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(diagnostics).orElseThrow(NullPointerException::new);
+        upToDateFiles.clear();
+        if (paths.isEmpty()) return Collections.emptyMap();
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, paths.size()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "am-weaver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        try {
+            Map<String, Future<Optional<CompilationUnits>>> futureMap = new LinkedHashMap<>();
+            for (String path : paths) {
+                futureMap.put(path, executor.submit(() -> weaveFile(path, diagnostics)));
+            }
+
+            Map<String, CompilationUnits> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Optional<CompilationUnits>>> entry : futureMap.entrySet()) {
+                entry.getValue().get().ifPresent(compilationUnits -> result.put(entry.getKey(), compilationUnits));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Optional<CompilationUnits> weaveFile(String path, DiagnosticsCollector diagnostics) {
+        Optional<String> fingerprint = Optional.empty();
+        if (weaveIndex != null) {
+            fingerprint = ParseCache.contentKey(Paths.get(path));
+            if (fingerprint.isPresent() && !weaveIndex.needsWeaving(path, fingerprint.get())) {
+                Optional<CompilationUnits> previousResult = weaveIndex.loadResult(path);
+                if (previousResult.isPresent()) {
+                    upToDateFiles.add(path);
+                    return previousResult;
+                }
+            }
+        }
+
+        Optional<CompilationUnits> compilationUnits = (parseCache == null) ?
+                Main.parse(path, diagnostics) :
+                parseCache.parse(path, diagnostics);
+        if (!compilationUnits.isPresent()) {
+            if (weaveIndex != null) weaveIndex.remove(path);
+            return compilationUnits;
+        }
+
+        JoinPointMatcherIndex.KeySummary keySummary = (weaveIndex == null) ?
+                null :
+                JoinPointMatcherIndex.KeySummary.of(compilationUnits.get());
+        Set<String> matchedActions = Collections.emptySet();
+        if (transformerFactory != null) {
+            try {
+                AbstractProgramTransformer<?, ?> transformer = transformerFactory.apply(compilationUnits.get());
+                compilationUnits = Optional.of(transformer.transform(compilationUnits.get()));
+                matchedActions = (weaveIndex == null) ? matchedActions : getMatchedActions(transformer);
+            } catch (RuntimeException exception) {
+                diagnostics.reportError(path, String.format("weaving failed: %s", exception));
+                if (weaveIndex != null) weaveIndex.remove(path);
+                return Optional.empty();
+            }
+        }
+
+        if (weaveIndex != null && fingerprint.isPresent()) {
+            weaveIndex.record(path, fingerprint.get(), matchedActions, keySummary);
+            try {
+                weaveIndex.storeResult(path, compilationUnits.get());
+            } catch (IOException exception) {
+                /* without its result the program cannot be reused, hence it is woven again next time */
+                weaveIndex.remove(path);
+            }
+        }
+        return compilationUnits;
+    }
+
+    /* transformers that cannot tell which actions matched are assumed to be matched by every action */
+    private Set<String> getMatchedActions(AbstractProgramTransformer<?, ?> transformer) {
+        if (transformer instanceof MatchReporter) {
+            return ((MatchReporter) transformer).getMatchedActions();
+        }
+        if (transformer.getExpressionTransformer() instanceof MatchReporter) {
+            return ((MatchReporter) transformer.getExpressionTransformer()).getMatchedActions();
+        }
+        return weaveIndex.getActionNames();
+    }
+}
@@ -0,0 +1,98 @@
+package aspectMATLAB.driver;
+
+import Matlab.Recognizer.INotifier;
+import Matlab.Utils.IReport;
+import Matlab.Utils.Message;
+import Matlab.Utils.Report;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * thread safe parse notifier, gathers the messages reported for every file instead of terminating on
+ * the first error, so that a batch run can skip malformed files and report them all at the end
+ */
+public final class DiagnosticsCollector implements INotifier {
+    private final Report report = new Report();
+    private final Set<String> failedFiles = new LinkedHashSet<>();
+
+    @Override
+    public synchronized void Notify(String path, IReport iReport) {
+        if (iReport == null) return;
+        for (Message message : iReport) {
+            report.Add(
+                    message.GetSeverity(),
+                    (message.GetPath() == null) ? path : message.GetPath(),
+                    message.GetLine(),
+                    message.GetColumn(),
+                    message.GetText()
+            );
+        }
+        if (!iReport.GetIsOk()) failedFiles.add(path);
+    }
+
+    public synchronized void reportError(String path, String text) {
+        Optional.ofNullable(path).orElseThrow(NullPointerException::new);
+        report.AddError(path, 0, 0, text);
+        failedFiles.add(path);
+    }
+
+    public synchronized void markFailed(String path) {
+        Optional.ofNullable(path).orElseThrow(NullPointerException::new);
+        failedFiles.add(path);
+    }
+
+    public synchronized boolean hasFailed(String path) {
+        return failedFiles.contains(path);
+    }
+
+    public synchronized boolean isOk() {
+        return failedFiles.isEmpty() && report.GetIsOk();
+    }
+
+    public synchronized Set<String> getFailedFiles() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(failedFiles));
+    }
+
+    public synchronized List<Message> getMessages() {
+        List<Message> messages = new ArrayList<>();
+        for (Message message : report) messages.add(message);
+        return messages;
+    }
+
+    public void printReport(PrintStream out) {
+        Optional.ofNullable(out).orElseThrow(NullPointerException::new);
+        PrintWriter writer = new PrintWriter(out);
+        printReport(writer);
+        writer.flush();
+    }
+
+    /** print all collected messages grouped by file, in the order the files were reported */
+    public synchronized void printReport(PrintWriter out) {
+        Optional.ofNullable(out).orElseThrow(NullPointerException::new);
+        Map<String, List<Message>> messageMap = new LinkedHashMap<>();
+        for (Message message : report) {
+            messageMap.computeIfAbsent(String.valueOf(message.GetPath()), key -> new LinkedList<>()).add(message);
+        }
+        for (Map.Entry<String, List<Message>> entry : messageMap.entrySet()) {
+            out.println(String.format("At file %s:", entry.getKey()));
+            for (Message message : entry.getValue()) {
+                out.println(String.format("[%3d:%3d]\t%s:%s",
+                        message.GetLine(),
+                        message.GetColumn(),
+                        message.GetSeverity(),
+                        message.GetText()
+                ));
+            }
+        }
+        for (String failedFile : failedFiles) {
+            if (messageMap.containsKey(failedFile)) continue;
+            out.println(String.format("At file %s:", failedFile));
+            out.println("\tfailed to parse");
+        }
+        if (!failedFiles.isEmpty()) {
+            out.println(String.format("%d file(s) skipped due to errors", failedFiles.size()));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package aspectMATLAB.driver;
+
+import Matlab.Utils.Message;
+import Matlab.Utils.Report;
+import Matlab.Utils.Severity;
+import aspectMATLAB.Main;
+import aspectMATLAB.serialization.deserializers.BinaryDeserializer;
+import aspectMATLAB.serialization.serializers.BinarySerializer;
+import ast.ASTNode;
+import ast.CompilationUnits;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * content addressed on-disk cache of parsed compilation units, an entry is keyed by the sha-256 digest
+ * of the source file content, hence unchanged files are loaded without going through the parser again.
+ * the cache is best effort: unreadable or corrupted entries are treated as misses, and failing to write
+ * an entry never fails the parse. an entry holds the messages reported while parsing the file, replayed to the
+ * diagnostics collector on each hit, followed by the unit in the binary AST form (see {@link BinarySerializer}).
+ * the binary form keeps the start position of the nodes only, which is all the front end records.
+ */
+public final class ParseCache {
+    private static final int FORMAT_VERSION = 3;
+    private static final String ENTRY_EXTENSION = ".amb";
+
+    private final Path cacheDirectory;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public ParseCache(Path cacheDirectory) {
+        this.cacheDirectory = Optional.ofNullable(cacheDirectory).orElseThrow(NullPointerException::new);
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** parse the file, or load it from the cache if an entry for its current content exists */
+    public Optional<CompilationUnits> parse(String path, DiagnosticsCollector diagnostics) {
+        Optional.ofNullable(path).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(diagnostics).orElseThrow(NullPointerException::new);
+
+        Optional<String> key = contentKey(Paths.get(path));
+        if (key.isPresent()) {
+            Optional<CompilationUnits> cached = load(key.get(), path, diagnostics);
+            if (cached.isPresent()) {
+                hitCount.incrementAndGet();
+                return cached;
+            }
+        }
+        missCount.incrementAndGet();
+
+        /* messages of the file are gathered apart, to be kept along with its unit */
+        DiagnosticsCollector parseDiagnostics = new DiagnosticsCollector();
+        Optional<CompilationUnits> parsed = Main.parse(path, parseDiagnostics);
+        List<Message> messages = parseDiagnostics.getMessages();
+        diagnostics.Notify(path, toReport(messages));
+        if (!parsed.isPresent()) {
+            diagnostics.markFailed(path);
+            return parsed;
+        }
+        if (key.isPresent()) store(key.get(), parsed.get(), messages);
+        return parsed;
+    }
+
+    private static Report toReport(List<Message> messages) {
+        Report report = new Report();
+        for (Message message : messages) report.Add(message);
+        return report;
+    }
+
+    /** sha-256 digest of the file content, empty if the file cannot be read */
+    public static Optional<String> contentKey(Path file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) FORMAT_VERSION);
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) > 0) digest.update(buffer, 0, read);
+            }
+            StringBuilder builder = new StringBuilder();
+            for (byte value : digest.digest()) builder.append(String.format("%02x", value));
+            return Optional.of(builder.toString());
+        } catch (IOException exception) {
+            return Optional.empty();
+        } catch (NoSuchAlgorithmException exception) {
+            /* control flow should not reach here */
+            throw new AssertionError(exception);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return cacheDirectory.resolve(key.substring(0, 2)).resolve(key + ENTRY_EXTENSION);
+    }
+
+    /* the messages of the entry are replayed only once the whole entry has been read */
+    private Optional<CompilationUnits> load(String key, String path, DiagnosticsCollector diagnostics) {
+        Path entry = entryPath(key);
+        if (!Files.isRegularFile(entry)) return Optional.empty();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(entry))) {
+            DataInputStream dataInputStream = new DataInputStream(inputStream);
+            Report report = new Report();
+            int messageCount = dataInputStream.readInt();
+            for (int index = 0; index < messageCount; index++) {
+                Severity severity = Severity.valueOf(dataInputStream.readUTF());
+                int line = dataInputStream.readInt();
+                int column = dataInputStream.readInt();
+                report.Add(severity, path, line, column, dataInputStream.readUTF());
+            }
+            ASTNode result = new BinaryDeserializer().deserialize(inputStream);
+            if (!(result instanceof CompilationUnits)) return Optional.empty();
+            diagnostics.Notify(path, report);
+            return Optional.of((CompilationUnits) result);
+        } catch (IOException | RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private void store(String key, CompilationUnits compilationUnits, List<Message> messages) {
+        Path entry = entryPath(key);
+        Path temporary = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            temporary = Files.createTempFile(entry.getParent(), key, ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+                dataOutputStream.writeInt(messages.size());
+                for (Message message : messages) {
+                    dataOutputStream.writeUTF(message.GetSeverity().name());
+                    dataOutputStream.writeInt(message.GetLine());
+                    dataOutputStream.writeInt(message.GetColumn());
+                    dataOutputStream.writeUTF(String.valueOf(message.GetText()));
+                }
+                dataOutputStream.flush();
+                new BinarySerializer().serialize(compilationUnits, outputStream);
+            }
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException exception) {
+            /* caching is best effort, the parsed unit is still returned to the caller */
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
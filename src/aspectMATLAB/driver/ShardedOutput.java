@@ -0,0 +1,339 @@
+package aspectMATLAB.driver;
+
+import aspectMATLAB.serialization.serializers.BinarySerializer;
+import aspectMATLAB.serialization.serializers.JSONSerializer;
+import ast.CompilationUnits;
+import ast.Program;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * output stage writing each program of the woven units into its own file, one file per requested format, in an
+ * output directory mirroring the input tree ({@code dir/foo.m} is written to {@code <output>/dir/foo.m},
+ * {@code <output>/dir/foo.json}, ...). files are written through buffered file channels, each into a temporary
+ * file moved in place once complete. programs are written concurrently, the files of one program one after
+ * another by a single task, as printing and serializing read the lazily evaluated attributes of the tree. a
+ * manifest listing the written files, with their size and sha-256 digest, is written last, hence unchanged outputs
+ * can be recognized and reused by later stages. programs instrumented by buffered statement tracing get their join
+ * point table written next to the manifest.
+ */
+public final class ShardedOutput {
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final String TRACE_TABLE_FILE = "trace_table.json";
+    private static final long FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Format {
+        PRETTY(".m"),
+        JSON(".json"),
+        BINARY(".amb");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /* a file written for a program, as recorded in the manifest */
+    private static final class Shard {
+        private final String source;
+        private final int programIndex;
+        private final String programType;
+        private final Format format;
+        private final Path path;
+        private long size = 0;
+        private String digest = null;
+        private Throwable failure = null;
+
+        private Shard(String source, int programIndex, String programType, Format format, Path path) {
+            this.source = source;
+            this.programIndex = programIndex;
+            this.programType = programType;
+            this.format = format;
+            this.path = path;
+        }
+    }
+
+    private final Path outputDirectory;
+    private final Set<Format> formats;
+    private final int parallelism;
+    private JSONSerializer jsonSerializer = new JSONSerializer();
+    private BinarySerializer binarySerializer = new BinarySerializer();
+
+    /**
+     * @param outputDirectory root of the output tree, created if missing
+     * @param formats formats to write, at least one
+     * @param parallelism number of files written concurrently
+     */
+    public ShardedOutput(Path outputDirectory, Set<Format> formats, int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException();
+        this.outputDirectory = Optional.ofNullable(outputDirectory).orElseThrow(NullPointerException::new);
+        if (Optional.ofNullable(formats).orElseThrow(NullPointerException::new).isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        this.formats = Collections.unmodifiableSet(EnumSet.copyOf(formats));
+        this.parallelism = parallelism;
+    }
+
+    public Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public Set<Format> getFormats() {
+        return formats;
+    }
+
+    /** serializer used for the json files, decorators have to be appended before writing */
+    public ShardedOutput setJSONSerializer(JSONSerializer jsonSerializer) {
+        this.jsonSerializer = Optional.ofNullable(jsonSerializer).orElseThrow(NullPointerException::new);
+        return this;
+    }
+
+    /** serializer used for the binary files, decorators have to be appended before writing */
+    public ShardedOutput setBinarySerializer(BinarySerializer binarySerializer) {
+        this.binarySerializer = Optional.ofNullable(binarySerializer).orElseThrow(NullPointerException::new);
+        return this;
+    }
+
+    /**
+     * write the programs of the given units and the manifest, files that cannot be written are reported to the
+     * diagnostics collector and left out of the manifest
+     * @param compilationUnitsMap woven units keyed by source path, see {@link BatchWeaver#weave}
+     * @param diagnostics diagnostics collector
+     * @return paths of the written files, relative to the output directory, in source order
+     * @throws IOException if the output directory or the manifest cannot be written
+     * @throws InterruptedException if interrupted while waiting for the writes
+     */
+    public List<Path> write(Map<String, CompilationUnits> compilationUnitsMap, DiagnosticsCollector diagnostics)
+            throws IOException, InterruptedException {
+        Optional.ofNullable(compilationUnitsMap).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(diagnostics).orElseThrow(NullPointerException::new);
+        Files.createDirectories(outputDirectory);
+
+        List<Shard> shards = new ArrayList<>();
+        List<List<Shard>> programShards = new ArrayList<>();
+        Set<Path> shardPaths = new HashSet<>();
+        for (Map.Entry<String, CompilationUnits> entry : compilationUnitsMap.entrySet()) {
+            CompilationUnits compilationUnits = entry.getValue();
+            compilationUnits.setIndentTab("    ");
+            Path base = mirrorPath(entry.getKey());
+            int numProgram = compilationUnits.getNumProgram();
+            for (int index = 0; index < numProgram; index++) {
+                Program program = compilationUnits.getProgram(index);
+                List<Shard> formatShards = new ArrayList<>(formats.size());
+                for (Format format : formats) {
+                    Path shardPath = shardPath(base, index, numProgram, format);
+                    if (!shardPaths.add(shardPath)) {
+                        diagnostics.reportError(entry.getKey(), String.format("%s is already written", shardPath));
+                        continue;
+                    }
+                    formatShards.add(new Shard(
+                            entry.getKey(), index, program.getClass().getSimpleName(), format, shardPath
+                    ));
+                }
+                shards.addAll(formatShards);
+                if (!formatShards.isEmpty()) programShards.add(formatShards);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(parallelism, programShards.size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "am-output");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        List<Shard> written = new ArrayList<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>(programShards.size());
+            for (List<Shard> formatShards : programShards) {
+                Shard first = formatShards.get(0);
+                Program program = compilationUnitsMap.get(first.source).getProgram(first.programIndex);
+                futures.add(executor.submit(() -> {
+                    for (Shard shard : formatShards) {
+                        try {
+                            writeShard(shard, program);
+                        } catch (IOException | RuntimeException exception) {
+                            shard.failure = exception;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int index = 0; index < programShards.size(); index++) {
+                try {
+                    futures.get(index).get();
+                } catch (ExecutionException exception) {
+                    for (Shard shard : programShards.get(index)) {
+                        if (shard.failure == null && shard.digest == null) shard.failure = exception.getCause();
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Shard shard : shards) {
+            if (shard.failure == null) {
+                written.add(shard);
+            } else {
+                diagnostics.reportError(shard.source, String.format("cannot write %s: %s", shard.path, shard.failure));
+            }
+        }
+
+        writeManifest(written);
+        List<Path> paths = new ArrayList<>(written.size());
+        for (Shard shard : written) paths.add(shard.path);
+        return paths;
+    }
+
+    /*
+     * location of a source file in the output tree, relative to the output directory. sources under the working
+     * directory keep their relative location, other absolute paths are rooted at the output directory, and parent
+     * references are dropped so that nothing is written outside of the output directory.
+     */
+    private static Path mirrorPath(String source) {
+        Path path = Paths.get(source).normalize();
+        if (path.isAbsolute()) {
+            Path workingDirectory = Paths.get("").toAbsolutePath();
+            path = path.startsWith(workingDirectory) ?
+                    workingDirectory.relativize(path) :
+                    path.getRoot().relativize(path);
+        }
+        Path mirrored = null;
+        for (Path name : path) {
+            if (name.toString().equals("..")) continue;
+            mirrored = (mirrored == null) ? name : mirrored.resolve(name);
+        }
+        return (mirrored == null) ? Paths.get("unnamed") : mirrored;
+    }
+
+    /* dir/foo.m becomes dir/foo.json, units holding several programs get one file per program, dir/foo.1.json */
+    private static Path shardPath(Path base, int index, int numProgram, Format format) {
+        String fileName = base.getFileName().toString();
+        if (fileName.endsWith(BatchWeaver.MATLAB_FILE_EXTENSION)) {
+            fileName = fileName.substring(0, fileName.length() - BatchWeaver.MATLAB_FILE_EXTENSION.length());
+        }
+        if (numProgram > 1) fileName = String.format("%s.%d", fileName, index);
+        return base.resolveSibling(fileName + format.getExtension());
+    }
+
+    private void writeShard(Shard shard, Program program) throws IOException {
+        Path target = outputDirectory.resolve(shard.path);
+        Files.createDirectories(target.getParent());
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                 OutputStream outputStream = new DigestOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+                         digest
+                 )) {
+                switch (shard.format) {
+                    case PRETTY: {
+                        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                        writer.write(program.getPrettyPrinted());
+                        writer.flush();
+                        break;
+                    }
+                    case JSON:
+                        jsonSerializer.serialize(program, outputStream);
+                        break;
+                    case BINARY:
+                        binarySerializer.serialize(program, outputStream);
+                        break;
+                    default:
+                        /* control flow should not reach here */
+                        throw new AssertionError();
+                }
+                outputStream.flush();
+                channel.force(false);
+                shard.size = channel.size();
+            }
+            shard.digest = toHex(digest.digest());
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeManifest(List<Shard> shards) throws IOException {
+        JSONArray files = new JSONArray();
+        for (Shard shard : shards) {
+            JSONObject file = new JSONObject();
+            file.put("source", shard.source);
+            file.put("program", (long) shard.programIndex);
+            file.put("type", shard.programType);
+            file.put("format", shard.format.name().toLowerCase(Locale.ROOT));
+            file.put("path", shard.path.toString().replace(File.separatorChar, '/'));
+            file.put("size", shard.size);
+            file.put("sha256", shard.digest);
+            files.add(file);
+        }
+        JSONObject root = new JSONObject();
+        root.put("version", FORMAT_VERSION);
+        root.put("files", files);
+        writeJSON(MANIFEST_FILE, root);
+    }
+
+    /**
+     * write the join point table of the traced programs into {@value #TRACE_TABLE_FILE}, see
+     * {@link aspectMATLAB.transformer.stmt.examples.BufferedStatementTracing#getJoinPointTable()}
+     * @param joinPointTable join point descriptions, the one of id {@code i} being at index {@code i - 1}
+     * @return path of the written file, relative to the output directory
+     * @throws IOException if the output directory or the table cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    public Path writeTraceTable(List<String> joinPointTable) throws IOException {
+        Optional.ofNullable(joinPointTable).orElseThrow(NullPointerException::new);
+        Files.createDirectories(outputDirectory);
+        JSONArray joinPoints = new JSONArray();
+        joinPoints.addAll(joinPointTable);
+        JSONObject root = new JSONObject();
+        root.put("version", FORMAT_VERSION);
+        root.put("joinPoints", joinPoints);
+        writeJSON(TRACE_TABLE_FILE, root);
+        return Paths.get(TRACE_TABLE_FILE);
+    }
+
+    private void writeJSON(String fileName, JSONObject root) throws IOException {
+        Path target = outputDirectory.resolve(fileName);
+        Path temporary = Files.createTempFile(outputDirectory, fileName, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            root.writeJSONString(writer);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            /* control flow should not reach here */
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte value : bytes) builder.append(String.format("%02x", value));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,334 @@
+package aspectMATLAB.driver;
+
+import aspectMATLAB.Main;
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.transformer.program.AbstractProgramTransformer;
+import aspectMATLAB.utils.OverrideVFAnalysis;
+import ast.*;
+import natlab.toolkits.analysis.varorfun.VFAnalysis;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+/**
+ * long running weaver keeping parsed compilation units, built actions and kind analysis results resident
+ * between requests. requests are read line by line, either from a stream (stdin) or from connections to
+ * a local socket, one command per line with space separated arguments, an argument holding spaces is enclosed in
+ * double quotes, within which {@code \"} and {@code \\} stand for a quote and a backslash:
+ * <pre>
+ *   aspect &lt;path&gt;...      load (or reload) aspect files
+ *   weave &lt;path&gt;...       weave the given source files, reparsing only the files that changed
+ *   invalidate &lt;path&gt;...  drop the resident state of the given files (all files if none is given)
+ *   stats                print resident state statistics
+ *   shutdown             stop the daemon
+ * </pre>
+ * every response is terminated by a line {@code ok} or {@code error <message>}, a woven unit is sent as
+ * a line {@code unit <path> <line count>} followed by that many lines of pretty printed source. the source may
+ * hold lines of its own such as {@code end}, hence clients read the count, the last field of the header, rather
+ * than looking for a terminator.
+ */
+public final class WeaveDaemon {
+    public static final String RESPONSE_OK = "ok";
+    public static final String RESPONSE_ERROR = "error";
+
+    private static final class ResidentUnit {
+        private final String fingerprint;
+        private final CompilationUnits compilationUnits;
+        private VFAnalysis kindAnalysis = null;
+
+        private ResidentUnit(String fingerprint, CompilationUnits compilationUnits) {
+            this.fingerprint = fingerprint;
+            this.compilationUnits = compilationUnits;
+        }
+
+        /* computed on first request and kept until the unit changes */
+        private synchronized VFAnalysis getKindAnalysis() {
+            if (kindAnalysis == null) kindAnalysis = analyze(compilationUnits);
+            return kindAnalysis;
+        }
+
+        private synchronized boolean isAnalyzed() {
+            return kindAnalysis != null;
+        }
+    }
+
+    private final Map<String, ResidentUnit> residentUnits = new ConcurrentHashMap<>();
+    private final Map<String, ResidentUnit> residentAspects = new ConcurrentHashMap<>();
+    private final Map<String, java.util.List<Action>> residentActions = new ConcurrentHashMap<>();
+    private final BiFunction<Collection<Action>, VFAnalysis, ? extends AbstractProgramTransformer<?, ?>> transformerFactory;
+    private final boolean inplaceWeaving;
+    private final ParseCache parseCache;
+    private final ExecutorService executor;
+    private long requestCount = 0;
+    private long reparseCount = 0;
+    private volatile boolean running = true;
+
+    /**
+     * @param transformerFactory builds the program transformer for a weave from the resident actions and the
+     *                           kind analysis of the unit to weave (may be null, in which case units are
+     *                           only parsed)
+     * @param inplaceWeaving {@code true} if the transformers modify the unit they transform, such transformers
+     *                       are given a copy of the resident unit (with a kind analysis computed on that copy),
+     *                       while copy transformers are given the resident unit and its cached kind analysis
+     * @param parseCache on-disk parse cache consulted on reparse (may be null)
+     * @param parallelism number of worker threads used to parse and weave
+     */
+    public WeaveDaemon(
+            BiFunction<Collection<Action>, VFAnalysis, ? extends AbstractProgramTransformer<?, ?>> transformerFactory,
+            boolean inplaceWeaving,
+            ParseCache parseCache,
+            int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException();
+        this.transformerFactory = transformerFactory;
+        this.inplaceWeaving = inplaceWeaving;
+        this.parseCache = parseCache;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "am-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** serve requests from the given streams until shutdown or end of input */
+    public void serve(InputStream inputStream, OutputStream outputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) continue;
+            handle(line, writer);
+            writer.flush();
+        }
+    }
+
+    /** serve requests from connections on a loopback socket until shutdown, clients are served one at a time */
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket.getInputStream(), socket.getOutputStream());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public synchronized void handle(String request, PrintWriter writer) {
+        requestCount = requestCount + 1;
+        java.util.List<String> tokens;
+        try {
+            tokens = tokenize(request);
+        } catch (IllegalArgumentException exception) {
+            writer.println(String.format("%s unterminated quote", RESPONSE_ERROR));
+            return;
+        }
+        if (tokens.isEmpty()) {
+            writer.println(String.format("%s empty request", RESPONSE_ERROR));
+            return;
+        }
+        String command = tokens.remove(0);
+        try {
+            switch (command) {
+                case "aspect":
+                    handleAspect(tokens, writer);
+                    break;
+                case "weave":
+                    handleWeave(tokens, writer);
+                    break;
+                case "invalidate":
+                    handleInvalidate(tokens);
+                    break;
+                case "stats":
+                    handleStats(writer);
+                    break;
+                case "shutdown":
+                    running = false;
+                    executor.shutdown();
+                    break;
+                default:
+                    writer.println(String.format("%s unknown command %s", RESPONSE_ERROR, command));
+                    return;
+            }
+            writer.println(RESPONSE_OK);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            writer.println(String.format("%s interrupted", RESPONSE_ERROR));
+        } catch (ExecutionException | RuntimeException exception) {
+            Throwable cause = (exception instanceof ExecutionException) ? exception.getCause() : exception;
+            writer.println(String.format("%s %s", RESPONSE_ERROR, String.valueOf(cause).replace('\n', ' ')));
+        }
+    }
+
+    /*
+     * split a request into its space separated arguments, double quoted arguments may hold spaces and the escapes
+     * \" and \\. throws IllegalArgumentException if a quote is left open.
+     */
+    private static java.util.List<String> tokenize(String request) {
+        java.util.List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for (int index = 0; index < request.length(); index++) {
+            char character = request.charAt(index);
+            if (quoted) {
+                if (character == '\\' && index + 1 < request.length()) {
+                    token.append(request.charAt(++index));
+                } else if (character == '"') {
+                    quoted = false;
+                } else {
+                    token.append(character);
+                }
+            } else if (Character.isWhitespace(character)) {
+                if (token != null) tokens.add(token.toString());
+                token = null;
+            } else {
+                if (token == null) token = new StringBuilder();
+                if (character == '"') {
+                    quoted = true;
+                } else {
+                    token.append(character);
+                }
+            }
+        }
+        if (quoted) throw new IllegalArgumentException();
+        if (token != null) tokens.add(token.toString());
+        return tokens;
+    }
+
+    private void handleAspect(java.util.List<String> paths, PrintWriter writer)
+            throws InterruptedException, ExecutionException {
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+        Set<String> changed = refresh(paths, residentAspects, diagnostics);
+        for (String path : paths) {
+            ResidentUnit aspect = residentAspects.get(path);
+            if (aspect == null) {
+                residentActions.remove(path);
+            } else if (changed.contains(path) || !residentActions.containsKey(path)) {
+                residentActions.put(path, BatchWeaver.collectActions(path, aspect.compilationUnits));
+            }
+        }
+        reportDiagnostics(diagnostics, writer);
+    }
+
+    private void handleWeave(java.util.List<String> paths, PrintWriter writer)
+            throws InterruptedException, ExecutionException {
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+        refresh(paths, residentUnits, diagnostics);
+
+        java.util.List<Action> actions = new LinkedList<>();
+        residentActions.values().forEach(actions::addAll);
+
+        Map<String, Future<CompilationUnits>> futureMap = new LinkedHashMap<>();
+        for (String path : paths) {
+            ResidentUnit unit = residentUnits.get(path);
+            if (unit == null) continue;
+            futureMap.put(path, executor.submit(() -> {
+                if (transformerFactory == null) return unit.compilationUnits;
+                if (inplaceWeaving) {
+                    /* keep the resident tree pristine */
+                    CompilationUnits compilationUnits = unit.compilationUnits.treeCopy();
+                    return transformerFactory.apply(actions, analyze(compilationUnits)).transform(compilationUnits);
+                } else {
+                    return transformerFactory.apply(actions, unit.getKindAnalysis()).transform(unit.compilationUnits);
+                }
+            }));
+        }
+        for (Map.Entry<String, Future<CompilationUnits>> entry : futureMap.entrySet()) {
+            CompilationUnits woven = entry.getValue().get();
+            woven.setIndentTab("    ");
+            String source = woven.getPrettyPrinted();
+            while (source.endsWith("\n")) source = source.substring(0, source.length() - 1);
+            String[] lines = source.isEmpty() ? new String[0] : source.split("\r?\n", -1);
+            writer.println(String.format("unit %s %d", entry.getKey(), lines.length));
+            for (String line : lines) writer.println(line);
+        }
+        reportDiagnostics(diagnostics, writer);
+    }
+
+    private void handleInvalidate(java.util.List<String> paths) {
+        if (paths.isEmpty()) {
+            residentUnits.clear();
+            residentAspects.clear();
+            residentActions.clear();
+            return;
+        }
+        for (String path : paths) {
+            residentUnits.remove(path);
+            residentAspects.remove(path);
+            residentActions.remove(path);
+        }
+    }
+
+    private void handleStats(PrintWriter writer) {
+        int actionCount = residentActions.values().stream().mapToInt(java.util.List::size).sum();
+        long analyzedCount = residentUnits.values().stream().filter(ResidentUnit::isAnalyzed).count();
+        writer.println(String.format("requests %d", requestCount));
+        writer.println(String.format("units %d", residentUnits.size()));
+        writer.println(String.format("analyzed %d", analyzedCount));
+        writer.println(String.format("aspects %d", residentAspects.size()));
+        writer.println(String.format("actions %d", actionCount));
+        writer.println(String.format("reparsed %d", reparseCount));
+        if (parseCache != null) {
+            writer.println(String.format("cache %d/%d", parseCache.getHitCount(), parseCache.getHitCount() + parseCache.getMissCount()));
+        }
+    }
+
+    private static VFAnalysis analyze(CompilationUnits compilationUnits) {
+        return OverrideVFAnalysis.analyzeKinds(compilationUnits);
+    }
+
+    /* reparse the files whose content changed since they were made resident, in parallel */
+    private Set<String> refresh(java.util.List<String> paths, Map<String, ResidentUnit> residentMap, DiagnosticsCollector diagnostics)
+            throws InterruptedException, ExecutionException {
+        Set<String> changed = new HashSet<>();
+        Map<String, Future<Optional<ResidentUnit>>> futureMap = new LinkedHashMap<>();
+        for (String path : paths) {
+            Optional<String> fingerprint = ParseCache.contentKey(Paths.get(path));
+            if (!fingerprint.isPresent()) {
+                residentMap.remove(path);
+                changed.add(path);
+                diagnostics.reportError(path, "cannot read file");
+                continue;
+            }
+            ResidentUnit resident = residentMap.get(path);
+            if (resident != null && resident.fingerprint.equals(fingerprint.get())) continue;
+            futureMap.put(path, executor.submit(() -> {
+                Optional<CompilationUnits> parsed = (parseCache == null) ?
+                        Main.parse(path, diagnostics) :
+                        parseCache.parse(path, diagnostics);
+                return parsed.map(compilationUnits -> new ResidentUnit(fingerprint.get(), compilationUnits));
+            }));
+        }
+        for (Map.Entry<String, Future<Optional<ResidentUnit>>> entry : futureMap.entrySet()) {
+            Optional<ResidentUnit> unit = entry.getValue().get();
+            reparseCount = reparseCount + 1;
+            changed.add(entry.getKey());
+            if (unit.isPresent()) {
+                residentMap.put(entry.getKey(), unit.get());
+            } else {
+                residentMap.remove(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    private static void reportDiagnostics(DiagnosticsCollector diagnostics, PrintWriter writer) {
+        if (diagnostics.getMessages().isEmpty() && diagnostics.isOk()) return;
+        StringWriter report = new StringWriter();
+        diagnostics.printReport(new PrintWriter(report));
+        for (String line : report.toString().split("\n")) {
+            writer.println(String.format("diagnostic %s", line));
+        }
+    }
+}
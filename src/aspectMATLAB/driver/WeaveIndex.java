@@ -0,0 +1,349 @@
+package aspectMATLAB.driver;
+
+import aspectMATLAB.abstractPattern.PatternExpansionCache;
+import aspectMATLAB.serialization.deserializers.BinaryDeserializer;
+import aspectMATLAB.serialization.serializers.BinarySerializer;
+import aspectMATLAB.serialization.serializers.JSONSerializer;
+import aspectMATLAB.transformer.aspect.JoinPointMatcherIndex;
+import ast.*;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * record of a previous weave, used to decide which programs have to be woven again.
+ * for each woven program the index keeps the fingerprint of its source, the actions that matched it and
+ * the key summary of its source (see {@link JoinPointMatcherIndex.KeySummary}), together with the
+ * fingerprints of all the actions known at that time. a program is woven again if its source changed, if
+ * an action that matched it changed or disappeared, or if a new or edited action may match it. by default
+ * a new or edited action may match a program if it is a candidate under one of the keys of the program,
+ * actions not declared through {@link #setActions} are assumed to match every program.
+ * <p>
+ * an index loaded from a file keeps the woven units of its programs in the directory
+ * {@code <index file>.units}, so that programs found up to date are reused instead of woven again.
+ */
+public final class WeaveIndex {
+    private static final long FORMAT_VERSION = 2;
+    private static final String RESULT_DIRECTORY_SUFFIX = ".units";
+    private static final String RESULT_EXTENSION = ".amb";
+
+    private static final class Entry {
+        private final String programFingerprint;
+        private final Set<String> matchedActions;
+        private final JoinPointMatcherIndex.KeySummary keySummary;
+
+        private Entry(
+                String programFingerprint,
+                Set<String> matchedActions,
+                JoinPointMatcherIndex.KeySummary keySummary) {
+            this.programFingerprint = programFingerprint;
+            this.matchedActions = Collections.unmodifiableSet(new HashSet<>(matchedActions));
+            this.keySummary = keySummary;
+        }
+    }
+
+    private final Map<String, Entry> entryMap = new HashMap<>();
+    private final Map<String, String> previousActionFingerprints = new HashMap<>();
+    private final Map<String, String> currentActionFingerprints = new HashMap<>();
+    private final Set<String> changedActions = new HashSet<>();
+    private final Set<String> confirmedPrograms = new HashSet<>();
+    private final Map<String, aspectMATLAB.abstractPattern.Action> actionMap = new HashMap<>();
+    private BiPredicate<String, String> mayMatch = null;
+    private final Path resultDirectory;
+
+    /** empty index keeping no woven units */
+    public WeaveIndex() {
+        this(null);
+    }
+
+    private WeaveIndex(Path resultDirectory) {
+        this.resultDirectory = resultDirectory;
+    }
+
+    /**
+     * load a previously saved index, a missing or unreadable index file yields an empty index. the woven units
+     * of the index are kept in the directory {@code <index file>.units}.
+     */
+    public static WeaveIndex load(Path indexFile) {
+        Path resultDirectory = indexFile.resolveSibling(indexFile.getFileName() + RESULT_DIRECTORY_SUFFIX);
+        WeaveIndex index = new WeaveIndex(resultDirectory);
+        if (!Files.isRegularFile(indexFile)) return index;
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            if (!Long.valueOf(FORMAT_VERSION).equals(root.get("version"))) return index;
+
+            JSONObject actions = (JSONObject) root.get("actions");
+            for (Object key : actions.keySet()) {
+                index.previousActionFingerprints.put((String) key, (String) actions.get(key));
+            }
+            JSONObject programs = (JSONObject) root.get("programs");
+            for (Object key : programs.keySet()) {
+                JSONObject program = (JSONObject) programs.get(key);
+                Set<String> matchedActions = new HashSet<>();
+                for (Object action : (JSONArray) program.get("matched")) matchedActions.add((String) action);
+                Set<String> nodeClassNames = new HashSet<>();
+                for (Object name : (JSONArray) program.get("types")) nodeClassNames.add((String) name);
+                Set<String> identifiers = new HashSet<>();
+                for (Object identifier : (JSONArray) program.get("identifiers")) identifiers.add((String) identifier);
+                index.entryMap.put((String) key, new Entry(
+                        (String) program.get("fingerprint"),
+                        matchedActions,
+                        new JoinPointMatcherIndex.KeySummary(nodeClassNames, identifiers)
+                ));
+            }
+        } catch (IOException | ParseException | ClassCastException | NullPointerException exception) {
+            return new WeaveIndex(resultDirectory);
+        }
+        index.currentActionFingerprints.putAll(index.previousActionFingerprints);
+        return index;
+    }
+
+    /**
+     * save the index, entries of programs that were neither woven nor found up to date since the actions
+     * were declared are dropped if the action changes affect them, so that they are woven on the next run
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void save(Path indexFile) throws IOException {
+        entryMap.entrySet().removeIf(entry ->
+                !confirmedPrograms.contains(entry.getKey()) && isAffectedByActionChange(entry.getKey(), entry.getValue())
+        );
+
+        JSONObject actions = new JSONObject();
+        actions.putAll(currentActionFingerprints);
+        JSONObject programs = new JSONObject();
+        for (Map.Entry<String, Entry> entry : entryMap.entrySet()) {
+            JSONObject program = new JSONObject();
+            JSONArray matched = new JSONArray();
+            matched.addAll(entry.getValue().matchedActions);
+            JSONArray nodeClassNames = new JSONArray();
+            nodeClassNames.addAll(entry.getValue().keySummary.getNodeClassNames());
+            JSONArray identifiers = new JSONArray();
+            identifiers.addAll(entry.getValue().keySummary.getIdentifiers());
+            program.put("fingerprint", entry.getValue().programFingerprint);
+            program.put("matched", matched);
+            program.put("types", nodeClassNames);
+            program.put("identifiers", identifiers);
+            programs.put(entry.getKey(), program);
+        }
+        JSONObject root = new JSONObject();
+        root.put("version", FORMAT_VERSION);
+        root.put("actions", actions);
+        root.put("programs", programs);
+
+        Path parent = indexFile.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            root.writeJSONString(writer);
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * set the predicate deciding if a new or edited action (first argument) may match a program (second
+     * argument) that it did not match before, replacing the decision based on the key summaries
+     */
+    public synchronized WeaveIndex setMayMatch(BiPredicate<String, String> mayMatch) {
+        this.mayMatch = Optional.ofNullable(mayMatch).orElseThrow(NullPointerException::new);
+        return this;
+    }
+
+    /** declare the actions of the current weave, keyed by action name */
+    public synchronized WeaveIndex setActionFingerprints(Map<String, String> actionFingerprints) {
+        Optional.ofNullable(actionFingerprints).orElseThrow(NullPointerException::new);
+        currentActionFingerprints.clear();
+        currentActionFingerprints.putAll(actionFingerprints);
+
+        changedActions.clear();
+        Set<String> actionNames = new HashSet<>(previousActionFingerprints.keySet());
+        actionNames.addAll(currentActionFingerprints.keySet());
+        for (String actionName : actionNames) {
+            if (!Objects.equals(previousActionFingerprints.get(actionName), currentActionFingerprints.get(actionName))) {
+                changedActions.add(actionName);
+            }
+        }
+        return this;
+    }
+
+    /** declare the actions of the current weave, whose patterns decide which programs a new action may match */
+    public synchronized WeaveIndex setActions(Collection<aspectMATLAB.abstractPattern.Action> actions) {
+        Optional.ofNullable(actions).orElseThrow(NullPointerException::new);
+        actionMap.clear();
+        for (aspectMATLAB.abstractPattern.Action action : actions) actionMap.put(action.getQualifiedName(), action);
+        return this;
+    }
+
+    public synchronized Set<String> getActionNames() {
+        return Collections.unmodifiableSet(new HashSet<>(currentActionFingerprints.keySet()));
+    }
+
+    public synchronized boolean needsWeaving(String programKey, String programFingerprint) {
+        Entry entry = entryMap.get(programKey);
+        if (entry == null) return true;
+        if (!entry.programFingerprint.equals(programFingerprint)) return true;
+        if (isAffectedByActionChange(programKey, entry)) return true;
+        confirmedPrograms.add(programKey);
+        return false;
+    }
+
+    private boolean isAffectedByActionChange(String programKey, Entry entry) {
+        for (String actionName : changedActions) {
+            if (entry.matchedActions.contains(actionName)) return true;
+            if (!currentActionFingerprints.containsKey(actionName)) continue;
+            if (mayMatch(actionName, programKey, entry)) return true;
+        }
+        return false;
+    }
+
+    private boolean mayMatch(String actionName, String programKey, Entry entry) {
+        if (mayMatch != null) return mayMatch.test(actionName, programKey);
+        aspectMATLAB.abstractPattern.Action action = actionMap.get(actionName);
+        return action == null || entry.keySummary.mayMatch(action);
+    }
+
+    /**
+     * record a woven program
+     * @param programKey program key, e.g. its path
+     * @param programFingerprint fingerprint of the program source
+     * @param matchedActions qualified names of the actions that matched the program
+     * @param keySummary key summary of the program source, taken before weaving
+     */
+    public synchronized void record(
+            String programKey,
+            String programFingerprint,
+            Set<String> matchedActions,
+            JoinPointMatcherIndex.KeySummary keySummary) {
+        Optional.ofNullable(programKey).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(programFingerprint).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(keySummary).orElseThrow(NullPointerException::new);
+        entryMap.put(programKey, new Entry(programFingerprint, matchedActions, keySummary));
+        confirmedPrograms.add(programKey);
+    }
+
+    public synchronized void remove(String programKey) {
+        entryMap.remove(programKey);
+        confirmedPrograms.remove(programKey);
+        if (resultDirectory == null) return;
+        try {
+            Files.deleteIfExists(resultPath(programKey));
+        } catch (IOException ignored) {
+            /* a stale unit is never read, its program having no entry */
+        }
+    }
+
+    /**
+     * keep the woven unit of a recorded program, to be reused while the program is up to date. does nothing if
+     * the index was not loaded from a file.
+     * @throws IOException if the unit cannot be written
+     */
+    public void storeResult(String programKey, CompilationUnits compilationUnits) throws IOException {
+        Optional.ofNullable(programKey).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(compilationUnits).orElseThrow(NullPointerException::new);
+        if (resultDirectory == null) return;
+        Path target = resultPath(programKey);
+        Files.createDirectories(resultDirectory);
+        Path temporary = Files.createTempFile(resultDirectory, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                new BinarySerializer().serialize(compilationUnits, outputStream);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return the woven unit kept for the program, empty if none is kept or if it cannot be read, in which case
+     *         the program has to be woven again
+     */
+    public Optional<CompilationUnits> loadResult(String programKey) {
+        Optional.ofNullable(programKey).orElseThrow(NullPointerException::new);
+        if (resultDirectory == null) return Optional.empty();
+        Path result = resultPath(programKey);
+        if (!Files.isRegularFile(result)) return Optional.empty();
+        try (InputStream inputStream = Files.newInputStream(result)) {
+            ASTNode compilationUnits = new BinaryDeserializer().deserialize(inputStream);
+            if (!(compilationUnits instanceof CompilationUnits)) return Optional.empty();
+            return Optional.of((CompilationUnits) compilationUnits);
+        } catch (IOException | RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private Path resultPath(String programKey) {
+        return resultDirectory.resolve(fingerprint(programKey) + RESULT_EXTENSION);
+    }
+
+    public synchronized Set<String> getMatchedActions(String programKey) {
+        Entry entry = entryMap.get(programKey);
+        if (entry == null) return Collections.emptySet();
+        return entry.matchedActions;
+    }
+
+    /**
+     * fingerprints of the actions declared in the aspect, keyed by aspect name and action name.
+     * the fingerprint of an action covers its pattern with the named patterns expanded, its body, and the
+     * rest of the aspect (properties, methods, ...) the body may refer to, source positions are ignored
+     */
+    public static Map<String, String> actionFingerprints(AspectDef aspectDef) {
+        Optional.ofNullable(aspectDef).orElseThrow(NullPointerException::new);
+        JSONSerializer serializer = new JSONSerializer();
+
+        PatternExpansionCache expansionCache = PatternExpansionCache.fromAspect(aspectDef);
+
+        StringBuilder sharedBuilder = new StringBuilder();
+        for (Properties properties : aspectDef.getPropertyList()) sharedBuilder.append(serializer.serializeAsString(properties));
+        for (Methods methods : aspectDef.getMethodList()) sharedBuilder.append(serializer.serializeAsString(methods));
+        for (ClassEvents classEvents : aspectDef.getClassEventList()) sharedBuilder.append(serializer.serializeAsString(classEvents));
+        for (Enumerations enumerations : aspectDef.getEnumerationList()) sharedBuilder.append(serializer.serializeAsString(enumerations));
+        String sharedFingerprint = fingerprint(sharedBuilder.toString());
+
+        Map<String, String> fingerprintMap = new HashMap<>();
+        for (Actions actions : aspectDef.getActionList()) {
+            for (ast.Action action : actions.getActionList()) {
+                Expr expandedPattern = expansionCache.expand(action.getExpr());
+                fingerprintMap.put(
+                        String.format("%s.%s", aspectDef.getName(), action.getName()),
+                        fingerprint(
+                                sharedFingerprint,
+                                serializer.serializeAsString(expandedPattern),
+                                serializer.serializeAsString(action)
+                        )
+                );
+            }
+        }
+        return fingerprintMap;
+    }
+
+    public static String fingerprint(String... contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String content : contents) {
+                digest.update(content.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder builder = new StringBuilder();
+            for (byte value : digest.digest()) builder.append(String.format("%02x", value));
+            return builder.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            /* control flow should not reach here */
+            throw new AssertionError(exception);
+        }
+    }
+}
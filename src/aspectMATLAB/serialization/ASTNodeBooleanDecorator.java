@@ -0,0 +1,18 @@
+package aspectMATLAB.serialization;
+
+import ast.ASTNode;
+
+/** boolean valued decorator, the serializers read the decoration through {@link #decorateAsBoolean} */
+public interface ASTNodeBooleanDecorator extends ASTNodeDecorator<Boolean> {
+    /** @return {@code false} if the node carries no decoration */
+    default boolean isDecorated(ASTNode astNode) {
+        return true;
+    }
+
+    boolean decorateAsBoolean(ASTNode astNode);
+
+    @Override
+    default Boolean decorate(ASTNode astNode) {
+        return isDecorated(astNode) ? decorateAsBoolean(astNode) : null;
+    }
+}
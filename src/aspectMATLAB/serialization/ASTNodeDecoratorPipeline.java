@@ -0,0 +1,62 @@
+package aspectMATLAB.serialization;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * decorators of a serializer, kept in registration order in a flat array. tags are checked once when a decorator
+ * is appended, against the other decorators and against the names the serialized form itself uses, hence
+ * decorating a node neither allocates nor checks tags.
+ */
+public final class ASTNodeDecoratorPipeline {
+    public enum Kind { NUMBER, STRING, BOOLEAN }
+
+    private final Predicate<String> reservedNames;
+    private ASTNodeDecorator<?>[] decorators = new ASTNodeDecorator<?>[0];
+    private Kind[] kinds = new Kind[0];
+
+    public ASTNodeDecoratorPipeline() {
+        this(name -> false);
+    }
+
+    /** @param reservedNames names used by the serialized form, rejected as decorator tags */
+    public ASTNodeDecoratorPipeline(Predicate<String> reservedNames) {
+        this.reservedNames = Optional.ofNullable(reservedNames).orElseThrow(NullPointerException::new);
+    }
+
+    /**
+     * @param decorator decorator to append
+     * @param kind kind of the decoration
+     * @return {@code false} if the decorator is already registered, in which case the pipeline is unchanged
+     * @throws IllegalArgumentException if the tag is reserved, or used by another decorator
+     */
+    public boolean append(ASTNodeDecorator<?> decorator, Kind kind) {
+        Optional.ofNullable(decorator).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(kind).orElseThrow(NullPointerException::new);
+        String tag = Optional.ofNullable(decorator.tag()).orElseThrow(NullPointerException::new);
+        for (ASTNodeDecorator<?> registered : decorators) {
+            if (registered == decorator) return false;
+            if (registered.tag().equals(tag)) throw new IllegalArgumentException(tag);
+        }
+        if (reservedNames.test(tag)) throw new IllegalArgumentException(tag);
+
+        decorators = Arrays.copyOf(decorators, decorators.length + 1);
+        decorators[decorators.length - 1] = decorator;
+        kinds = Arrays.copyOf(kinds, kinds.length + 1);
+        kinds[kinds.length - 1] = kind;
+        return true;
+    }
+
+    public int size() {
+        return decorators.length;
+    }
+
+    public ASTNodeDecorator<?> get(int index) {
+        return decorators[index];
+    }
+
+    public Kind getKind(int index) {
+        return kinds[index];
+    }
+}
@@ -0,0 +1,12 @@
+package aspectMATLAB.serialization;
+
+import ast.ASTNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ASTNodeDeserializer<R extends ASTNode> {
+    R deserialize(InputStream inputStream) throws IOException;
+    R deserializeFromString(String string) throws IOException;
+    ASTNodeDeserializer<R> appendDecorator(ASTNodeDecorator<?> decorator);
+}
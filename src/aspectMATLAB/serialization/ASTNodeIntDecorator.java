@@ -0,0 +1,18 @@
+package aspectMATLAB.serialization;
+
+import ast.ASTNode;
+
+/** int valued decorator, the serializers read the decoration through {@link #decorateAsInt} without boxing */
+public interface ASTNodeIntDecorator extends ASTNodeDecorator<Integer> {
+    /** @return {@code false} if the node carries no decoration */
+    default boolean isDecorated(ASTNode astNode) {
+        return true;
+    }
+
+    int decorateAsInt(ASTNode astNode);
+
+    @Override
+    default Integer decorate(ASTNode astNode) {
+        return isDecorated(astNode) ? decorateAsInt(astNode) : null;
+    }
+}
@@ -0,0 +1,373 @@
+package aspectMATLAB.serialization;
+
+import ast.*;
+import natlab.DecIntNumericLiteralValue;
+import natlab.FPNumericLiteralValue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * token (terminal attribute) and named child layout of the ast node types declared in natlab.ast. the child
+ * fields follow the order in which the json and xml serializers write them, help comment lists are omitted.
+ */
+public final class ASTNodeSchema {
+    public static final class Token {
+        private final String name;
+        private final Function<ASTNode, String> getter;
+        private final BiConsumer<ASTNode, String> setter;
+
+        private Token(String name, Function<ASTNode, String> getter, BiConsumer<ASTNode, String> setter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String get(ASTNode astNode) {
+            return getter.apply(astNode);
+        }
+
+        public void set(ASTNode astNode, String value) {
+            setter.accept(astNode, value);
+        }
+    }
+
+    public static final class Field {
+        public enum Kind { CHILD, OPT, LIST }
+
+        private final String name;
+        private final Kind kind;
+        private final Function<ASTNode, ASTNode> getter;
+        private final BiConsumer<ASTNode, ASTNode> setter;
+
+        private Field(String name, Kind kind, Function<ASTNode, ASTNode> getter, BiConsumer<ASTNode, ASTNode> setter) {
+            this.name = name;
+            this.kind = kind;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** the child, the {@link ast.List} for a list field, or {@code null} for an absent optional child */
+        public ASTNode get(ASTNode astNode) {
+            return getter.apply(astNode);
+        }
+
+        /**
+         * @param astNode parent node
+         * @param value the child, an {@link ast.List} for a list field, or {@code null} for an absent optional child
+         * @throws ClassCastException if the value does not fit the field
+         */
+        public void set(ASTNode astNode, ASTNode value) {
+            setter.accept(astNode, value);
+        }
+    }
+
+    private static final Map<Class<?>, java.util.List<Token>> declaredTokens = new HashMap<>();
+    private static final Map<Class<?>, java.util.List<Token>> tokenCache = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, java.util.List<Field>> declaredFields = new HashMap<>();
+    private static final Map<Class<?>, java.util.List<Field>> fieldCache = new ConcurrentHashMap<>();
+    private static final Map<String, Class<? extends ASTNode>> classCache = new ConcurrentHashMap<>();
+    private static final java.util.Set<String> tokenNames = new HashSet<>();
+    private static final java.util.Set<String> fieldNames = new HashSet<>();
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode> void declare(
+            Class<T> nodeClass, String name, Function<T, String> getter, BiConsumer<T, String> setter) {
+        tokenNames.add(name);
+        declaredTokens.computeIfAbsent(nodeClass, key -> new LinkedList<>()).add(new Token(
+                name,
+                astNode -> getter.apply((T) astNode),
+                (astNode, value) -> setter.accept((T) astNode, value)
+        ));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode, C extends ASTNode> void child(
+            Class<T> nodeClass, String name, Function<T, C> getter, BiConsumer<T, C> setter) {
+        fieldNames.add(name);
+        declaredFields.computeIfAbsent(nodeClass, key -> new LinkedList<>()).add(new Field(
+                name, Field.Kind.CHILD,
+                astNode -> getter.apply((T) astNode),
+                (astNode, value) -> setter.accept((T) astNode, (C) value)
+        ));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode, C extends ASTNode> void opt(
+            Class<T> nodeClass, String name, Predicate<T> has, Function<T, C> getter, BiConsumer<T, Opt<C>> setter) {
+        fieldNames.add(name);
+        declaredFields.computeIfAbsent(nodeClass, key -> new LinkedList<>()).add(new Field(
+                name, Field.Kind.OPT,
+                astNode -> has.test((T) astNode) ? getter.apply((T) astNode) : null,
+                (astNode, value) -> setter.accept((T) astNode, (value == null) ? new Opt<>() : new Opt<>((C) value))
+        ));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode, C extends ASTNode> void list(
+            Class<T> nodeClass, String name, Function<T, ast.List<C>> getter, BiConsumer<T, ast.List<C>> setter) {
+        fieldNames.add(name);
+        declaredFields.computeIfAbsent(nodeClass, key -> new LinkedList<>()).add(new Field(
+                name, Field.Kind.LIST,
+                astNode -> getter.apply((T) astNode),
+                (astNode, value) -> setter.accept((T) astNode, (ast.List<C>) value)
+        ));
+    }
+
+    static {
+        declare(ClassDef.class, "Name", ClassDef::getName, ClassDef::setName);
+        declare(Attribute.class, "Key", Attribute::getKey, Attribute::setKey);
+        declare(SuperClass.class, "Name", SuperClass::getName, SuperClass::setName);
+        declare(Property.class, "Name", Property::getName, Property::setName);
+        declare(Signature.class, "Name", Signature::getName, Signature::setName);
+        declare(PropertyAccess.class, "Access", PropertyAccess::getAccess, PropertyAccess::setAccess);
+        declare(PropertyAccess.class, "Name", PropertyAccess::getName, PropertyAccess::setName);
+        declare(PropertyAccessSignature.class, "Access", PropertyAccessSignature::getAccess, PropertyAccessSignature::setAccess);
+        declare(PropertyAccessSignature.class, "Name", PropertyAccessSignature::getName, PropertyAccessSignature::setName);
+        declare(Event.class, "Name", Event::getName, Event::setName);
+        declare(ast.Enumeration.class, "Name", ast.Enumeration::getName, ast.Enumeration::setName);
+        declare(ShellCommandStmt.class, "Command", ShellCommandStmt::getCommand, ShellCommandStmt::setCommand);
+        declare(ForStmt.class, "isParfor",
+                forStmt -> Boolean.toString(forStmt.getisParfor()),
+                (forStmt, value) -> forStmt.setisParfor(Boolean.parseBoolean(value)));
+        /*
+         * numeric literals keep their source text and imaginary flag, the flag is declared first, hence restored
+         * first, and carried over when the text is restored (a missing flag stands for a real literal)
+         */
+        declare(IntLiteralExpr.class, "Imaginary",
+                literal -> Boolean.toString(literal.getValue().isImaginary()),
+                (literal, value) -> literal.setValue(new DecIntNumericLiteralValue("0", Boolean.parseBoolean(value))));
+        declare(IntLiteralExpr.class, "Value",
+                literal -> literal.getValue().getText(),
+                (literal, value) -> literal.setValue(new DecIntNumericLiteralValue(
+                        value,
+                        literal.getValue() != null && literal.getValue().isImaginary()
+                )));
+        declare(FPLiteralExpr.class, "Imaginary",
+                literal -> Boolean.toString(literal.getValue().isImaginary()),
+                (literal, value) -> literal.setValue(new FPNumericLiteralValue("0", Boolean.parseBoolean(value))));
+        declare(FPLiteralExpr.class, "Value",
+                literal -> literal.getValue().getText(),
+                (literal, value) -> literal.setValue(new FPNumericLiteralValue(
+                        value,
+                        literal.getValue() != null && literal.getValue().isImaginary()
+                )));
+        declare(StringLiteralExpr.class, "Value", StringLiteralExpr::getValue, StringLiteralExpr::setValue);
+        declare(HelpComment.class, "Text", HelpComment::getText, HelpComment::setText);
+        declare(Name.class, "ID", Name::getID, Name::setID);
+        declare(AspectDef.class, "Name", AspectDef::getName, AspectDef::setName);
+        declare(Action.class, "Name", Action::getName, Action::setName);
+        declare(Action.class, "Type", Action::getType, Action::setType);
+        declare(Pattern.class, "Name", Pattern::getName, Pattern::setName);
+    }
+
+    static {
+        list(CompilationUnits.class, "Program", CompilationUnits::getProgramList, CompilationUnits::setProgramList);
+        list(Script.class, "Stmt", Script::getStmtList, Script::setStmtList);
+        list(FunctionList.class, "Function", FunctionList::getFunctionList, FunctionList::setFunctionList);
+        list(ast.Function.class, "OutputParam", ast.Function::getOutputParamList, ast.Function::setOutputParamList);
+        child(ast.Function.class, "Name", ast.Function::getName, ast.Function::setName);
+        list(ast.Function.class, "InputParam", ast.Function::getInputParamList, ast.Function::setInputParamList);
+        list(ast.Function.class, "Stmt", ast.Function::getStmtList, ast.Function::setStmtList);
+        list(ast.Function.class, "NestedFunction", ast.Function::getNestedFunctionList, ast.Function::setNestedFunctionList);
+        list(ClassDef.class, "Attribute", ClassDef::getAttributeList, ClassDef::setAttributeList);
+        list(ClassDef.class, "SuperClass", ClassDef::getSuperClassList, ClassDef::setSuperClassList);
+        list(ClassDef.class, "Property", ClassDef::getPropertyList, ClassDef::setPropertyList);
+        list(ClassDef.class, "Method", ClassDef::getMethodList, ClassDef::setMethodList);
+        list(ClassDef.class, "ClassEvent", ClassDef::getClassEventList, ClassDef::setClassEventList);
+        list(ClassDef.class, "Enumeration", ClassDef::getEnumerationList, ClassDef::setEnumerationList);
+        child(Attribute.class, "Expr", Attribute::getExpr, Attribute::setExpr);
+        list(Properties.class, "Attribute", Properties::getAttributeList, Properties::setAttributeList);
+        list(Properties.class, "Property", Properties::getPropertyList, Properties::setPropertyList);
+        list(Methods.class, "Attribute", Methods::getAttributeList, Methods::setAttributeList);
+        list(Methods.class, "Signature", Methods::getSignatureList, Methods::setSignatureList);
+        list(Methods.class, "PropAcc", Methods::getPropAccList, Methods::setPropAccList);
+        list(Methods.class, "Function", Methods::getFunctionList, Methods::setFunctionList);
+        list(Methods.class, "PropAccSig", Methods::getPropAccSigList, Methods::setPropAccSigList);
+        list(ClassEvents.class, "Attribute", ClassEvents::getAttributeList, ClassEvents::setAttributeList);
+        list(ClassEvents.class, "Event", ClassEvents::getEventList, ClassEvents::setEventList);
+        list(Enumerations.class, "Attribute", Enumerations::getAttributeList, Enumerations::setAttributeList);
+        list(Enumerations.class, "Enumeration", Enumerations::getEnumerationList, Enumerations::setEnumerationList);
+        child(Property.class, "Expr", Property::getExpr, Property::setExpr);
+        list(Signature.class, "OutputParam", Signature::getOutputParamList, Signature::setOutputParamList);
+        list(Signature.class, "InputParam", Signature::getInputParamList, Signature::setInputParamList);
+        list(PropertyAccess.class, "OutputParam", PropertyAccess::getOutputParamList, PropertyAccess::setOutputParamList);
+        list(PropertyAccess.class, "InputParam", PropertyAccess::getInputParamList, PropertyAccess::setInputParamList);
+        list(PropertyAccess.class, "Stmt", PropertyAccess::getStmtList, PropertyAccess::setStmtList);
+        list(PropertyAccess.class, "NestedFunction", PropertyAccess::getNestedFunctionList, PropertyAccess::setNestedFunctionList);
+        list(PropertyAccessSignature.class, "OutputParam", PropertyAccessSignature::getOutputParamList, PropertyAccessSignature::setOutputParamList);
+        list(PropertyAccessSignature.class, "InputParam", PropertyAccessSignature::getInputParamList, PropertyAccessSignature::setInputParamList);
+        list(ast.Enumeration.class, "Expr", ast.Enumeration::getExprList, ast.Enumeration::setExprList);
+        child(ExprStmt.class, "Expr", ExprStmt::getExpr, ExprStmt::setExpr);
+        child(AssignStmt.class, "LHS", AssignStmt::getLHS, AssignStmt::setLHS);
+        child(AssignStmt.class, "RHS", AssignStmt::getRHS, AssignStmt::setRHS);
+        list(GlobalStmt.class, "Name", GlobalStmt::getNameList, GlobalStmt::setNameList);
+        list(PersistentStmt.class, "Name", PersistentStmt::getNameList, PersistentStmt::setNameList);
+        child(ForStmt.class, "AssignStmt", ForStmt::getAssignStmt, ForStmt::setAssignStmt);
+        list(ForStmt.class, "Stmt", ForStmt::getStmtList, ForStmt::setStmtList);
+        opt(ForStmt.class, "Worker", ForStmt::hasWorker, ForStmt::getWorker, ForStmt::setWorkerOpt);
+        child(WhileStmt.class, "Expr", WhileStmt::getExpr, WhileStmt::setExpr);
+        list(WhileStmt.class, "Stmt", WhileStmt::getStmtList, WhileStmt::setStmtList);
+        list(TryStmt.class, "TryStmt", TryStmt::getTryStmtList, TryStmt::setTryStmtList);
+        list(TryStmt.class, "CatchStmt", TryStmt::getCatchStmtList, TryStmt::setCatchStmtList);
+        opt(TryStmt.class, "CatchName", TryStmt::hasCatchName, TryStmt::getCatchName, TryStmt::setCatchNameOpt);
+        child(SwitchStmt.class, "Expr", SwitchStmt::getExpr, SwitchStmt::setExpr);
+        list(SwitchStmt.class, "SwitchCaseBlock", SwitchStmt::getSwitchCaseBlockList, SwitchStmt::setSwitchCaseBlockList);
+        opt(SwitchStmt.class, "DefaultCaseBlock", SwitchStmt::hasDefaultCaseBlock, SwitchStmt::getDefaultCaseBlock, SwitchStmt::setDefaultCaseBlockOpt);
+        child(SwitchCaseBlock.class, "Expr", SwitchCaseBlock::getExpr, SwitchCaseBlock::setExpr);
+        list(SwitchCaseBlock.class, "Stmt", SwitchCaseBlock::getStmtList, SwitchCaseBlock::setStmtList);
+        list(DefaultCaseBlock.class, "Stmt", DefaultCaseBlock::getStmtList, DefaultCaseBlock::setStmtList);
+        list(IfStmt.class, "IfBlock", IfStmt::getIfBlockList, IfStmt::setIfBlockList);
+        opt(IfStmt.class, "ElseBlock", IfStmt::hasElseBlock, IfStmt::getElseBlock, IfStmt::setElseBlockOpt);
+        child(IfBlock.class, "Condition", IfBlock::getCondition, IfBlock::setCondition);
+        list(IfBlock.class, "Stmt", IfBlock::getStmtList, IfBlock::setStmtList);
+        list(ElseBlock.class, "Stmt", ElseBlock::getStmtList, ElseBlock::setStmtList);
+        opt(SpmdStmt.class, "MinWorker", SpmdStmt::hasMinWorker, SpmdStmt::getMinWorker, SpmdStmt::setMinWorkerOpt);
+        opt(SpmdStmt.class, "MaxWorker", SpmdStmt::hasMaxWorker, SpmdStmt::getMaxWorker, SpmdStmt::setMaxWorkerOpt);
+        list(SpmdStmt.class, "Stmt", SpmdStmt::getStmtList, SpmdStmt::setStmtList);
+        child(NameExpr.class, "Name", NameExpr::getName, NameExpr::setName);
+        child(ParameterizedExpr.class, "Target", ParameterizedExpr::getTarget, ParameterizedExpr::setTarget);
+        list(ParameterizedExpr.class, "Arg", ParameterizedExpr::getArgList, ParameterizedExpr::setArgList);
+        child(CellIndexExpr.class, "Target", CellIndexExpr::getTarget, CellIndexExpr::setTarget);
+        list(CellIndexExpr.class, "Arg", CellIndexExpr::getArgList, CellIndexExpr::setArgList);
+        child(DotExpr.class, "Target", DotExpr::getTarget, DotExpr::setTarget);
+        child(DotExpr.class, "Field", DotExpr::getField, DotExpr::setField);
+        list(MatrixExpr.class, "Row", MatrixExpr::getRowList, MatrixExpr::setRowList);
+        list(Row.class, "Element", Row::getElementList, Row::setElementList);
+        child(UnaryExpr.class, "Operand", UnaryExpr::getOperand, UnaryExpr::setOperand);
+        child(BinaryExpr.class, "LHS", BinaryExpr::getLHS, BinaryExpr::setLHS);
+        child(BinaryExpr.class, "RHS", BinaryExpr::getRHS, BinaryExpr::setRHS);
+        child(RangeExpr.class, "Lower", RangeExpr::getLower, RangeExpr::setLower);
+        opt(RangeExpr.class, "Incr", RangeExpr::hasIncr, RangeExpr::getIncr, RangeExpr::setIncrOpt);
+        child(RangeExpr.class, "Upper", RangeExpr::getUpper, RangeExpr::setUpper);
+        child(FunctionHandleExpr.class, "Name", FunctionHandleExpr::getName, FunctionHandleExpr::setName);
+        list(LambdaExpr.class, "InputParam", LambdaExpr::getInputParamList, LambdaExpr::setInputParamList);
+        child(LambdaExpr.class, "Body", LambdaExpr::getBody, LambdaExpr::setBody);
+        list(CellArrayExpr.class, "Row", CellArrayExpr::getRowList, CellArrayExpr::setRowList);
+        child(SuperClassMethodExpr.class, "FuncName", SuperClassMethodExpr::getFuncName, SuperClassMethodExpr::setFuncName);
+        child(SuperClassMethodExpr.class, "ClassName", SuperClassMethodExpr::getClassName, SuperClassMethodExpr::setClassName);
+        list(AspectDef.class, "Property", AspectDef::getPropertyList, AspectDef::setPropertyList);
+        list(AspectDef.class, "Method", AspectDef::getMethodList, AspectDef::setMethodList);
+        list(AspectDef.class, "ClassEvent", AspectDef::getClassEventList, AspectDef::setClassEventList);
+        list(AspectDef.class, "Enumeration", AspectDef::getEnumerationList, AspectDef::setEnumerationList);
+        list(AspectDef.class, "Pattern", AspectDef::getPatternList, AspectDef::setPatternList);
+        list(AspectDef.class, "Action", AspectDef::getActionList, AspectDef::setActionList);
+        list(Patterns.class, "Pattern", Patterns::getPatternList, Patterns::setPatternList);
+        list(Actions.class, "Action", Actions::getActionList, Actions::setActionList);
+        child(Action.class, "Expr", Action::getExpr, Action::setExpr);
+        list(Action.class, "InputParam", Action::getInputParamList, Action::setInputParamList);
+        list(Action.class, "Stmt", Action::getStmtList, Action::setStmtList);
+        list(Action.class, "NestedFunction", Action::getNestedFunctionList, Action::setNestedFunctionList);
+        child(Pattern.class, "Expr", Pattern::getExpr, Pattern::setExpr);
+        child(TypeSignature.class, "Type", TypeSignature::getType, TypeSignature::setType);
+        list(DimensionSignature.class, "Dimension", DimensionSignature::getDimensionList, DimensionSignature::setDimensionList);
+        opt(FullSignature.class, "TypeSignature", FullSignature::hasTypeSignature, FullSignature::getTypeSignature, FullSignature::setTypeSignatureOpt);
+        opt(FullSignature.class, "DimensionSignature", FullSignature::hasDimensionSignature, FullSignature::getDimensionSignature, FullSignature::setDimensionSignatureOpt);
+        child(PatternName.class, "Name", PatternName::getName, PatternName::setName);
+        child(PatternGet.class, "Identifier", PatternGet::getIdentifier, PatternGet::setIdentifier);
+        opt(PatternGet.class, "FullSignature", PatternGet::hasFullSignature, PatternGet::getFullSignature, PatternGet::setFullSignatureOpt);
+        child(PatternSet.class, "Identifier", PatternSet::getIdentifier, PatternSet::setIdentifier);
+        opt(PatternSet.class, "FullSignature", PatternSet::hasFullSignature, PatternSet::getFullSignature, PatternSet::setFullSignatureOpt);
+        list(Input.class, "FullSignature", Input::getFullSignatureList, Input::setFullSignatureList);
+        list(Output.class, "FullSignature", Output::getFullSignatureList, Output::setFullSignatureList);
+        child(PatternCall.class, "Identifier", PatternCall::getIdentifier, PatternCall::setIdentifier);
+        child(PatternCall.class, "Input", PatternCall::getInput, PatternCall::setInput);
+        child(PatternCall.class, "Output", PatternCall::getOutput, PatternCall::setOutput);
+        child(PatternExecution.class, "Identifier", PatternExecution::getIdentifier, PatternExecution::setIdentifier);
+        child(PatternExecution.class, "Input", PatternExecution::getInput, PatternExecution::setInput);
+        child(PatternExecution.class, "Output", PatternExecution::getOutput, PatternExecution::setOutput);
+        opt(PatternLoop.class, "Type", PatternLoop::hasType, PatternLoop::getType, PatternLoop::setTypeOpt);
+        child(PatternLoop.class, "Identifier", PatternLoop::getIdentifier, PatternLoop::setIdentifier);
+        opt(PatternLoopHead.class, "Type", PatternLoopHead::hasType, PatternLoopHead::getType, PatternLoopHead::setTypeOpt);
+        child(PatternLoopHead.class, "Identifier", PatternLoopHead::getIdentifier, PatternLoopHead::setIdentifier);
+        opt(PatternLoopBody.class, "Type", PatternLoopBody::hasType, PatternLoopBody::getType, PatternLoopBody::setTypeOpt);
+        child(PatternLoopBody.class, "Identifier", PatternLoopBody::getIdentifier, PatternLoopBody::setIdentifier);
+        child(SelectorSimple.class, "Element", SelectorSimple::getElement, SelectorSimple::setElement);
+        list(SelectorCompound.class, "Element", SelectorCompound::getElementList, SelectorCompound::setElementList);
+        child(PatternAnnotate.class, "Identifier", PatternAnnotate::getIdentifier, PatternAnnotate::setIdentifier);
+        list(PatternAnnotate.class, "Selector", PatternAnnotate::getSelectorList, PatternAnnotate::setSelectorList);
+        child(PatternOperator.class, "Type", PatternOperator::getType, PatternOperator::setType);
+        list(PatternOperator.class, "FullSignature", PatternOperator::getFullSignatureList, PatternOperator::setFullSignatureList);
+        child(PatternWithin.class, "Type", PatternWithin::getType, PatternWithin::setType);
+        child(PatternWithin.class, "Identifier", PatternWithin::getIdentifier, PatternWithin::setIdentifier);
+        child(PatternDimension.class, "DimensionSignature", PatternDimension::getDimensionSignature, PatternDimension::setDimensionSignature);
+        child(PatternIsType.class, "TypeSignature", PatternIsType::getTypeSignature, PatternIsType::setTypeSignature);
+    }
+
+    /** tokens of the given node type, including the inherited ones (super type tokens first) */
+    public static java.util.List<Token> getTokens(Class<?> nodeClass) {
+        Optional.ofNullable(nodeClass).orElseThrow(NullPointerException::new);
+        return tokenCache.computeIfAbsent(nodeClass, key -> {
+            LinkedList<Token> tokens = new LinkedList<>();
+            for (Class<?> iterator = key; iterator != null; iterator = iterator.getSuperclass()) {
+                java.util.List<Token> declared = declaredTokens.get(iterator);
+                if (declared == null) continue;
+                for (int index = declared.size() - 1; index >= 0; index--) tokens.addFirst(declared.get(index));
+            }
+            return Collections.unmodifiableList(tokens);
+        });
+    }
+
+    /** child fields of the given node type, including the inherited ones (super type fields first) */
+    public static java.util.List<Field> getFields(Class<?> nodeClass) {
+        Optional.ofNullable(nodeClass).orElseThrow(NullPointerException::new);
+        return fieldCache.computeIfAbsent(nodeClass, key -> {
+            LinkedList<Field> fields = new LinkedList<>();
+            for (Class<?> iterator = key; iterator != null; iterator = iterator.getSuperclass()) {
+                java.util.List<Field> declared = declaredFields.get(iterator);
+                if (declared == null) continue;
+                for (int index = declared.size() - 1; index >= 0; index--) fields.addFirst(declared.get(index));
+            }
+            return Collections.unmodifiableList(fields);
+        });
+    }
+
+    /** @return {@code true} if a token of that name is declared by any node type */
+    public static boolean isTokenName(String name) {
+        return tokenNames.contains(name);
+    }
+
+    /** @return {@code true} if a child field of that name is declared by any node type */
+    public static boolean isFieldName(String name) {
+        return fieldNames.contains(name);
+    }
+
+    /**
+     * ast node type of the given simple name, as written by the json and xml serializers
+     * @throws IllegalArgumentException if no ast node type of that name exists
+     */
+    public static Class<? extends ASTNode> getNodeClass(String simpleName) {
+        Optional.ofNullable(simpleName).orElseThrow(NullPointerException::new);
+        return classCache.computeIfAbsent(simpleName, key -> {
+            try {
+                /* loaded uninitialized, hence only ast nodes are ever initialized */
+                return Class.forName(String.format("ast.%s", key), false, ASTNode.class.getClassLoader())
+                        .asSubclass(ASTNode.class);
+            } catch (ClassNotFoundException | ClassCastException exception) {
+                throw new IllegalArgumentException(key, exception);
+            }
+        });
+    }
+
+    private ASTNodeSchema() {}
+}
@@ -1,17 +1,17 @@
 package aspectMATLAB.serialization.decorators;
 
 
-import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
 import ast.ASTNode;
 
-public final class ColumnNumberDecorator implements ASTNodeDecorator<Number> {
+public final class ColumnNumberDecorator implements ASTNodeIntDecorator {
     @Override
     public String tag() {
         return "col";
     }
 
     @Override
-    public Number decorate(ASTNode astNode) {
+    public int decorateAsInt(ASTNode astNode) {
         return astNode.getStartColumn();
     }
 
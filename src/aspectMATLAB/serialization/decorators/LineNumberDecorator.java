@@ -1,16 +1,16 @@
 package aspectMATLAB.serialization.decorators;
 
-import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
 import ast.ASTNode;
 
-public final class LineNumberDecorator implements ASTNodeDecorator<Number> {
+public final class LineNumberDecorator implements ASTNodeIntDecorator {
     @Override
     public String tag() {
         return "line";
     }
 
     @Override
-    public Number decorate(ASTNode astNode) {
+    public int decorateAsInt(ASTNode astNode) {
         return astNode.getStartLine();
     }
 
@@ -1,22 +1,23 @@
 package aspectMATLAB.serialization.decorators;
 
-import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeBooleanDecorator;
 import ast.ASTNode;
 import ast.Stmt;
 
-public final class OutputSupressedDecorator implements ASTNodeDecorator<Boolean> {
+public final class OutputSupressedDecorator implements ASTNodeBooleanDecorator {
     @Override
     public String tag() {
         return "isOutputSuppressed";
     }
 
     @Override
-    public Boolean decorate(ASTNode astNode) {
-        if (astNode instanceof Stmt) {
-            return ((Stmt) astNode).isOutputSuppressed();
-        } else {
-            return null;
-        }
+    public boolean isDecorated(ASTNode astNode) {
+        return astNode instanceof Stmt;
+    }
+
+    @Override
+    public boolean decorateAsBoolean(ASTNode astNode) {
+        return ((Stmt) astNode).isOutputSuppressed();
     }
 
     @Override
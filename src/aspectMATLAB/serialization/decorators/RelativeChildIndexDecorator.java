@@ -1,16 +1,16 @@
 package aspectMATLAB.serialization.decorators;
 
-import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
 import ast.ASTNode;
 
-public final class RelativeChildIndexDecorator implements ASTNodeDecorator<Number> {
+public final class RelativeChildIndexDecorator implements ASTNodeIntDecorator {
     @Override
     public String tag() {
         return "relativeChildIndex";
     }
 
     @Override
-    public Number decorate(ASTNode astNode) {
+    public int decorateAsInt(ASTNode astNode) {
         return astNode.getRelativeChildIndex();
     }
 
@@ -0,0 +1,161 @@
+package aspectMATLAB.serialization.deserializers;
+
+import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDeserializer;
+import aspectMATLAB.serialization.ASTNodeSchema;
+import aspectMATLAB.serialization.serializers.BinarySerializer;
+import ast.ASTNode;
+import ast.Stmt;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * reader of the binary form written by {@link BinarySerializer}. decorations are re-applied through
+ * {@link ASTNodeDecorator#parse(ASTNode, String)} of the registered decorator with the same tag, decorations
+ * without registered decorator are skipped.
+ */
+public final class BinaryDeserializer implements ASTNodeDeserializer<ASTNode> {
+    private static final Map<String, Class<?>> classCache = new ConcurrentHashMap<>();
+
+    private final Map<String, ASTNodeDecorator<?>> decoratorMap = new HashMap<>();
+
+    @Override
+    public BinaryDeserializer appendDecorator(ASTNodeDecorator<?> decorator) {
+        decoratorMap.put(Optional.ofNullable(decorator).orElseThrow(NullPointerException::new).tag(), decorator);
+        return this;
+    }
+
+    /**
+     * @param inputStream source input stream, not closed
+     * @return the root of the rebuilt tree
+     * @throws IOException if reading fails, or the input is not a valid binary AST
+     */
+    @Override
+    public ASTNode deserialize(InputStream inputStream) throws IOException {
+        Decoder decoder = new Decoder(new BufferedInputStream(inputStream));
+        byte[] magic = new byte[BinarySerializer.MAGIC.length];
+        decoder.inputStream.readFully(magic);
+        if (!Arrays.equals(magic, BinarySerializer.MAGIC)) throw new StreamCorruptedException("not a binary AST");
+        if (decoder.readVarint() != BinarySerializer.VERSION) throw new StreamCorruptedException("unknown version");
+        decoder.readDecorators();
+        try {
+            return decoder.readNode();
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            throw new StreamCorruptedException(exception.toString());
+        }
+    }
+
+    /** @param string base64 encoding of the binary form, see {@link BinarySerializer#serializeAsString} */
+    @Override
+    public ASTNode deserializeFromString(String string) throws IOException {
+        try {
+            return deserialize(new ByteArrayInputStream(Base64.getDecoder().decode(string)));
+        } catch (IllegalArgumentException exception) {
+            throw new StreamCorruptedException(exception.getMessage());
+        }
+    }
+
+    private final class Decoder {
+        private final DataInputStream inputStream;
+        private final java.util.List<String> stringTable = new ArrayList<>();
+        private final java.util.List<ASTNodeDecorator<?>> decorators = new ArrayList<>();
+        private final java.util.List<Integer> decoratorKinds = new ArrayList<>();
+
+        private Decoder(InputStream inputStream) {
+            this.inputStream = new DataInputStream(inputStream);
+        }
+
+        private void readDecorators() throws IOException {
+            long count = readVarint();
+            for (long index = 0; index < count; index++) {
+                String tag = readString();
+                decorators.add(decoratorMap.get(tag));
+                decoratorKinds.add(inputStream.readUnsignedByte());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private ASTNode readNode() throws IOException, ReflectiveOperationException {
+            Class<?> nodeClass = resolveClass(readString());
+            ASTNode astNode = (ASTNode) nodeClass.newInstance();
+            astNode.setStartLine((int) unzigzag(readVarint()));
+            astNode.setStartColumn((int) unzigzag(readVarint()));
+            if (astNode instanceof Stmt) ((Stmt) astNode).setOutputSuppressed(inputStream.readUnsignedByte() != 0);
+            for (ASTNodeSchema.Token token : ASTNodeSchema.getTokens(nodeClass)) {
+                String value = readString();
+                if (value != null) token.set(astNode, value);
+            }
+            for (int index = 0; index < decorators.size(); index++) {
+                String decoration = readDecoration(decoratorKinds.get(index));
+                if (decoration != null && decorators.get(index) != null) {
+                    decorators.get(index).parse(astNode, decoration);
+                }
+            }
+            int numChild = (int) readVarint();
+            for (int index = 0; index < numChild; index++) {
+                astNode.setChild(readNode(), index);
+            }
+            return astNode;
+        }
+
+        private String readDecoration(int kind) throws IOException {
+            switch (kind) {
+                case BinarySerializer.NUMBER_DECORATION: {
+                    long numberKind = readVarint();
+                    if (numberKind == BinarySerializer.NULL_NUMBER) return null;
+                    if (numberKind == BinarySerializer.INTEGRAL_NUMBER) return Long.toString(unzigzag(readVarint()));
+                    if (numberKind == BinarySerializer.OTHER_NUMBER) return readString();
+                    throw new StreamCorruptedException("unknown number decoration");
+                }
+                case BinarySerializer.STRING_DECORATION:
+                    return readString();
+                case BinarySerializer.BOOLEAN_DECORATION: {
+                    int value = inputStream.readUnsignedByte();
+                    return (value == 0) ? null : Boolean.toString(value == 2);
+                }
+            }
+            throw new StreamCorruptedException("unknown decoration kind");
+        }
+
+        private String readString() throws IOException {
+            long reference = readVarint();
+            if (reference == 0) return null;
+            if (reference == 1) {
+                byte[] bytes = new byte[(int) readVarint()];
+                inputStream.readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                stringTable.add(value);
+                return value;
+            }
+            if (reference - 2 >= stringTable.size()) throw new StreamCorruptedException("bad string reference");
+            return stringTable.get((int) (reference - 2));
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int read = inputStream.readUnsignedByte();
+                value |= (long) (read & 0x7F) << shift;
+                if ((read & 0x80) == 0) return value;
+            }
+            throw new StreamCorruptedException("malformed varint");
+        }
+    }
+
+    /* classes are loaded without being initialized, and only ast nodes are ever initialized and instantiated */
+    private static Class<?> resolveClass(String className) throws ClassNotFoundException, InvalidClassException {
+        Class<?> nodeClass = classCache.get(className);
+        if (nodeClass != null) return nodeClass;
+        nodeClass = Class.forName(className, false, ASTNode.class.getClassLoader());
+        if (!ASTNode.class.isAssignableFrom(nodeClass)) throw new InvalidClassException(className);
+        classCache.put(className, nodeClass);
+        return nodeClass;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,164 @@
+package aspectMATLAB.serialization.deserializers;
+
+import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDeserializer;
+import aspectMATLAB.serialization.ASTNodeSchema;
+import aspectMATLAB.serialization.serializers.JSONSerializer;
+import ast.ASTNode;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * reader of the json form written by {@link JSONSerializer}. the json text is consumed as a stream of parser
+ * events, a node is built as soon as its object is closed, without building the json object tree first.
+ * decorations are re-applied through {@link ASTNodeDecorator#parse(ASTNode, String)} of the registered
+ * decorator with the same tag, other unknown keys are skipped. source positions are not part of the json
+ * form, hence not restored.
+ */
+public final class JSONDeserializer implements ASTNodeDeserializer<ASTNode> {
+    private final Map<String, ASTNodeDecorator<?>> decoratorMap = new HashMap<>();
+
+    @Override
+    public JSONDeserializer appendDecorator(ASTNodeDecorator<?> decorator) {
+        decoratorMap.put(Optional.ofNullable(decorator).orElseThrow(NullPointerException::new).tag(), decorator);
+        return this;
+    }
+
+    /**
+     * @param inputStream utf-8 encoded source input stream, not closed
+     * @return the root of the rebuilt tree
+     * @throws IOException if reading fails, or the input is not a valid json AST
+     */
+    @Override
+    public ASTNode deserialize(InputStream inputStream) throws IOException {
+        return deserialize(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public ASTNode deserializeFromString(String string) throws IOException {
+        return deserialize(new StringReader(string));
+    }
+
+    /**
+     * @param reader source reader, not closed
+     * @return the root of the rebuilt tree
+     * @throws IOException if reading fails, or the input is not a valid json AST
+     */
+    public ASTNode deserialize(Reader reader) throws IOException {
+        Builder builder = new Builder();
+        try {
+            new JSONParser().parse(reader, builder);
+        } catch (ParseException | RuntimeException exception) {
+            throw new StreamCorruptedException(exception.toString());
+        }
+        if (!(builder.root instanceof ASTNode)) throw new StreamCorruptedException("not a json AST");
+        return (ASTNode) builder.root;
+    }
+
+    /* fields of a json object being read, keyed by name */
+    private static final class ObjectFrame {
+        private final Map<String, Object> entries = new HashMap<>();
+        private String key = null;
+    }
+
+    private final class Builder implements ContentHandler {
+        /* open objects (object frames) and arrays (lists of values), innermost first */
+        private final Deque<Object> frameStack = new ArrayDeque<>();
+        private Object root = null;
+
+        @Override
+        public void startJSON() {}
+
+        @Override
+        public void endJSON() {}
+
+        @Override
+        public boolean startObject() {
+            frameStack.push(new ObjectFrame());
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            append(buildNode((ObjectFrame) frameStack.pop()));
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            ((ObjectFrame) frameStack.peek()).key = key;
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            frameStack.push(new ArrayList<>());
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            append(frameStack.pop());
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            append(value);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void append(Object value) {
+            Object frame = frameStack.peek();
+            if (frame == null) {
+                root = value;
+            } else if (frame instanceof ObjectFrame) {
+                ((ObjectFrame) frame).entries.put(((ObjectFrame) frame).key, value);
+            } else {
+                ((java.util.List<Object>) frame).add(value);
+            }
+        }
+
+        private ASTNode buildNode(ObjectFrame frame) {
+            Class<? extends ASTNode> nodeClass = ASTNodeSchema.getNodeClass((String) frame.entries.get("ASTNodeType"));
+            ASTNode astNode;
+            try {
+                astNode = nodeClass.newInstance();
+            } catch (ReflectiveOperationException exception) {
+                throw new IllegalArgumentException(nodeClass.getName(), exception);
+            }
+
+            for (ASTNodeSchema.Token token : ASTNodeSchema.getTokens(nodeClass)) {
+                Object value = frame.entries.get(token.getName());
+                if (value != null) token.set(astNode, value.toString());
+            }
+            for (ASTNodeSchema.Field field : ASTNodeSchema.getFields(nodeClass)) {
+                Object value = frame.entries.get(field.getName());
+                if (field.getKind() == ASTNodeSchema.Field.Kind.LIST) {
+                    if (value == null) continue;
+                    ast.List<ASTNode> nodes = new ast.List<>();
+                    for (Object element : (java.util.List<?>) value) nodes.add((ASTNode) element);
+                    field.set(astNode, nodes);
+                } else {
+                    field.set(astNode, (ASTNode) value);
+                }
+            }
+            for (Map.Entry<String, ASTNodeDecorator<?>> entry : decoratorMap.entrySet()) {
+                Object decoration = frame.entries.get(entry.getKey());
+                if (decoration != null) entry.getValue().parse(astNode, decoration.toString());
+            }
+            return astNode;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package aspectMATLAB.serialization.deserializers;
+
+import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDeserializer;
+import aspectMATLAB.serialization.ASTNodeSchema;
+import aspectMATLAB.serialization.serializers.XMLSerializer;
+import ast.ASTNode;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * reader of the xml form written by {@link XMLSerializer}, either the dom or the streaming output. the document
+ * is pulled element by element, child elements are matched by position against the child fields of the node
+ * type. decorations are re-applied through {@link ASTNodeDecorator#parse(ASTNode, String)} of the registered
+ * decorator with the same tag, other unknown attributes are skipped.
+ */
+public final class XMLDeserializer implements ASTNodeDeserializer<ASTNode> {
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final Map<String, ASTNodeDecorator<?>> decoratorMap = new HashMap<>();
+
+    @Override
+    public XMLDeserializer appendDecorator(ASTNodeDecorator<?> decorator) {
+        decoratorMap.put(Optional.ofNullable(decorator).orElseThrow(NullPointerException::new).tag(), decorator);
+        return this;
+    }
+
+    /**
+     * @param inputStream source input stream, not closed
+     * @return the root of the rebuilt tree
+     * @throws IOException if reading fails, or the input is not a valid xml AST
+     */
+    @Override
+    public ASTNode deserialize(InputStream inputStream) throws IOException {
+        try {
+            return deserialize(inputFactory.createXMLStreamReader(inputStream));
+        } catch (XMLStreamException exception) {
+            throw new StreamCorruptedException(exception.toString());
+        }
+    }
+
+    @Override
+    public ASTNode deserializeFromString(String string) throws IOException {
+        try {
+            return deserialize(inputFactory.createXMLStreamReader(new StringReader(string)));
+        } catch (XMLStreamException exception) {
+            throw new StreamCorruptedException(exception.toString());
+        }
+    }
+
+    private ASTNode deserialize(XMLStreamReader reader) throws IOException {
+        try {
+            reader.nextTag();
+            return readNode(reader);
+        } catch (XMLStreamException | ReflectiveOperationException | RuntimeException exception) {
+            throw new StreamCorruptedException(exception.toString());
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException ignored) {
+            }
+        }
+    }
+
+    /* reads the element the reader is positioned on, leaves the reader on its end tag */
+    private ASTNode readNode(XMLStreamReader reader) throws XMLStreamException, ReflectiveOperationException {
+        Class<? extends ASTNode> nodeClass = ASTNodeSchema.getNodeClass(reader.getLocalName());
+        ASTNode astNode = nodeClass.newInstance();
+
+        for (ASTNodeSchema.Token token : ASTNodeSchema.getTokens(nodeClass)) {
+            String value = reader.getAttributeValue(null, token.getName());
+            if (value != null) token.set(astNode, value);
+        }
+        for (Map.Entry<String, ASTNodeDecorator<?>> entry : decoratorMap.entrySet()) {
+            String decoration = reader.getAttributeValue(null, entry.getKey());
+            if (decoration != null) entry.getValue().parse(astNode, decoration);
+        }
+
+        for (ASTNodeSchema.Field field : ASTNodeSchema.getFields(nodeClass)) {
+            reader.nextTag();
+            reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+            if (field.getKind() == ASTNodeSchema.Field.Kind.LIST) {
+                reader.require(XMLStreamConstants.START_ELEMENT, null, field.getName());
+                ast.List<ASTNode> nodes = new ast.List<>();
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) nodes.add(readNode(reader));
+                field.set(astNode, nodes);
+            } else if ("null".equals(reader.getLocalName())) {
+                reader.nextTag();
+                field.set(astNode, null);
+            } else {
+                field.set(astNode, readNode(reader));
+            }
+        }
+        reader.nextTag();
+        reader.require(XMLStreamConstants.END_ELEMENT, null, nodeClass.getSimpleName());
+        return astNode;
+    }
+}
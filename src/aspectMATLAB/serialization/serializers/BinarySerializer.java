@@ -0,0 +1,217 @@
+package aspectMATLAB.serialization.serializers;
+
+import aspectMATLAB.serialization.ASTNodeBooleanDecorator;
+import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDecoratorPipeline;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
+import aspectMATLAB.serialization.ASTNodeSchema;
+import aspectMATLAB.serialization.ASTNodeSerializer;
+import ast.ASTNode;
+import ast.Stmt;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * compact binary form of the AST, read back by
+ * {@link aspectMATLAB.serialization.deserializers.BinaryDeserializer}. the layout is:
+ * <pre>
+ * document   := MAGIC VERSION decorators node
+ * decorators := varint(count) (string(tag) byte(kind))*
+ * node       := string(class name) varint(line) varint(column) [byte(output suppressed), for Stmt only]
+ *               string(token)* decoration* varint(number of children) node*
+ * string     := varint(0) (null) | varint(1) varint(length) utf-8 bytes (new entry) | varint(index + 2)
+ * </pre>
+ * strings (node class names, tokens and string decorations) are interned, a string is written once and referred
+ * to by its index in the string table afterwards. line and column numbers are written as zigzag varints. only the
+ * start position of a node is kept, the front end records no end position.
+ */
+public final class BinarySerializer implements ASTNodeSerializer<ASTNode, byte[]> {
+    public static final byte[] MAGIC = {'A', 'M', 'B'};
+    public static final int VERSION = 2;
+
+    public static final int NUMBER_DECORATION = 0;
+    public static final int STRING_DECORATION = 1;
+    public static final int BOOLEAN_DECORATION = 2;
+
+    public static final int NULL_NUMBER = 0;
+    public static final int INTEGRAL_NUMBER = 1;
+    public static final int OTHER_NUMBER = 2;
+
+    private final ASTNodeDecoratorPipeline decoratorPipeline = new ASTNodeDecoratorPipeline();
+
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
+    @Override
+    public BinarySerializer appendNumberDecorator(ASTNodeDecorator<? extends Number> decorator) {
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.NUMBER);
+        return this;
+    }
+
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
+    @Override
+    public BinarySerializer appendStringDecorator(ASTNodeDecorator<? extends CharSequence> decorator) {
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.STRING);
+        return this;
+    }
+
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
+    @Override
+    public BinarySerializer appendBooleanDecorator(ASTNodeDecorator<? extends Boolean> decorator) {
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.BOOLEAN);
+        return this;
+    }
+
+    @Override
+    public byte[] serialize(ASTNode astNode) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            serialize(astNode, outputStream);
+        } catch (IOException exception) {
+            /* control flow should not reach here */
+            throw new AssertionError(exception);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @param astNode node to serialize
+     * @param outputStream target output stream, flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void serialize(ASTNode astNode, OutputStream outputStream) throws IOException {
+        Optional.ofNullable(astNode).orElseThrow(NullPointerException::new);
+        Encoder encoder = new Encoder(new BufferedOutputStream(outputStream));
+        encoder.outputStream.write(MAGIC);
+        encoder.writeVarint(VERSION);
+        encoder.writeDecorators();
+        encoder.writeNode(astNode);
+        encoder.outputStream.flush();
+    }
+
+    /** @return the base64 encoding of the binary form */
+    @Override
+    public String serializeAsString(ASTNode astNode) {
+        return Base64.getEncoder().encodeToString(serialize(astNode));
+    }
+
+    private final class Encoder {
+        private final OutputStream outputStream;
+        private final Map<String, Integer> stringTable = new HashMap<>();
+
+        private Encoder(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void writeDecorators() throws IOException {
+            writeVarint(decoratorPipeline.size());
+            for (int index = 0; index < decoratorPipeline.size(); index++) {
+                writeString(decoratorPipeline.get(index).tag());
+                outputStream.write(kindCode(decoratorPipeline.getKind(index)));
+            }
+        }
+
+        private void writeNode(ASTNode<?> astNode) throws IOException {
+            writeString(astNode.getClass().getName());
+            writeVarint(zigzag(astNode.getStartLine()));
+            writeVarint(zigzag(astNode.getStartColumn()));
+            if (astNode instanceof Stmt) outputStream.write(((Stmt) astNode).isOutputSuppressed() ? 1 : 0);
+            for (ASTNodeSchema.Token token : ASTNodeSchema.getTokens(astNode.getClass())) {
+                writeString(token.get(astNode));
+            }
+            for (int index = 0; index < decoratorPipeline.size(); index++) {
+                writeDecoration(decoratorPipeline.get(index), decoratorPipeline.getKind(index), astNode);
+            }
+            writeVarint(astNode.getNumChild());
+            for (int index = 0; index < astNode.getNumChild(); index++) {
+                writeNode(astNode.getChild(index));
+            }
+        }
+
+        private void writeDecoration(ASTNodeDecorator<?> decorator, ASTNodeDecoratorPipeline.Kind kind, ASTNode<?> astNode)
+                throws IOException {
+            if (decorator instanceof ASTNodeIntDecorator) {
+                ASTNodeIntDecorator intDecorator = (ASTNodeIntDecorator) decorator;
+                if (intDecorator.isDecorated(astNode)) {
+                    writeVarint(INTEGRAL_NUMBER);
+                    writeVarint(zigzag(intDecorator.decorateAsInt(astNode)));
+                } else {
+                    writeVarint(NULL_NUMBER);
+                }
+                return;
+            }
+            if (decorator instanceof ASTNodeBooleanDecorator) {
+                ASTNodeBooleanDecorator booleanDecorator = (ASTNodeBooleanDecorator) decorator;
+                if (!booleanDecorator.isDecorated(astNode)) {
+                    outputStream.write(0);
+                } else {
+                    outputStream.write(booleanDecorator.decorateAsBoolean(astNode) ? 2 : 1);
+                }
+                return;
+            }
+
+            Object decoration = decorator.decorate(astNode);
+            switch (kind) {
+                case NUMBER:
+                    if (decoration == null) {
+                        writeVarint(NULL_NUMBER);
+                    } else if (decoration instanceof Integer || decoration instanceof Long ||
+                            decoration instanceof Short || decoration instanceof Byte) {
+                        writeVarint(INTEGRAL_NUMBER);
+                        writeVarint(zigzag(((Number) decoration).longValue()));
+                    } else {
+                        writeVarint(OTHER_NUMBER);
+                        writeString(decoration.toString());
+                    }
+                    return;
+                case STRING:
+                    writeString((decoration == null) ? null : decoration.toString());
+                    return;
+                case BOOLEAN:
+                    outputStream.write((decoration == null) ? 0 : ((Boolean) decoration) ? 2 : 1);
+                    return;
+            }
+            /* control flow should not reach here */
+            throw new AssertionError();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = stringTable.get(value);
+            if (index != null) {
+                writeVarint(index + 2L);
+                return;
+            }
+            stringTable.put(value, stringTable.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(1);
+            writeVarint(bytes.length);
+            outputStream.write(bytes);
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                outputStream.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            outputStream.write((int) value);
+        }
+    }
+
+    private static int kindCode(ASTNodeDecoratorPipeline.Kind kind) {
+        switch (kind) {
+            case NUMBER: return NUMBER_DECORATION;
+            case STRING: return STRING_DECORATION;
+            case BOOLEAN: return BOOLEAN_DECORATION;
+        }
+        /* control flow should not reach here */
+        throw new AssertionError();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
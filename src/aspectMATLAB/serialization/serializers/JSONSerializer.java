@@ -1,54 +1,95 @@
 package aspectMATLAB.serialization.serializers;
 
+import aspectMATLAB.serialization.ASTNodeBooleanDecorator;
 import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDecoratorPipeline;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
+import aspectMATLAB.serialization.ASTNodeSchema;
 import aspectMATLAB.serialization.ASTNodeSerializer;
 import ast.*;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Stream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class JSONSerializer implements ASTNodeSerializer<ASTNode, JSONObject> {
-    private Set<ASTNodeDecorator<? extends Number>> numericalDecoratorSet = new HashSet<>();
-    private Set<ASTNodeDecorator<? extends CharSequence>> stringDecoratorSet = new HashSet<>();
-    private Set<ASTNodeDecorator<? extends Boolean>> booleanDecoratorSet = new HashSet<>();
+    /* receiver of the fields of a node, either building a json object or writing json text */
+    private interface FieldSink {
+        void node(String key, ASTNode astNode);
+        void list(String key, ast.List<? extends ASTNode> nodes);
+        void value(String key, Object value);
+    }
+
+    /* writes the fields of a node of the given type into a sink */
+    private interface FieldWriter<T extends ASTNode> {
+        void write(T astNode, FieldSink sink);
+    }
+
+    /* decorator tags must not shadow the node type key, a token or a child field */
+    private final ASTNodeDecoratorPipeline decoratorPipeline = new ASTNodeDecoratorPipeline(name ->
+            name.equals("ASTNodeType") || ASTNodeSchema.isTokenName(name) || ASTNodeSchema.isFieldName(name)
+    );
+    private ForkJoinPool forkJoinPool = null;
+
+    /**
+     * serialize the programs of a compilation unit, and the functions of a function file, in parallel on the given
+     * pool, each into its own buffer. the output is identical to the sequential serialization. the serialized tree
+     * must not be modified meanwhile.
+     * @param forkJoinPool pool to serialize on, {@code null} to serialize sequentially
+     * @return reference to this serializer
+     */
+    public JSONSerializer setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
 
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public JSONSerializer appendNumberDecorator(ASTNodeDecorator<? extends Number> decorator) {
-        numericalDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.NUMBER);
         return this;
     }
 
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public JSONSerializer appendStringDecorator(ASTNodeDecorator<? extends CharSequence> decorator) {
-        stringDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.STRING);
         return this;
     }
 
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public JSONSerializer appendBooleanDecorator(ASTNodeDecorator<? extends Boolean> decorator) {
-        booleanDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.BOOLEAN);
         return this;
     }
 
+    @SuppressWarnings("unchecked")
     private JSONObject applyDecoration(final ASTNode astNode, final JSONObject target) {
-        Stream.concat(numericalDecoratorSet.stream(),
-                Stream.concat(stringDecoratorSet.stream(),
-                        booleanDecoratorSet.stream())
-        ).forEach(decorator -> {
-            final String tag = decorator.tag();
+        for (int index = 0; index < decoratorPipeline.size(); index++) {
+            final ASTNodeDecorator<?> decorator = decoratorPipeline.get(index);
             final Object decoration = decorator.decorate(astNode);
-            if (target.containsKey(tag)) throw new IllegalArgumentException();
-            if (decoration == null) return;
-            target.put(tag, decoration);
-        });
+            if (decoration == null) continue;
+            target.put(decorator.tag(), decoration);
+        }
         return target;
     }
 
+    @SuppressWarnings("unchecked")
     protected JSONArray serializeAsJSONArray(ast.List<? extends ASTNode> nodes) {
         JSONArray jsonArray = new JSONArray();
+        if (forkJoinPool != null && SubtreeFork.isForkable(nodes)) {
+            for (ForkJoinTask<JSONObject> task : SubtreeFork.fork(forkJoinPool, nodes, this::serialize)) {
+                jsonArray.add(task.join());
+            }
+            return jsonArray;
+        }
         nodes.stream()
                 .map(node -> serialize(node))
                 .forEachOrdered(jsonArray::add);
@@ -61,265 +102,453 @@ public final class JSONSerializer implements ASTNodeSerializer<ASTNode, JSONObje
         JSONObject jsonObject = new JSONObject();
 
         jsonObject.put("ASTNodeType", astNode.getClass().getSimpleName());
+        serializeFields(astNode, new FieldSink() {
+            @Override
+            public void node(String key, ASTNode node) {
+                jsonObject.put(key, (node == null) ? null : serialize(node));
+            }
+
+            @Override
+            public void list(String key, ast.List<? extends ASTNode> nodes) {
+                jsonObject.put(key, serializeAsJSONArray(nodes));
+            }
+
+            @Override
+            public void value(String key, Object value) {
+                jsonObject.put(key, value);
+            }
+        });
+
+        return applyDecoration(astNode, jsonObject);
+    }
+
+    /**
+     * streaming serialization, the json text is written to {@code writer} while walking the tree, without building
+     * the json object tree in memory. fields are written in declaration order.
+     * @param astNode node to serialize
+     * @param writer target writer, not closed
+     * @throws IOException if writing fails
+     */
+    public void serialize(ASTNode astNode, Writer writer) throws IOException {
+        StreamSink sink = new StreamSink(writer);
+        try {
+            sink.writeNode(astNode);
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    /**
+     * streaming serialization into an utf-8 encoded output stream, see {@link #serialize(ASTNode, Writer)}
+     * @param astNode node to serialize
+     * @param outputStream target output stream, flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void serialize(ASTNode astNode, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        serialize(astNode, writer);
+        writer.flush();
+    }
+
+    private final class StreamSink implements FieldSink {
+        private final Writer writer;
+        /* digits of int decorations, written without going through a string */
+        private final char[] digitBuffer = new char[11];
 
-        if (astNode instanceof CompilationUnits) {
-            jsonObject.put("Program", serializeAsJSONArray(((CompilationUnits) astNode).getProgramList()));
-        } else if (astNode instanceof Script) {
-            jsonObject.put("Stmt", serializeAsJSONArray(((Script) astNode).getStmtList()));
-        } else if (astNode instanceof FunctionList) {
-            jsonObject.put("Function", serializeAsJSONArray(((FunctionList) astNode).getFunctionList()));
-        } else if (astNode instanceof Function) {
-            jsonObject.put("OutputParam", serializeAsJSONArray(((Function) astNode).getOutputParamList()));
-            jsonObject.put("Name", serialize(((Function) astNode).getName()));
-            jsonObject.put("InputParam", serializeAsJSONArray(((Function) astNode).getInputParamList()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((Function) astNode).getStmtList()));
-            jsonObject.put("NestedFunction", serializeAsJSONArray(((Function) astNode).getNestedFunctionList()));
-        } else if (astNode instanceof ClassDef) {
-            jsonObject.put("Attribute", serializeAsJSONArray(((ClassDef) astNode).getAttributeList()));
-            jsonObject.put("Name", ((ClassDef) astNode).getName());
-            jsonObject.put("SuperClass", serializeAsJSONArray(((ClassDef) astNode).getSuperClassList()));
-            jsonObject.put("Property", serializeAsJSONArray(((ClassDef) astNode).getPropertyList()));
-            jsonObject.put("Method", serializeAsJSONArray(((ClassDef) astNode).getMethodList()));
-            jsonObject.put("ClassEvent", serializeAsJSONArray(((ClassDef) astNode).getClassEventList()));
-            jsonObject.put("Enumeration", serializeAsJSONArray(((ClassDef) astNode).getEnumerationList()));
-        } else if (astNode instanceof Attribute) {
-            jsonObject.put("Key", ((Attribute) astNode).getKey());
-            jsonObject.put("Expr", serialize(((Attribute) astNode).getExpr()));
-        } else if (astNode instanceof SuperClass) {
-            jsonObject.put("Name", ((SuperClass) astNode).getName());
-        } else if (astNode instanceof Properties) {
-            jsonObject.put("Attribute", serializeAsJSONArray(((Properties) astNode).getAttributeList()));
-            jsonObject.put("Property", serializeAsJSONArray(((Properties) astNode).getPropertyList()));
-        } else if (astNode instanceof Methods) {
-            jsonObject.put("Attribute", serializeAsJSONArray(((Methods) astNode).getAttributeList()));
-            jsonObject.put("Signature", serializeAsJSONArray(((Methods) astNode).getSignatureList()));
-            jsonObject.put("PropAcc", serializeAsJSONArray(((Methods) astNode).getPropAccList()));
-            jsonObject.put("Function", serializeAsJSONArray(((Methods) astNode).getFunctionList()));
-            jsonObject.put("PropAccSig", serializeAsJSONArray(((Methods) astNode).getPropAccSigList()));
-        } else if (astNode instanceof ClassEvents) {
-            jsonObject.put("Attribute", serializeAsJSONArray(((ClassEvents) astNode).getAttributeList()));
-            jsonObject.put("Event", serializeAsJSONArray(((ClassEvents) astNode).getEventList()));
-        } else if (astNode instanceof Enumerations) {
-            jsonObject.put("Attribute", serializeAsJSONArray(((Enumerations) astNode).getAttributeList()));
-            jsonObject.put("Enumeration", serializeAsJSONArray(((Enumerations) astNode).getEnumerationList()));
-        } else if (astNode instanceof Property) {
-            jsonObject.put("Name", ((Property) astNode).getName());
-            jsonObject.put("Expr", serialize(((Property) astNode).getExpr()));
-        } else if (astNode instanceof Signature) {
-            jsonObject.put("OutputParam", serializeAsJSONArray(((Signature) astNode).getOutputParamList()));
-            jsonObject.put("Name", ((Signature) astNode).getName());
-            jsonObject.put("InputParam", serializeAsJSONArray(((Signature) astNode).getInputParamList()));
-        } else if (astNode instanceof PropertyAccess) {
-            jsonObject.put("OutputParam", serializeAsJSONArray(((PropertyAccess) astNode).getOutputParamList()));
-            jsonObject.put("Access", ((PropertyAccess) astNode).getAccess());
-            jsonObject.put("Name", ((PropertyAccess) astNode).getName());
-            jsonObject.put("InputParam", serializeAsJSONArray(((PropertyAccess) astNode).getInputParamList()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((PropertyAccess) astNode).getStmtList()));
-            jsonObject.put("NestedFunction", serializeAsJSONArray(((PropertyAccess) astNode).getNestedFunctionList()));
-        } else if (astNode instanceof PropertyAccessSignature) {
-            jsonObject.put("OutputParam", serializeAsJSONArray(((PropertyAccessSignature) astNode).getOutputParamList()));
-            jsonObject.put("Access", ((PropertyAccessSignature) astNode).getAccess());
-            jsonObject.put("Name", ((PropertyAccessSignature) astNode).getName());
-            jsonObject.put("InputParam", serializeAsJSONArray(((PropertyAccessSignature) astNode).getInputParamList()));
-        } else if (astNode instanceof Event) {
-            jsonObject.put("Name", ((Event) astNode).getName());
-        } else if (astNode instanceof Enumeration) {
-            jsonObject.put("Name", ((Enumeration) astNode).getName());
-            jsonObject.put("Expr", serializeAsJSONArray(((Enumeration) astNode).getExprList()));
-        } else if (astNode instanceof ExprStmt) {
-            jsonObject.put("Expr", serialize(((ExprStmt) astNode).getExpr()));
-        } else if (astNode instanceof AssignStmt) {
-            jsonObject.put("LHS", serialize(((AssignStmt) astNode).getLHS()));
-            jsonObject.put("RHS", serialize(((AssignStmt) astNode).getRHS()));
-        } else if (astNode instanceof GlobalStmt) {
-            jsonObject.put("Name", serializeAsJSONArray(((GlobalStmt) astNode).getNameList()));
-        } else if (astNode instanceof PersistentStmt) {
-            jsonObject.put("Name", serializeAsJSONArray(((PersistentStmt) astNode).getNameList()));
-        } else if (astNode instanceof ShellCommandStmt) {
-            jsonObject.put("Command", ((ShellCommandStmt) astNode).getCommand());
-        } else if (astNode instanceof BreakStmt) {
-            /* ignored */
-        } else if (astNode instanceof ContinueStmt) {
-            /* ignored */
-        } else if (astNode instanceof ReturnStmt) {
-            /* ignored */
-        } else if (astNode instanceof EmptyStmt) {
-            /* ignored */
-        } else if (astNode instanceof ForStmt) {
-            jsonObject.put("AssignStmt", serialize(((ForStmt) astNode).getAssignStmt()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((ForStmt) astNode).getStmtList()));
-            jsonObject.put("isParfor", ((ForStmt) astNode).getisParfor());
-            jsonObject.put("Worker", ((ForStmt) astNode).hasWorker()?serialize(((ForStmt) astNode).getWorker()): null);
-        } else if (astNode instanceof WhileStmt) {
-            jsonObject.put("Expr", serialize(((WhileStmt) astNode).getExpr()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((WhileStmt) astNode).getStmtList()));
-        } else if (astNode instanceof TryStmt) {
-            jsonObject.put("TryStmt", serializeAsJSONArray(((TryStmt) astNode).getTryStmtList()));
-            jsonObject.put("CatchStmt", serializeAsJSONArray(((TryStmt) astNode).getCatchStmtList()));
-            jsonObject.put("CatchName", ((TryStmt) astNode).hasCatchName()?serialize(((TryStmt) astNode).getCatchName()): null);
-        } else if (astNode instanceof SwitchStmt) {
-            jsonObject.put("Expr", serialize(((SwitchStmt) astNode).getExpr()));
-            jsonObject.put("SwitchCaseBlock", serializeAsJSONArray(((SwitchStmt) astNode).getSwitchCaseBlockList()));
-            jsonObject.put("DefaultCaseBlock", ((SwitchStmt) astNode).hasDefaultCaseBlock()?
-                    ((SwitchStmt) astNode).getDefaultCaseBlock():
+        private StreamSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        private void writeNode(ASTNode astNode) {
+            try {
+                writer.write("{\"ASTNodeType\":");
+                JSONValue.writeJSONString(astNode.getClass().getSimpleName(), writer);
+                serializeFields(astNode, this);
+                writeDecoration(astNode);
+                writer.write('}');
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void writeDecoration(ASTNode astNode) throws IOException {
+            for (int index = 0; index < decoratorPipeline.size(); index++) {
+                final ASTNodeDecorator<?> decorator = decoratorPipeline.get(index);
+                if (decorator instanceof ASTNodeIntDecorator) {
+                    ASTNodeIntDecorator intDecorator = (ASTNodeIntDecorator) decorator;
+                    if (!intDecorator.isDecorated(astNode)) continue;
+                    writeKey(decorator.tag());
+                    writeInt(intDecorator.decorateAsInt(astNode));
+                } else if (decorator instanceof ASTNodeBooleanDecorator) {
+                    ASTNodeBooleanDecorator booleanDecorator = (ASTNodeBooleanDecorator) decorator;
+                    if (!booleanDecorator.isDecorated(astNode)) continue;
+                    writeKey(decorator.tag());
+                    writer.write(booleanDecorator.decorateAsBoolean(astNode) ? "true" : "false");
+                } else {
+                    final Object decoration = decorator.decorate(astNode);
+                    if (decoration == null) continue;
+                    writeKey(decorator.tag());
+                    JSONValue.writeJSONString(decoration, writer);
+                }
+            }
+        }
+
+        private void writeInt(int value) throws IOException {
+            long remaining = Math.abs((long) value);
+            int position = digitBuffer.length;
+            do {
+                digitBuffer[--position] = (char) ('0' + remaining % 10);
+                remaining = remaining / 10;
+            } while (remaining != 0);
+            if (value < 0) digitBuffer[--position] = '-';
+            writer.write(digitBuffer, position, digitBuffer.length - position);
+        }
+
+        private void writeKey(String key) throws IOException {
+            writer.write(',');
+            JSONValue.writeJSONString(key, writer);
+            writer.write(':');
+        }
+
+        @Override
+        public void node(String key, ASTNode astNode) {
+            try {
+                writeKey(key);
+                if (astNode == null) {
+                    writer.write("null");
+                } else {
+                    writeNode(astNode);
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        @Override
+        public void list(String key, ast.List<? extends ASTNode> nodes) {
+            try {
+                writeKey(key);
+                writer.write('[');
+                if (forkJoinPool != null && SubtreeFork.isForkable(nodes)) {
+                    java.util.List<ForkJoinTask<String>> tasks = SubtreeFork.fork(forkJoinPool, nodes, node -> {
+                        StringWriter buffer = new StringWriter();
+                        new StreamSink(buffer).writeNode(node);
+                        return buffer.toString();
+                    });
+                    for (int index = 0; index < tasks.size(); index++) {
+                        if (index > 0) writer.write(',');
+                        writer.write(tasks.get(index).join());
+                    }
+                } else {
+                    for (int index = 0; index < nodes.getNumChild(); index++) {
+                        if (index > 0) writer.write(',');
+                        writeNode(nodes.getChild(index));
+                    }
+                }
+                writer.write(']');
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        @Override
+        public void value(String key, Object value) {
+            try {
+                writeKey(key);
+                JSONValue.writeJSONString(value, writer);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    private static final Map<Class<?>, FieldWriter<ASTNode>> declaredWriters = new HashMap<>();
+    /* writer of each node type, resolved once per type to the writer of its nearest declared super type */
+    private static final ClassValue<FieldWriter<ASTNode>> writerTable = new ClassValue<FieldWriter<ASTNode>>() {
+        @Override
+        protected FieldWriter<ASTNode> computeValue(Class<?> nodeClass) {
+            for (Class<?> iterator = nodeClass; iterator != null; iterator = iterator.getSuperclass()) {
+                FieldWriter<ASTNode> writer = declaredWriters.get(iterator);
+                if (writer != null) return writer;
+            }
+            return (astNode, sink) -> {
+                /* control flow should not reach here */
+                throw new AssertionError();
+            };
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode> void declare(Class<T> nodeClass, FieldWriter<T> writer) {
+        declaredWriters.put(nodeClass, (FieldWriter<ASTNode>) (FieldWriter<?>) writer);
+    }
+
+    static {
+        declare(CompilationUnits.class, (astNode, sink) -> sink.list("Program", astNode.getProgramList()));
+        declare(Script.class, (astNode, sink) -> sink.list("Stmt", astNode.getStmtList()));
+        declare(FunctionList.class, (astNode, sink) -> sink.list("Function", astNode.getFunctionList()));
+        declare(Function.class, (astNode, sink) -> {
+            sink.list("OutputParam", astNode.getOutputParamList());
+            sink.node("Name", astNode.getName());
+            sink.list("InputParam", astNode.getInputParamList());
+            sink.list("Stmt", astNode.getStmtList());
+            sink.list("NestedFunction", astNode.getNestedFunctionList());
+        });
+        declare(ClassDef.class, (astNode, sink) -> {
+            sink.list("Attribute", astNode.getAttributeList());
+            sink.value("Name", astNode.getName());
+            sink.list("SuperClass", astNode.getSuperClassList());
+            sink.list("Property", astNode.getPropertyList());
+            sink.list("Method", astNode.getMethodList());
+            sink.list("ClassEvent", astNode.getClassEventList());
+            sink.list("Enumeration", astNode.getEnumerationList());
+        });
+        declare(Attribute.class, (astNode, sink) -> {
+            sink.value("Key", astNode.getKey());
+            sink.node("Expr", astNode.getExpr());
+        });
+        declare(SuperClass.class, (astNode, sink) -> sink.value("Name", astNode.getName()));
+        declare(Properties.class, (astNode, sink) -> {
+            sink.list("Attribute", astNode.getAttributeList());
+            sink.list("Property", astNode.getPropertyList());
+        });
+        declare(Methods.class, (astNode, sink) -> {
+            sink.list("Attribute", astNode.getAttributeList());
+            sink.list("Signature", astNode.getSignatureList());
+            sink.list("PropAcc", astNode.getPropAccList());
+            sink.list("Function", astNode.getFunctionList());
+            sink.list("PropAccSig", astNode.getPropAccSigList());
+        });
+        declare(ClassEvents.class, (astNode, sink) -> {
+            sink.list("Attribute", astNode.getAttributeList());
+            sink.list("Event", astNode.getEventList());
+        });
+        declare(Enumerations.class, (astNode, sink) -> {
+            sink.list("Attribute", astNode.getAttributeList());
+            sink.list("Enumeration", astNode.getEnumerationList());
+        });
+        declare(Property.class, (astNode, sink) -> {
+            sink.value("Name", astNode.getName());
+            sink.node("Expr", astNode.getExpr());
+        });
+        declare(Signature.class, (astNode, sink) -> {
+            sink.list("OutputParam", astNode.getOutputParamList());
+            sink.value("Name", astNode.getName());
+            sink.list("InputParam", astNode.getInputParamList());
+        });
+        declare(PropertyAccess.class, (astNode, sink) -> {
+            sink.list("OutputParam", astNode.getOutputParamList());
+            sink.value("Access", astNode.getAccess());
+            sink.value("Name", astNode.getName());
+            sink.list("InputParam", astNode.getInputParamList());
+            sink.list("Stmt", astNode.getStmtList());
+            sink.list("NestedFunction", astNode.getNestedFunctionList());
+        });
+        declare(PropertyAccessSignature.class, (astNode, sink) -> {
+            sink.list("OutputParam", astNode.getOutputParamList());
+            sink.value("Access", astNode.getAccess());
+            sink.value("Name", astNode.getName());
+            sink.list("InputParam", astNode.getInputParamList());
+        });
+        declare(Event.class, (astNode, sink) -> sink.value("Name", astNode.getName()));
+        declare(Enumeration.class, (astNode, sink) -> {
+            sink.value("Name", astNode.getName());
+            sink.list("Expr", astNode.getExprList());
+        });
+        declare(ExprStmt.class, (astNode, sink) -> sink.node("Expr", astNode.getExpr()));
+        declare(AssignStmt.class, (astNode, sink) -> {
+            sink.node("LHS", astNode.getLHS());
+            sink.node("RHS", astNode.getRHS());
+        });
+        declare(GlobalStmt.class, (astNode, sink) -> sink.list("Name", astNode.getNameList()));
+        declare(PersistentStmt.class, (astNode, sink) -> sink.list("Name", astNode.getNameList()));
+        declare(ShellCommandStmt.class, (astNode, sink) -> sink.value("Command", astNode.getCommand()));
+        declare(BreakStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ContinueStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ReturnStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(EmptyStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ForStmt.class, (astNode, sink) -> {
+            sink.node("AssignStmt", astNode.getAssignStmt());
+            sink.list("Stmt", astNode.getStmtList());
+            sink.value("isParfor", astNode.getisParfor());
+            sink.node("Worker", astNode.hasWorker()? astNode.getWorker() : null);
+        });
+        declare(WhileStmt.class, (astNode, sink) -> {
+            sink.node("Expr", astNode.getExpr());
+            sink.list("Stmt", astNode.getStmtList());
+        });
+        declare(TryStmt.class, (astNode, sink) -> {
+            sink.list("TryStmt", astNode.getTryStmtList());
+            sink.list("CatchStmt", astNode.getCatchStmtList());
+            sink.node("CatchName", astNode.hasCatchName()? astNode.getCatchName() : null);
+        });
+        declare(SwitchStmt.class, (astNode, sink) -> {
+            sink.node("Expr", astNode.getExpr());
+            sink.list("SwitchCaseBlock", astNode.getSwitchCaseBlockList());
+            sink.node("DefaultCaseBlock", astNode.hasDefaultCaseBlock()?
+                    astNode.getDefaultCaseBlock():
                     null
             );
-        } else if (astNode instanceof SwitchCaseBlock) {
-            jsonObject.put("Expr", serialize(((SwitchCaseBlock) astNode).getExpr()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((SwitchCaseBlock) astNode).getStmtList()));
-        } else if (astNode instanceof DefaultCaseBlock) {
-            jsonObject.put("Stmt", serializeAsJSONArray(((DefaultCaseBlock) astNode).getStmtList()));
-        } else if (astNode instanceof IfStmt) {
-            jsonObject.put("IfBlock", serializeAsJSONArray(((IfStmt) astNode).getIfBlockList()));
-            jsonObject.put("ElseBlock", ((IfStmt) astNode).hasElseBlock()? serialize(((IfStmt) astNode).getElseBlock()): null);
-        } else if (astNode instanceof IfBlock) {
-            jsonObject.put("Condition", serialize(((IfBlock) astNode).getCondition()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((IfBlock) astNode).getStmtList()));
-        } else if (astNode instanceof ElseBlock) {
-            jsonObject.put("Stmt", serializeAsJSONArray(((ElseBlock) astNode).getStmtList()));
-        } else if (astNode instanceof SpmdStmt) {
-            jsonObject.put("MinWorker", ((SpmdStmt) astNode).hasMinWorker()?serialize(((SpmdStmt) astNode).getMinWorker()): null);
-            jsonObject.put("MaxWorker", ((SpmdStmt) astNode).hasMaxWorker()?serialize(((SpmdStmt) astNode).getMaxWorker()): null);
-            jsonObject.put("Stmt", serializeAsJSONArray(((SpmdStmt) astNode).getStmtList()));
-        } else if (astNode instanceof NameExpr) {
-            jsonObject.put("Name", serialize(((NameExpr) astNode).getName()));
-        } else if (astNode instanceof ParameterizedExpr) {
-            jsonObject.put("Target", serialize(((ParameterizedExpr) astNode).getTarget()));
-            jsonObject.put("Arg", serializeAsJSONArray(((ParameterizedExpr) astNode).getArgList()));
-        } else if (astNode instanceof CellIndexExpr) {
-            jsonObject.put("Target", serialize(((CellIndexExpr) astNode).getTarget()));
-            jsonObject.put("Arg", serializeAsJSONArray(((CellIndexExpr) astNode).getArgList()));
-        } else if (astNode instanceof DotExpr) {
-            jsonObject.put("Target", serialize(((DotExpr) astNode).getTarget()));
-            jsonObject.put("Field", serialize(((DotExpr) astNode).getField()));
-        } else if (astNode instanceof MatrixExpr) {
-            jsonObject.put("Row", serializeAsJSONArray(((MatrixExpr) astNode).getRowList()));
-        } else if (astNode instanceof Row) {
-            jsonObject.put("Element", serializeAsJSONArray(((Row) astNode).getElementList()));
-        } else if (astNode instanceof IntLiteralExpr) {
-            jsonObject.put("Value", ((IntLiteralExpr) astNode).getValue().getValue());
-        } else if (astNode instanceof FPLiteralExpr) {
-            jsonObject.put("Value", ((FPLiteralExpr) astNode).getValue().getValue());
-        } else if (astNode instanceof StringLiteralExpr) {
-            jsonObject.put("Value", ((StringLiteralExpr) astNode).getValue());
-        } else if (astNode instanceof UnaryExpr) {
-            jsonObject.put("Operand", serialize(((UnaryExpr) astNode).getOperand()));
-        } else if (astNode instanceof BinaryExpr) {
-            jsonObject.put("LHS", serialize(((BinaryExpr) astNode).getLHS()));
-            jsonObject.put("RHS", serialize(((BinaryExpr) astNode).getRHS()));
-        } else if (astNode instanceof RangeExpr) {
-            jsonObject.put("Lower", serialize(((RangeExpr) astNode).getLower()));
-            jsonObject.put("Incr", ((RangeExpr) astNode).hasIncr()?serialize(((RangeExpr) astNode).getIncr()): null);
-            jsonObject.put("Upper", serialize(((RangeExpr) astNode).getUpper()));
-        } else if (astNode instanceof ColonExpr) {
-            /* ignored */
-        } else if (astNode instanceof EndExpr) {
-            /* ignored */
-        } else if (astNode instanceof FunctionHandleExpr) {
-            jsonObject.put("Name", serialize(((FunctionHandleExpr) astNode).getName()));
-        } else if (astNode instanceof LambdaExpr) {
-            jsonObject.put("InputParam", serializeAsJSONArray(((LambdaExpr) astNode).getInputParamList()));
-            jsonObject.put("Body", serialize(((LambdaExpr) astNode).getBody()));
-        } else if (astNode instanceof CellArrayExpr) {
-            jsonObject.put("Row", serializeAsJSONArray(((CellArrayExpr) astNode).getRowList()));
-        } else if (astNode instanceof SuperClassMethodExpr) {
-            jsonObject.put("FuncName", serialize(((SuperClassMethodExpr) astNode).getFuncName()));
-            jsonObject.put("ClassName", serialize(((SuperClassMethodExpr) astNode).getClassName()));
-        } else if (astNode instanceof OneLineHelpComment) {
-            throw new UnsupportedOperationException();
-        } else if (astNode instanceof MultiLineHelpComment) {
-            throw new UnsupportedOperationException();
-        } else if (astNode instanceof Name) {
-            jsonObject.put("ID", ((Name) astNode).getID());
-        } else if (astNode instanceof AspectDef) {
-            jsonObject.put("Name", ((AspectDef) astNode).getName());
-            jsonObject.put("Property", serializeAsJSONArray(((AspectDef) astNode).getPatternList()));
-            jsonObject.put("Method", serializeAsJSONArray(((AspectDef) astNode).getMethodList()));
-            jsonObject.put("ClassEvent", serializeAsJSONArray(((AspectDef) astNode).getClassEventList()));
-            jsonObject.put("Enumeration", serializeAsJSONArray(((AspectDef) astNode).getEnumerationList()));
-            jsonObject.put("Pattern", serializeAsJSONArray(((AspectDef) astNode).getPatternList()));
-            jsonObject.put("Action", serializeAsJSONArray(((AspectDef) astNode).getActionList()));
-        } else if (astNode instanceof Patterns) {
-            jsonObject.put("Pattern", serializeAsJSONArray(((Patterns) astNode).getPatternList()));
-        } else if (astNode instanceof Actions) {
-            jsonObject.put("Action", serializeAsJSONArray(((Actions) astNode).getActionList()));
-        } else if (astNode instanceof Action) {
-            jsonObject.put("Name", ((Action) astNode).getName());
-            jsonObject.put("Type", ((Action) astNode).getType());
-            jsonObject.put("Expr", serialize(((Action) astNode).getExpr()));
-            jsonObject.put("InputParam", serializeAsJSONArray(((Action) astNode).getInputParamList()));
-            jsonObject.put("Stmt", serializeAsJSONArray(((Action) astNode).getStmtList()));
-            jsonObject.put("NestedFunction", serializeAsJSONArray(((Action) astNode).getNestedFunctionList()));
-        } else if (astNode instanceof Pattern) {
-            jsonObject.put("Name", ((Pattern) astNode).getName());
-            jsonObject.put("Expr", serialize(((Pattern) astNode).getExpr()));
-        } else if (astNode instanceof TypeSignature) {
-            jsonObject.put("Type", serialize(((TypeSignature) astNode).getType()));
-        } else if (astNode instanceof DimensionSignature) {
-            jsonObject.put("Dimension", serializeAsJSONArray(((DimensionSignature) astNode).getDimensionList()));
-        } else if (astNode instanceof FullSignature) {
-            jsonObject.put("TypeSignature", ((FullSignature) astNode).hasTypeSignature()?
-                    serialize(((FullSignature) astNode).getTypeSignature()):
+        });
+        declare(SwitchCaseBlock.class, (astNode, sink) -> {
+            sink.node("Expr", astNode.getExpr());
+            sink.list("Stmt", astNode.getStmtList());
+        });
+        declare(DefaultCaseBlock.class, (astNode, sink) -> sink.list("Stmt", astNode.getStmtList()));
+        declare(IfStmt.class, (astNode, sink) -> {
+            sink.list("IfBlock", astNode.getIfBlockList());
+            sink.node("ElseBlock", astNode.hasElseBlock()? astNode.getElseBlock() : null);
+        });
+        declare(IfBlock.class, (astNode, sink) -> {
+            sink.node("Condition", astNode.getCondition());
+            sink.list("Stmt", astNode.getStmtList());
+        });
+        declare(ElseBlock.class, (astNode, sink) -> sink.list("Stmt", astNode.getStmtList()));
+        declare(SpmdStmt.class, (astNode, sink) -> {
+            sink.node("MinWorker", astNode.hasMinWorker()? astNode.getMinWorker() : null);
+            sink.node("MaxWorker", astNode.hasMaxWorker()? astNode.getMaxWorker() : null);
+            sink.list("Stmt", astNode.getStmtList());
+        });
+        declare(NameExpr.class, (astNode, sink) -> sink.node("Name", astNode.getName()));
+        declare(ParameterizedExpr.class, (astNode, sink) -> {
+            sink.node("Target", astNode.getTarget());
+            sink.list("Arg", astNode.getArgList());
+        });
+        declare(CellIndexExpr.class, (astNode, sink) -> {
+            sink.node("Target", astNode.getTarget());
+            sink.list("Arg", astNode.getArgList());
+        });
+        declare(DotExpr.class, (astNode, sink) -> {
+            sink.node("Target", astNode.getTarget());
+            sink.node("Field", astNode.getField());
+        });
+        declare(MatrixExpr.class, (astNode, sink) -> sink.list("Row", astNode.getRowList()));
+        declare(Row.class, (astNode, sink) -> sink.list("Element", astNode.getElementList()));
+        declare(IntLiteralExpr.class, (astNode, sink) -> {
+            sink.value("Value", astNode.getValue().getText());
+            sink.value("Imaginary", astNode.getValue().isImaginary());
+        });
+        declare(FPLiteralExpr.class, (astNode, sink) -> {
+            sink.value("Value", astNode.getValue().getText());
+            sink.value("Imaginary", astNode.getValue().isImaginary());
+        });
+        declare(StringLiteralExpr.class, (astNode, sink) -> sink.value("Value", astNode.getValue()));
+        declare(UnaryExpr.class, (astNode, sink) -> sink.node("Operand", astNode.getOperand()));
+        declare(BinaryExpr.class, (astNode, sink) -> {
+            sink.node("LHS", astNode.getLHS());
+            sink.node("RHS", astNode.getRHS());
+        });
+        declare(RangeExpr.class, (astNode, sink) -> {
+            sink.node("Lower", astNode.getLower());
+            sink.node("Incr", astNode.hasIncr()? astNode.getIncr() : null);
+            sink.node("Upper", astNode.getUpper());
+        });
+        declare(ColonExpr.class, (astNode, sink) -> { /* ignored */ });
+        declare(EndExpr.class, (astNode, sink) -> { /* ignored */ });
+        declare(FunctionHandleExpr.class, (astNode, sink) -> sink.node("Name", astNode.getName()));
+        declare(LambdaExpr.class, (astNode, sink) -> {
+            sink.list("InputParam", astNode.getInputParamList());
+            sink.node("Body", astNode.getBody());
+        });
+        declare(CellArrayExpr.class, (astNode, sink) -> sink.list("Row", astNode.getRowList()));
+        declare(SuperClassMethodExpr.class, (astNode, sink) -> {
+            sink.node("FuncName", astNode.getFuncName());
+            sink.node("ClassName", astNode.getClassName());
+        });
+        declare(OneLineHelpComment.class, (astNode, sink) -> { throw new UnsupportedOperationException(); });
+        declare(MultiLineHelpComment.class, (astNode, sink) -> { throw new UnsupportedOperationException(); });
+        declare(Name.class, (astNode, sink) -> sink.value("ID", astNode.getID()));
+        declare(AspectDef.class, (astNode, sink) -> {
+            sink.value("Name", astNode.getName());
+            sink.list("Property", astNode.getPropertyList());
+            sink.list("Method", astNode.getMethodList());
+            sink.list("ClassEvent", astNode.getClassEventList());
+            sink.list("Enumeration", astNode.getEnumerationList());
+            sink.list("Pattern", astNode.getPatternList());
+            sink.list("Action", astNode.getActionList());
+        });
+        declare(Patterns.class, (astNode, sink) -> sink.list("Pattern", astNode.getPatternList()));
+        declare(Actions.class, (astNode, sink) -> sink.list("Action", astNode.getActionList()));
+        declare(Action.class, (astNode, sink) -> {
+            sink.value("Name", astNode.getName());
+            sink.value("Type", astNode.getType());
+            sink.node("Expr", astNode.getExpr());
+            sink.list("InputParam", astNode.getInputParamList());
+            sink.list("Stmt", astNode.getStmtList());
+            sink.list("NestedFunction", astNode.getNestedFunctionList());
+        });
+        declare(Pattern.class, (astNode, sink) -> {
+            sink.value("Name", astNode.getName());
+            sink.node("Expr", astNode.getExpr());
+        });
+        declare(TypeSignature.class, (astNode, sink) -> sink.node("Type", astNode.getType()));
+        declare(DimensionSignature.class, (astNode, sink) -> sink.list("Dimension", astNode.getDimensionList()));
+        declare(FullSignature.class, (astNode, sink) -> {
+            sink.node("TypeSignature", astNode.hasTypeSignature()?
+                    astNode.getTypeSignature():
                     null
             );
-            jsonObject.put("DimensionSignature", ((FullSignature) astNode).hasDimensionSignature()?
-                    serialize(((FullSignature) astNode).getDimensionSignature()):
+            sink.node("DimensionSignature", astNode.hasDimensionSignature()?
+                    astNode.getDimensionSignature():
                     null
             );
-        } else if (astNode instanceof PatternName) {
-            jsonObject.put("Name", serialize(((PatternName) astNode).getName()));
-        } else if (astNode instanceof PatternGet) {
-            jsonObject.put("Identifier", serialize(((PatternGet) astNode).getIdentifier()));
-            jsonObject.put("FullSignature", ((PatternGet) astNode).hasFullSignature()? serialize(((PatternGet) astNode).getFullSignature()): null);
-        } else if (astNode instanceof PatternSet) {
-            jsonObject.put("Identifier", serialize(((PatternSet) astNode).getIdentifier()));
-            jsonObject.put("FullSignature", ((PatternSet) astNode).hasFullSignature()? serialize(((PatternSet) astNode).getFullSignature()): null);
-        } else if (astNode instanceof Input) {
-            jsonObject.put("FullSignature", serializeAsJSONArray(((Input) astNode).getFullSignatureList()));
-        } else if (astNode instanceof Output) {
-            jsonObject.put("FullSignature", serializeAsJSONArray(((Output) astNode).getFullSignatureList()));
-        } else if (astNode instanceof PatternCall) {
-            jsonObject.put("Identifier", serialize(((PatternCall) astNode).getIdentifier()));
-            jsonObject.put("Input", serialize(((PatternCall) astNode).getInput()));
-            jsonObject.put("Output", serialize(((PatternCall) astNode).getOutput()));
-        } else if (astNode instanceof PatternExecution) {
-            jsonObject.put("Identifier", serialize(((PatternExecution) astNode).getIdentifier()));
-            jsonObject.put("Input", serialize(((PatternExecution) astNode).getInput()));
-            jsonObject.put("Output", serialize(((PatternExecution) astNode).getOutput()));
-        } else if (astNode instanceof PatternMainExecution) {
-            /* ignore */
-        } else if (astNode instanceof PatternLoop) {
-            jsonObject.put("Type", ((PatternLoop) astNode).hasType()? serialize(((PatternLoop) astNode).getType()) : null);
-            jsonObject.put("Identifier", serialize(((PatternLoop) astNode).getIdentifier()));
-        } else if (astNode instanceof PatternLoopHead) {
-            jsonObject.put("Type", ((PatternLoopHead) astNode).hasType()? serialize(((PatternLoopHead) astNode).getType()) : null);
-            jsonObject.put("Identifier", serialize(((PatternLoopHead) astNode).getIdentifier()));
-        } else if (astNode instanceof PatternLoopBody) {
-            jsonObject.put("Type", ((PatternLoopBody) astNode).hasType()? serialize(((PatternLoopBody) astNode).getType()) : null);
-            jsonObject.put("Identifier", serialize(((PatternLoopBody) astNode).getIdentifier()));
-        } else if (astNode instanceof SelectorSimple) {
-            jsonObject.put("Element", serialize(((SelectorSimple) astNode).getElement()));
-        } else if (astNode instanceof SelectorCompound) {
-            jsonObject.put("Element", serializeAsJSONArray(((SelectorCompound) astNode).getElementList()));
-        } else if (astNode instanceof PatternAnnotate) {
-            jsonObject.put("Identifier", serialize(((PatternAnnotate) astNode).getIdentifier()));
-            jsonObject.put("Selector", serializeAsJSONArray(((PatternAnnotate) astNode).getSelectorList()));
-        } else if (astNode instanceof PatternOperator) {
-            jsonObject.put("Type", serialize(((PatternOperator) astNode).getType()));
-            jsonObject.put("FullSignature", serializeAsJSONArray(((PatternOperator) astNode).getFullSignatureList()));
-        } else if (astNode instanceof PatternWithin) {
-            jsonObject.put("Type", serialize(((PatternWithin) astNode).getType()));
-            jsonObject.put("Identifier", serialize(((PatternWithin) astNode).getIdentifier()));
-        } else if (astNode instanceof PatternDimension) {
-            jsonObject.put("DimensionSignature", serialize(((PatternDimension) astNode).getDimensionSignature()));
-        } else if (astNode instanceof PatternIsType) {
-            jsonObject.put("TypeSignature", serialize(((PatternIsType) astNode).getTypeSignature()));
-        } else {
-            /* control flow should not reach here */
-            throw new AssertionError();
-        }
+        });
+        declare(PatternName.class, (astNode, sink) -> sink.node("Name", astNode.getName()));
+        declare(PatternGet.class, (astNode, sink) -> {
+            sink.node("Identifier", astNode.getIdentifier());
+            sink.node("FullSignature", astNode.hasFullSignature()? astNode.getFullSignature() : null);
+        });
+        declare(PatternSet.class, (astNode, sink) -> {
+            sink.node("Identifier", astNode.getIdentifier());
+            sink.node("FullSignature", astNode.hasFullSignature()? astNode.getFullSignature() : null);
+        });
+        declare(Input.class, (astNode, sink) -> sink.list("FullSignature", astNode.getFullSignatureList()));
+        declare(Output.class, (astNode, sink) -> sink.list("FullSignature", astNode.getFullSignatureList()));
+        declare(PatternCall.class, (astNode, sink) -> {
+            sink.node("Identifier", astNode.getIdentifier());
+            sink.node("Input", astNode.getInput());
+            sink.node("Output", astNode.getOutput());
+        });
+        declare(PatternExecution.class, (astNode, sink) -> {
+            sink.node("Identifier", astNode.getIdentifier());
+            sink.node("Input", astNode.getInput());
+            sink.node("Output", astNode.getOutput());
+        });
+        declare(PatternMainExecution.class, (astNode, sink) -> { /* ignore */ });
+        declare(PatternLoop.class, (astNode, sink) -> {
+            sink.node("Type", astNode.hasType()? astNode.getType() : null);
+            sink.node("Identifier", astNode.getIdentifier());
+        });
+        declare(PatternLoopHead.class, (astNode, sink) -> {
+            sink.node("Type", astNode.hasType()? astNode.getType() : null);
+            sink.node("Identifier", astNode.getIdentifier());
+        });
+        declare(PatternLoopBody.class, (astNode, sink) -> {
+            sink.node("Type", astNode.hasType()? astNode.getType() : null);
+            sink.node("Identifier", astNode.getIdentifier());
+        });
+        declare(SelectorSimple.class, (astNode, sink) -> sink.node("Element", astNode.getElement()));
+        declare(SelectorCompound.class, (astNode, sink) -> sink.list("Element", astNode.getElementList()));
+        declare(PatternAnnotate.class, (astNode, sink) -> {
+            sink.node("Identifier", astNode.getIdentifier());
+            sink.list("Selector", astNode.getSelectorList());
+        });
+        declare(PatternOperator.class, (astNode, sink) -> {
+            sink.node("Type", astNode.getType());
+            sink.list("FullSignature", astNode.getFullSignatureList());
+        });
+        declare(PatternWithin.class, (astNode, sink) -> {
+            sink.node("Type", astNode.getType());
+            sink.node("Identifier", astNode.getIdentifier());
+        });
+        declare(PatternDimension.class, (astNode, sink) -> {
+            sink.node("DimensionSignature", astNode.getDimensionSignature());
+        });
+        declare(PatternIsType.class, (astNode, sink) -> sink.node("TypeSignature", astNode.getTypeSignature()));
+    }
 
-        return applyDecoration(astNode, jsonObject);
+    private static void serializeFields(ASTNode astNode, FieldSink sink) {
+        writerTable.get(astNode.getClass()).write(astNode, sink);
     }
 
     @Override
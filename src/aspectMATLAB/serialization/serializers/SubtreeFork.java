@@ -0,0 +1,64 @@
+package aspectMATLAB.serialization.serializers;
+
+import ast.ASTNode;
+import ast.FunctionList;
+import ast.Program;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * fan out of independent subtrees over a fork join pool. the programs of a compilation unit and the functions of a
+ * function file share no serialized state, hence each of them can be serialized into its own buffer, the buffers
+ * being joined back in list order by the caller.
+ * <p>
+ * the tasks read disjoint subtrees of one tree concurrently. the serializers only read tokens, children and
+ * decorator values (positions, output suppression), never a lazily computed attribute; the only write a read may
+ * cause is a jastadd rewrite, performed by {@link ASTNode#getChild} the first time a child is accessed. every
+ * subtree is therefore walked through {@link ASTNode#getChild} on the calling thread before any task is started,
+ * after which every child access is a plain field read, and the forked tasks happen-after that walk.
+ */
+final class SubtreeFork {
+    /** @return {@code true} if the list holds independent subtrees worth serializing in parallel */
+    static boolean isForkable(ast.List<? extends ASTNode> nodes) {
+        if (nodes.getNumChild() < 2) return false;
+        ASTNode first = nodes.getChild(0);
+        if (first instanceof Program) return true;
+        return first instanceof ast.Function && nodes.getParent() instanceof FunctionList;
+    }
+
+    /**
+     * start serializing the elements of the list
+     * @param forkJoinPool pool running the tasks, forked into directly if called from one of its workers
+     * @param nodes list of independent subtrees
+     * @param serializer serialization of a single element
+     * @return one task per element, in list order
+     */
+    static <R> java.util.List<ForkJoinTask<R>> fork(
+            ForkJoinPool forkJoinPool, ast.List<? extends ASTNode> nodes, Function<ASTNode, R> serializer) {
+        java.util.List<ForkJoinTask<R>> tasks = new ArrayList<>(nodes.getNumChild());
+        settle(nodes);
+        for (int index = 0; index < nodes.getNumChild(); index++) {
+            final ASTNode node = nodes.getChild(index);
+            ForkJoinTask<R> task = ForkJoinTask.adapt(() -> serializer.apply(node));
+            if (ForkJoinTask.getPool() == forkJoinPool) {
+                task.fork();
+            } else {
+                forkJoinPool.execute(task);
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /* access every child of the subtree once, so that any pending rewrite is done before the subtree is shared */
+    private static void settle(ASTNode astNode) {
+        for (int index = 0; index < astNode.getNumChild(); index++) {
+            settle(astNode.getChild(index));
+        }
+    }
+
+    private SubtreeFork() {}
+}
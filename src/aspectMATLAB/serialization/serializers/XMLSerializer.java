@@ -1,6 +1,10 @@
 package aspectMATLAB.serialization.serializers;
 
+import aspectMATLAB.serialization.ASTNodeBooleanDecorator;
 import aspectMATLAB.serialization.ASTNodeDecorator;
+import aspectMATLAB.serialization.ASTNodeDecoratorPipeline;
+import aspectMATLAB.serialization.ASTNodeIntDecorator;
+import aspectMATLAB.serialization.ASTNodeSchema;
 import aspectMATLAB.serialization.ASTNodeSerializer;
 import ast.*;
 import org.w3c.dom.Document;
@@ -9,50 +13,95 @@ import org.w3c.dom.Element;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.StringWriter;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Stream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class XMLSerializer implements ASTNodeSerializer<ASTNode, Document> {
-    private Set<ASTNodeDecorator<? extends Number>> numericalDecoratorSet = new HashSet<>();
-    private Set<ASTNodeDecorator<? extends CharSequence>> stringDecoratorSet = new HashSet<>();
-    private Set<ASTNodeDecorator<? extends Boolean>> booleanDecoratorSet = new HashSet<>();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
 
+    /* receiver of the attributes and child elements of a node, either building a dom element or writing xml text */
+    private interface ElementSink {
+        void attribute(String name, String value);
+        void element(ASTNode astNode);
+        void list(ast.List<? extends ASTNode> nodes, String listName);
+    }
+
+    /* writes the fields of a node of the given type into a sink */
+    private interface FieldWriter<T extends ASTNode> {
+        void write(T astNode, ElementSink sink);
+    }
+
+    /* carries stax failures through the element sink */
+    private static final class StreamFailure extends RuntimeException {
+        private StreamFailure(XMLStreamException cause) {
+            super(cause);
+        }
+    }
+
+    /* decorator tags must not shadow a token attribute */
+    private final ASTNodeDecoratorPipeline decoratorPipeline = new ASTNodeDecoratorPipeline(ASTNodeSchema::isTokenName);
+    private String indentation = null;
+    private ForkJoinPool forkJoinPool = null;
+
+    /**
+     * set the indentation used by the streaming serialization, each nested element is written on its own line,
+     * indented by one more {@code indentation}
+     * @param indentation indentation unit, {@code null} or empty to write the document on a single line
+     * @return reference to this serializer
+     */
+    public XMLSerializer setIndentation(String indentation) {
+        this.indentation = (indentation == null || indentation.isEmpty()) ? null : indentation;
+        return this;
+    }
+
+    /**
+     * serialize the programs of a compilation unit, and the functions of a function file, in parallel on the given
+     * pool, each into its own buffer. only the streaming serialization is parallel, its output is identical to the
+     * sequential one. the serialized tree must not be modified meanwhile.
+     * @param forkJoinPool pool to serialize on, {@code null} to serialize sequentially
+     * @return reference to this serializer
+     */
+    public XMLSerializer setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
+
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public XMLSerializer appendNumberDecorator(ASTNodeDecorator<? extends Number> decorator) {
-        numericalDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.NUMBER);
         return this;
     }
 
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public XMLSerializer appendStringDecorator(ASTNodeDecorator<? extends CharSequence> decorator) {
-        stringDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.STRING);
         return this;
     }
 
+    /** @throws IllegalArgumentException if the tag of the decorator is already used */
     @Override
     public XMLSerializer appendBooleanDecorator(ASTNodeDecorator<? extends Boolean> decorator) {
-        booleanDecoratorSet.add(decorator);
+        decoratorPipeline.append(decorator, ASTNodeDecoratorPipeline.Kind.BOOLEAN);
         return this;
     }
 
     private Element applyDecoration(final ASTNode astNode, final Element target) {
-        Stream.concat(numericalDecoratorSet.stream(),
-                Stream.concat(stringDecoratorSet.stream(),
-                        booleanDecoratorSet.stream())
-        ).forEach(decorator -> {
-            final String tag = decorator.tag();
+        for (int index = 0; index < decoratorPipeline.size(); index++) {
+            final ASTNodeDecorator<?> decorator = decoratorPipeline.get(index);
             final Object decoration = decorator.decorate(astNode);
-            if (target.hasAttribute(tag)) throw new IllegalArgumentException();
-            if (decoration == null) return;
-            target.setAttribute(tag, decoration.toString());
-        });
+            if (decoration == null) continue;
+            target.setAttribute(decorator.tag(), decoration.toString());
+        }
         return target;
     }
 
@@ -68,296 +117,307 @@ public final class XMLSerializer implements ASTNodeSerializer<ASTNode, Document>
     private Element serializeElement(ASTNode astNode, final Document document) {
         Element element = document.createElement(astNode.getClass().getSimpleName());
 
-        if (astNode instanceof CompilationUnits) {
-            element.appendChild(serializeElementList(((CompilationUnits) astNode).getProgramList(), "Program", document));
-        } else if (astNode instanceof Script) {
-            element.appendChild(serializeElementList(((Script) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof FunctionList) {
-            element.appendChild(serializeElementList(((FunctionList) astNode).getFunctionList(), "Function", document));
-        } else if (astNode instanceof Function) {
-            element.appendChild(serializeElementList(((Function) astNode).getOutputParamList(), "OutputParam", document));
-            element.appendChild(serializeElement(((Function) astNode).getName(), document));
-            element.appendChild(serializeElementList(((Function) astNode).getInputParamList(), "InputParam", document));
-            element.appendChild(serializeElementList(((Function) astNode).getStmtList(), "Stmt", document));
-            element.appendChild(serializeElementList(((Function) astNode).getNestedFunctionList(), "NestedFunction", document));
-        } else if (astNode instanceof ClassDef) {
-            element.appendChild(serializeElementList(((ClassDef) astNode).getAttributeList(), "Attribute", document));
-            element.setAttribute("Name", ((ClassDef) astNode).getName());
-            element.appendChild(serializeElementList(((ClassDef) astNode).getSuperClassList(), "SuperClass", document));
-            element.appendChild(serializeElementList(((ClassDef) astNode).getPropertyList(), "Property", document));
-            element.appendChild(serializeElementList(((ClassDef) astNode).getMethodList(), "Method", document));
-            element.appendChild(serializeElementList(((ClassDef) astNode).getClassEventList(), "ClassEvent", document));
-            element.appendChild(serializeElementList(((ClassDef) astNode).getEnumerationList(), "Enumeration", document));
-        } else if (astNode instanceof Attribute) {
-            element.setAttribute("Key", ((Attribute) astNode).getKey());
-            element.appendChild(serializeElement(((Attribute) astNode).getExpr(), document));
-        } else if (astNode instanceof SuperClass) {
-            element.setAttribute("Name", ((SuperClass) astNode).getName());
-        } else if (astNode instanceof Properties) {
-            element.appendChild(serializeElementList(((Properties) astNode).getAttributeList(), "Attribute", document));
-            element.appendChild(serializeElementList(((Properties) astNode).getPropertyList(), "Property", document));
-        } else if (astNode instanceof Methods) {
-            element.appendChild(serializeElementList(((Methods) astNode).getAttributeList(), "Attribute", document));
-            element.appendChild(serializeElementList(((Methods) astNode).getSignatureList(), "Signature", document));
-            element.appendChild(serializeElementList(((Methods) astNode).getPropAccList(), "PropAcc", document));
-            element.appendChild(serializeElementList(((Methods) astNode).getFunctionList(), "Function", document));
-            element.appendChild(serializeElementList(((Methods) astNode).getPropAccSigList(), "PropAccSig", document));
-        } else if (astNode instanceof ClassEvents) {
-            element.appendChild(serializeElementList(((ClassEvents) astNode).getAttributeList(), "Attribute", document));
-            element.appendChild(serializeElementList(((ClassEvents) astNode).getEventList(), "Event", document));
-        } else if (astNode instanceof Enumerations) {
-            element.appendChild(serializeElementList(((Enumerations) astNode).getAttributeList(), "Attribute", document));
-            element.appendChild(serializeElementList(((Enumerations) astNode).getEnumerationList(), "Enumeration", document));
-        } else if (astNode instanceof Property) {
-            element.setAttribute("Name", ((Property) astNode).getName());
-            element.appendChild(serializeElement(((Property) astNode).getExpr(), document));
-        } else if (astNode instanceof Signature) {
-            element.appendChild(serializeElementList(((Signature) astNode).getOutputParamList(), "OutputParam", document));
-            element.setAttribute("Name", ((Signature) astNode).getName());
-            element.appendChild(serializeElementList(((Signature) astNode).getInputParamList(), "InputParam", document));
-        } else if (astNode instanceof PropertyAccess) {
-            element.appendChild(serializeElementList(((PropertyAccess) astNode).getOutputParamList(), "OutputParam", document));
-            element.setAttribute("Access", ((PropertyAccess) astNode).getAccess());
-            element.setAttribute("Name", ((PropertyAccess) astNode).getName());
-            element.appendChild(serializeElementList(((PropertyAccess) astNode).getInputParamList(), "InputParam", document));
-            element.appendChild(serializeElementList(((PropertyAccess) astNode).getStmtList(), "Stmt", document));
-            element.appendChild(serializeElementList(((PropertyAccess) astNode).getNestedFunctionList(), "NestedFunction", document));
-        } else if (astNode instanceof PropertyAccessSignature) {
-            element.appendChild(serializeElementList(((PropertyAccessSignature) astNode).getOutputParamList(), "OutputParam", document));
-            element.setAttribute("Access", ((PropertyAccessSignature) astNode).getAccess());
-            element.setAttribute("Name", ((PropertyAccessSignature) astNode).getName());
-            element.appendChild(serializeElementList(((PropertyAccessSignature) astNode).getInputParamList(), "InputParam", document));
-        } else if (astNode instanceof Event) {
-            element.setAttribute("Name", ((Event) astNode).getName());
-        } else if (astNode instanceof Enumeration) {
-            element.setAttribute("Name", ((Enumeration) astNode).getName());
-            element.appendChild(serializeElementList(((Enumeration) astNode).getExprList(), "Expr", document));
-        } else if (astNode instanceof ExprStmt) {
-            element.appendChild(serializeElement(((ExprStmt) astNode).getExpr(), document));
-        } else if (astNode instanceof AssignStmt) {
-            element.appendChild(serializeElement(((AssignStmt) astNode).getLHS(), document));
-            element.appendChild(serializeElement(((AssignStmt) astNode).getRHS(), document));
-        } else if (astNode instanceof GlobalStmt) {
-            element.appendChild(serializeElementList(((GlobalStmt) astNode).getNameList(), "Name", document));
-        } else if (astNode instanceof PersistentStmt) {
-            element.appendChild(serializeElementList(((PersistentStmt) astNode).getNameList(), "Name", document));
-        } else if (astNode instanceof ShellCommandStmt) {
-            element.setAttribute("Command", ((ShellCommandStmt) astNode).getCommand());
-        } else if (astNode instanceof BreakStmt) {
-            /* ignored */
-        } else if (astNode instanceof ContinueStmt) {
-            /* ignored */
-        } else if (astNode instanceof ReturnStmt) {
-            /* ignored */
-        } else if (astNode instanceof EmptyStmt) {
-            /* ignored */
-        } else if (astNode instanceof ForStmt) {
-            element.appendChild(serializeElement(((ForStmt) astNode).getAssignStmt(), document));
-            element.appendChild(serializeElementList(((ForStmt) astNode).getStmtList(), "Stmt", document));
-            element.setAttribute("isParfor", Boolean.toString(((ForStmt) astNode).getisParfor()));
-            element.appendChild(((ForStmt) astNode).hasWorker()?
-                    serializeElement(((ForStmt) astNode).getWorker(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof WhileStmt) {
-            element.appendChild(serializeElement(((WhileStmt) astNode).getExpr(), document));
-            element.appendChild(serializeElementList(((WhileStmt) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof TryStmt) {
-            element.appendChild(serializeElementList(((TryStmt) astNode).getTryStmtList(), "TryStmt", document));
-            element.appendChild(serializeElementList(((TryStmt) astNode).getCatchStmtList(), "CatchStmt", document));
-            element.appendChild(((TryStmt) astNode).hasCatchName()?
-                    serializeElement(((TryStmt) astNode).getCatchName(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof SwitchStmt) {
-            element.appendChild(serializeElement(((SwitchStmt) astNode).getExpr(), document));
-            element.appendChild(serializeElementList(((SwitchStmt) astNode).getSwitchCaseBlockList(), "SwitchCaseBlock", document));
-            element.appendChild(((SwitchStmt) astNode).hasDefaultCaseBlock()?
-                    serializeElement(((SwitchStmt) astNode).getDefaultCaseBlock(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof DefaultCaseBlock) {
-            element.appendChild(serializeElementList(((DefaultCaseBlock) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof IfStmt) {
-            element.appendChild(serializeElementList(((IfStmt) astNode).getIfBlockList(), "IfBlock", document));
-            element.appendChild(((IfStmt) astNode).hasElseBlock()?
-                    serializeElement(((IfStmt) astNode).getElseBlock(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof IfBlock) {
-            element.appendChild(serializeElement(((IfBlock) astNode).getCondition(), document));
-            element.appendChild(serializeElementList(((IfBlock) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof ElseBlock) {
-            element.appendChild(serializeElementList(((ElseBlock) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof SpmdStmt) {
-            element.appendChild(((SpmdStmt) astNode).hasMinWorker()?
-                    serializeElement(((SpmdStmt) astNode).getMinWorker(), document):
-                    document.createElement("null")
-            );
-            element.appendChild(((SpmdStmt) astNode).hasMaxWorker()?
-                    serializeElement(((SpmdStmt) astNode).getMaxWorker(), document):
-                    document.createElement("null")
-            );
-            element.appendChild(serializeElementList(((SpmdStmt) astNode).getStmtList(), "Stmt", document));
-        } else if (astNode instanceof NameExpr) {
-            element.appendChild(serializeElement(((NameExpr) astNode).getName(), document));
-        } else if (astNode instanceof ParameterizedExpr) {
-            element.appendChild(serializeElement(((ParameterizedExpr) astNode).getTarget(), document));
-            element.appendChild(serializeElementList(((ParameterizedExpr) astNode).getArgList(), "Arg", document));
-        } else if (astNode instanceof CellIndexExpr) {
-            element.appendChild(serializeElement(((CellIndexExpr) astNode).getTarget(), document));
-            element.appendChild(serializeElementList(((CellIndexExpr) astNode).getArgList(), "Arg", document));
-        } else if (astNode instanceof DotExpr) {
-            element.appendChild(serializeElement(((DotExpr) astNode).getTarget(), document));
-            element.appendChild(serializeElement(((DotExpr) astNode).getField(), document));
-        } else if (astNode instanceof MatrixExpr) {
-            element.appendChild(serializeElementList(((MatrixExpr) astNode).getRowList(), "Row", document));
-        } else if (astNode instanceof Row) {
-            element.appendChild(serializeElementList(((Row) astNode).getElementList(), "Element", document));
-        } else if (astNode instanceof IntLiteralExpr) {
-            element.setAttribute("Value", ((IntLiteralExpr) astNode).getValue().getValue().toString());
-        } else if (astNode instanceof FPLiteralExpr) {
-            element.setAttribute("Value", ((FPLiteralExpr) astNode).getValue().toString());
-        } else if (astNode instanceof StringLiteralExpr) {
-            element.setAttribute("Value", ((StringLiteralExpr) astNode).getValue());
-        } else if (astNode instanceof UnaryExpr) {
-            element.appendChild(serializeElement(((UnaryExpr) astNode).getOperand(), document));
-        } else if (astNode instanceof BinaryExpr) {
-            element.appendChild(serializeElement(((BinaryExpr) astNode).getLHS(), document));
-            element.appendChild(serializeElement(((BinaryExpr) astNode).getRHS(), document));
-        } else if (astNode instanceof RangeExpr) {
-            element.appendChild(serializeElement(((RangeExpr) astNode).getLower(), document));
-            element.appendChild(((RangeExpr) astNode).hasIncr()?
-                    serializeElement(((RangeExpr) astNode).getIncr(), document):
-                    document.createElement("null")
-            );
-            element.appendChild(serializeElement(((RangeExpr) astNode).getUpper(), document));
-        } else if (astNode instanceof ColonExpr) {
-            /* ignore */
-        } else if (astNode instanceof EndExpr) {
-            /* ignore */
-        } else if (astNode instanceof FunctionHandleExpr) {
-            element.appendChild(serializeElement(((FunctionHandleExpr) astNode).getName(), document));
-        } else if (astNode instanceof LambdaExpr) {
-            element.appendChild(serializeElementList(((LambdaExpr) astNode).getInputParamList(), "InputParam", document));
-            element.appendChild(serializeElement(((LambdaExpr) astNode).getBody(), document));
-        } else if (astNode instanceof CellArrayExpr) {
-            element.appendChild(serializeElementList(((CellArrayExpr) astNode).getRowList(), "Row", document));
-        } else if (astNode instanceof SuperClassMethodExpr) {
-            element.appendChild(serializeElement(((SuperClassMethodExpr) astNode).getFuncName(), document));
-            element.appendChild(serializeElement(((SuperClassMethodExpr) astNode).getClassName(), document));
-        } else if (astNode instanceof OneLineHelpComment) {
-            throw new UnsupportedOperationException();
-        } else if (astNode instanceof MultiLineHelpComment) {
-            throw new UnsupportedOperationException();
-        } else if (astNode instanceof Name) {
-            element.setAttribute("ID", ((Name) astNode).getID());
-        } else if (astNode instanceof AspectDef) {
-            element.setAttribute("Name", ((AspectDef) astNode).getName());
-            element.appendChild(serializeElementList(((AspectDef) astNode).getPropertyList(), "Property", document));
-            element.appendChild(serializeElementList(((AspectDef) astNode).getMethodList(), "Method", document));
-            element.appendChild(serializeElementList(((AspectDef) astNode).getClassEventList(), "ClassEvent", document));
-            element.appendChild(serializeElementList(((AspectDef) astNode).getEnumerationList(), "Enumeration", document));
-            element.appendChild(serializeElementList(((AspectDef) astNode).getPatternList(), "Pattern", document));
-            element.appendChild(serializeElementList(((AspectDef) astNode).getActionList(), "Action", document));
-        } else if (astNode instanceof Patterns) {
-            element.appendChild(serializeElementList(((Patterns) astNode).getPatternList(), "Pattern", document));
-        } else if (astNode instanceof Actions) {
-            element.appendChild(serializeElementList(((Actions) astNode).getActionList(), "Action", document));
-        } else if (astNode instanceof Action) {
-            element.setAttribute("Name", ((Action) astNode).getName());
-            element.setAttribute("Type", ((Action) astNode).getType());
-            element.appendChild(serializeElement(((Action) astNode).getExpr(), document));
-            element.appendChild(serializeElementList(((Action) astNode).getInputParamList(), "InputParam", document));
-            element.appendChild(serializeElementList(((Action) astNode).getStmtList(), "Stmt", document));
-            element.appendChild(serializeElementList(((Action) astNode).getNestedFunctionList(), "NestedFunction", document));
-        } else if (astNode instanceof Pattern) {
-            element.setAttribute("Name", ((Pattern) astNode).getName());
-            element.appendChild(serializeElement(((Pattern) astNode).getExpr(), document));
-        } else if (astNode instanceof TypeSignature) {
-            element.appendChild(serializeElement(((TypeSignature) astNode).getType(), document));
-        } else if (astNode instanceof DimensionSignature) {
-            element.appendChild(serializeElementList(((DimensionSignature) astNode).getDimensionList(), "Dimension", document));
-        } else if (astNode instanceof FullSignature) {
-            element.appendChild(((FullSignature) astNode).hasTypeSignature()?
-                    serializeElement(((FullSignature) astNode).getTypeSignature(), document):
-                    document.createElement("null")
-            );
-            element.appendChild(((FullSignature) astNode).hasDimensionSignature()?
-                    serializeElement(((FullSignature) astNode).getDimensionSignature(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof PatternName) {
-            element.appendChild(serializeElement(((PatternName) astNode).getName(), document));
-        } else if (astNode instanceof PatternGet) {
-            element.appendChild(serializeElement(((PatternGet) astNode).getIdentifier(), document));
-            element.appendChild(((PatternGet) astNode).hasFullSignature()?
-                    serializeElement(((PatternGet) astNode).getFullSignature(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof PatternSet) {
-            element.appendChild(serializeElement(((PatternSet) astNode).getIdentifier(), document));
-            element.appendChild(((PatternSet) astNode).hasFullSignature()?
-                    serializeElement(((PatternSet) astNode).getFullSignature(), document):
-                    document.createElement("null")
-            );
-        } else if (astNode instanceof Input) {
-            element.appendChild(serializeElementList(((Input) astNode).getFullSignatureList(), "FullSignature", document));
-        } else if (astNode instanceof Output) {
-            element.appendChild(serializeElementList(((Output) astNode).getFullSignatureList(), "FullSignature", document));
-        } else if (astNode instanceof PatternCall) {
-            element.appendChild(serializeElement(((PatternCall) astNode).getIdentifier(), document));
-            element.appendChild(serializeElement(((PatternCall) astNode).getInput(), document));
-            element.appendChild(serializeElement(((PatternCall) astNode).getOutput(), document));
-        } else if (astNode instanceof PatternExecution) {
-            element.appendChild(serializeElement(((PatternExecution) astNode).getIdentifier(), document));
-            element.appendChild(serializeElement(((PatternExecution) astNode).getInput(), document));
-            element.appendChild(serializeElement(((PatternExecution) astNode).getOutput(), document));
-        } else if (astNode instanceof PatternMainExecution) {
-            /* ignore */
-        } else if (astNode instanceof PatternLoop) {
-            element.appendChild(((PatternLoop) astNode).hasType()?
-                    element.appendChild(serializeElement(((PatternLoop) astNode).getType(), document)):
-                    document.createElement("null")
-            );
-            element.appendChild(serializeElement(((PatternLoop) astNode).getIdentifier(), document));
-        } else if (astNode instanceof PatternLoopHead) {
-            element.appendChild(((PatternLoopHead) astNode).hasType()?
-                    element.appendChild(serializeElement(((PatternLoopHead) astNode).getType(), document)):
-                    document.createElement("null")
-            );
-            element.appendChild(serializeElement(((PatternLoopHead) astNode).getIdentifier(), document));
-        } else if (astNode instanceof PatternLoopBody) {
-            element.appendChild(((PatternLoopBody) astNode).hasType()?
-                    element.appendChild(serializeElement(((PatternLoopBody) astNode).getType(), document)):
-                    document.createElement("null")
-            );
-            element.appendChild(serializeElement(((PatternLoopBody) astNode).getIdentifier(), document));
-        } else if (astNode instanceof SelectorSimple) {
-            element.appendChild(serializeElement(((SelectorSimple) astNode).getElement(), document));
-        } else if (astNode instanceof SelectorCompound) {
-            element.appendChild(serializeElementList(((SelectorCompound) astNode).getElementList(), "Element", document));
-        } else if (astNode instanceof PatternAnnotate) {
-            element.appendChild(serializeElement(((PatternAnnotate) astNode).getIdentifier(), document));
-            element.appendChild(serializeElementList(((PatternAnnotate) astNode).getSelectorList(), "Selector", document));
-        } else if (astNode instanceof PatternOperator) {
-            element.appendChild(serializeElement(((PatternOperator) astNode).getType(), document));
-            element.appendChild(serializeElementList(((PatternOperator) astNode).getFullSignatureList(), "FullSignature", document));
-        } else if (astNode instanceof PatternWithin) {
-            element.appendChild(serializeElement(((PatternWithin) astNode).getType(), document));
-            element.appendChild(serializeElement(((PatternWithin) astNode).getIdentifier(), document));
-        } else if (astNode instanceof PatternDimension) {
-            element.appendChild(serializeElement(((PatternDimension) astNode).getDimensionSignature(), document));
-        } else if (astNode instanceof PatternIsType) {
-            element.appendChild(serializeElement(((PatternIsType) astNode).getTypeSignature(), document));
-        } else {
-            /* control flow should not reach here */
-            throw new AssertionError();
-        }
+        serializeFields(astNode, new ElementSink() {
+            @Override
+            public void attribute(String name, String value) {
+                element.setAttribute(name, value);
+            }
+
+            @Override
+            public void element(ASTNode node) {
+                element.appendChild((node == null) ?
+                        document.createElement("null") :
+                        serializeElement(node, document)
+                );
+            }
+
+            @Override
+            public void list(ast.List<? extends ASTNode> nodes, String listName) {
+                element.appendChild(serializeElementList(nodes, listName, document));
+            }
+        });
 
         return applyDecoration(astNode, element);
     }
 
+    private static final Map<Class<?>, FieldWriter<ASTNode>> declaredWriters = new HashMap<>();
+    /* writer of each node type, resolved once per type to the writer of its nearest declared super type */
+    private static final ClassValue<FieldWriter<ASTNode>> writerTable = new ClassValue<FieldWriter<ASTNode>>() {
+        @Override
+        protected FieldWriter<ASTNode> computeValue(Class<?> nodeClass) {
+            for (Class<?> iterator = nodeClass; iterator != null; iterator = iterator.getSuperclass()) {
+                FieldWriter<ASTNode> writer = declaredWriters.get(iterator);
+                if (writer != null) return writer;
+            }
+            return (astNode, sink) -> {
+                /* control flow should not reach here */
+                throw new AssertionError();
+            };
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode> void declare(Class<T> nodeClass, FieldWriter<T> writer) {
+        declaredWriters.put(nodeClass, (FieldWriter<ASTNode>) (FieldWriter<?>) writer);
+    }
+
+    static {
+        declare(CompilationUnits.class, (astNode, sink) -> sink.list(astNode.getProgramList(), "Program"));
+        declare(Script.class, (astNode, sink) -> sink.list(astNode.getStmtList(), "Stmt"));
+        declare(FunctionList.class, (astNode, sink) -> sink.list(astNode.getFunctionList(), "Function"));
+        declare(Function.class, (astNode, sink) -> {
+            sink.list(astNode.getOutputParamList(), "OutputParam");
+            sink.element(astNode.getName());
+            sink.list(astNode.getInputParamList(), "InputParam");
+            sink.list(astNode.getStmtList(), "Stmt");
+            sink.list(astNode.getNestedFunctionList(), "NestedFunction");
+        });
+        declare(ClassDef.class, (astNode, sink) -> {
+            sink.list(astNode.getAttributeList(), "Attribute");
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getSuperClassList(), "SuperClass");
+            sink.list(astNode.getPropertyList(), "Property");
+            sink.list(astNode.getMethodList(), "Method");
+            sink.list(astNode.getClassEventList(), "ClassEvent");
+            sink.list(astNode.getEnumerationList(), "Enumeration");
+        });
+        declare(Attribute.class, (astNode, sink) -> {
+            sink.attribute("Key", astNode.getKey());
+            sink.element(astNode.getExpr());
+        });
+        declare(SuperClass.class, (astNode, sink) -> sink.attribute("Name", astNode.getName()));
+        declare(Properties.class, (astNode, sink) -> {
+            sink.list(astNode.getAttributeList(), "Attribute");
+            sink.list(astNode.getPropertyList(), "Property");
+        });
+        declare(Methods.class, (astNode, sink) -> {
+            sink.list(astNode.getAttributeList(), "Attribute");
+            sink.list(astNode.getSignatureList(), "Signature");
+            sink.list(astNode.getPropAccList(), "PropAcc");
+            sink.list(astNode.getFunctionList(), "Function");
+            sink.list(astNode.getPropAccSigList(), "PropAccSig");
+        });
+        declare(ClassEvents.class, (astNode, sink) -> {
+            sink.list(astNode.getAttributeList(), "Attribute");
+            sink.list(astNode.getEventList(), "Event");
+        });
+        declare(Enumerations.class, (astNode, sink) -> {
+            sink.list(astNode.getAttributeList(), "Attribute");
+            sink.list(astNode.getEnumerationList(), "Enumeration");
+        });
+        declare(Property.class, (astNode, sink) -> {
+            sink.attribute("Name", astNode.getName());
+            sink.element(astNode.getExpr());
+        });
+        declare(Signature.class, (astNode, sink) -> {
+            sink.list(astNode.getOutputParamList(), "OutputParam");
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getInputParamList(), "InputParam");
+        });
+        declare(PropertyAccess.class, (astNode, sink) -> {
+            sink.list(astNode.getOutputParamList(), "OutputParam");
+            sink.attribute("Access", astNode.getAccess());
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getInputParamList(), "InputParam");
+            sink.list(astNode.getStmtList(), "Stmt");
+            sink.list(astNode.getNestedFunctionList(), "NestedFunction");
+        });
+        declare(PropertyAccessSignature.class, (astNode, sink) -> {
+            sink.list(astNode.getOutputParamList(), "OutputParam");
+            sink.attribute("Access", astNode.getAccess());
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getInputParamList(), "InputParam");
+        });
+        declare(Event.class, (astNode, sink) -> sink.attribute("Name", astNode.getName()));
+        declare(Enumeration.class, (astNode, sink) -> {
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getExprList(), "Expr");
+        });
+        declare(ExprStmt.class, (astNode, sink) -> sink.element(astNode.getExpr()));
+        declare(AssignStmt.class, (astNode, sink) -> {
+            sink.element(astNode.getLHS());
+            sink.element(astNode.getRHS());
+        });
+        declare(GlobalStmt.class, (astNode, sink) -> sink.list(astNode.getNameList(), "Name"));
+        declare(PersistentStmt.class, (astNode, sink) -> sink.list(astNode.getNameList(), "Name"));
+        declare(ShellCommandStmt.class, (astNode, sink) -> sink.attribute("Command", astNode.getCommand()));
+        declare(BreakStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ContinueStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ReturnStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(EmptyStmt.class, (astNode, sink) -> { /* ignored */ });
+        declare(ForStmt.class, (astNode, sink) -> {
+            sink.element(astNode.getAssignStmt());
+            sink.list(astNode.getStmtList(), "Stmt");
+            sink.attribute("isParfor", Boolean.toString(astNode.getisParfor()));
+            sink.element(astNode.hasWorker()? astNode.getWorker() : null);
+        });
+        declare(WhileStmt.class, (astNode, sink) -> {
+            sink.element(astNode.getExpr());
+            sink.list(astNode.getStmtList(), "Stmt");
+        });
+        declare(TryStmt.class, (astNode, sink) -> {
+            sink.list(astNode.getTryStmtList(), "TryStmt");
+            sink.list(astNode.getCatchStmtList(), "CatchStmt");
+            sink.element(astNode.hasCatchName()? astNode.getCatchName() : null);
+        });
+        declare(SwitchStmt.class, (astNode, sink) -> {
+            sink.element(astNode.getExpr());
+            sink.list(astNode.getSwitchCaseBlockList(), "SwitchCaseBlock");
+            sink.element(astNode.hasDefaultCaseBlock()? astNode.getDefaultCaseBlock() : null);
+        });
+        declare(SwitchCaseBlock.class, (astNode, sink) -> {
+            sink.element(astNode.getExpr());
+            sink.list(astNode.getStmtList(), "Stmt");
+        });
+        declare(DefaultCaseBlock.class, (astNode, sink) -> sink.list(astNode.getStmtList(), "Stmt"));
+        declare(IfStmt.class, (astNode, sink) -> {
+            sink.list(astNode.getIfBlockList(), "IfBlock");
+            sink.element(astNode.hasElseBlock()? astNode.getElseBlock() : null);
+        });
+        declare(IfBlock.class, (astNode, sink) -> {
+            sink.element(astNode.getCondition());
+            sink.list(astNode.getStmtList(), "Stmt");
+        });
+        declare(ElseBlock.class, (astNode, sink) -> sink.list(astNode.getStmtList(), "Stmt"));
+        declare(SpmdStmt.class, (astNode, sink) -> {
+            sink.element(astNode.hasMinWorker()? astNode.getMinWorker() : null);
+            sink.element(astNode.hasMaxWorker()? astNode.getMaxWorker() : null);
+            sink.list(astNode.getStmtList(), "Stmt");
+        });
+        declare(NameExpr.class, (astNode, sink) -> sink.element(astNode.getName()));
+        declare(ParameterizedExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getTarget());
+            sink.list(astNode.getArgList(), "Arg");
+        });
+        declare(CellIndexExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getTarget());
+            sink.list(astNode.getArgList(), "Arg");
+        });
+        declare(DotExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getTarget());
+            sink.element(astNode.getField());
+        });
+        declare(MatrixExpr.class, (astNode, sink) -> sink.list(astNode.getRowList(), "Row"));
+        declare(Row.class, (astNode, sink) -> sink.list(astNode.getElementList(), "Element"));
+        declare(IntLiteralExpr.class, (astNode, sink) -> {
+            sink.attribute("Value", astNode.getValue().getText());
+            sink.attribute("Imaginary", Boolean.toString(astNode.getValue().isImaginary()));
+        });
+        declare(FPLiteralExpr.class, (astNode, sink) -> {
+            sink.attribute("Value", astNode.getValue().getText());
+            sink.attribute("Imaginary", Boolean.toString(astNode.getValue().isImaginary()));
+        });
+        declare(StringLiteralExpr.class, (astNode, sink) -> sink.attribute("Value", astNode.getValue()));
+        declare(UnaryExpr.class, (astNode, sink) -> sink.element(astNode.getOperand()));
+        declare(BinaryExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getLHS());
+            sink.element(astNode.getRHS());
+        });
+        declare(RangeExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getLower());
+            sink.element(astNode.hasIncr()? astNode.getIncr() : null);
+            sink.element(astNode.getUpper());
+        });
+        declare(ColonExpr.class, (astNode, sink) -> { /* ignore */ });
+        declare(EndExpr.class, (astNode, sink) -> { /* ignore */ });
+        declare(FunctionHandleExpr.class, (astNode, sink) -> sink.element(astNode.getName()));
+        declare(LambdaExpr.class, (astNode, sink) -> {
+            sink.list(astNode.getInputParamList(), "InputParam");
+            sink.element(astNode.getBody());
+        });
+        declare(CellArrayExpr.class, (astNode, sink) -> sink.list(astNode.getRowList(), "Row"));
+        declare(SuperClassMethodExpr.class, (astNode, sink) -> {
+            sink.element(astNode.getFuncName());
+            sink.element(astNode.getClassName());
+        });
+        declare(OneLineHelpComment.class, (astNode, sink) -> { throw new UnsupportedOperationException(); });
+        declare(MultiLineHelpComment.class, (astNode, sink) -> { throw new UnsupportedOperationException(); });
+        declare(Name.class, (astNode, sink) -> sink.attribute("ID", astNode.getID()));
+        declare(AspectDef.class, (astNode, sink) -> {
+            sink.attribute("Name", astNode.getName());
+            sink.list(astNode.getPropertyList(), "Property");
+            sink.list(astNode.getMethodList(), "Method");
+            sink.list(astNode.getClassEventList(), "ClassEvent");
+            sink.list(astNode.getEnumerationList(), "Enumeration");
+            sink.list(astNode.getPatternList(), "Pattern");
+            sink.list(astNode.getActionList(), "Action");
+        });
+        declare(Patterns.class, (astNode, sink) -> sink.list(astNode.getPatternList(), "Pattern"));
+        declare(Actions.class, (astNode, sink) -> sink.list(astNode.getActionList(), "Action"));
+        declare(Action.class, (astNode, sink) -> {
+            sink.attribute("Name", astNode.getName());
+            sink.attribute("Type", astNode.getType());
+            sink.element(astNode.getExpr());
+            sink.list(astNode.getInputParamList(), "InputParam");
+            sink.list(astNode.getStmtList(), "Stmt");
+            sink.list(astNode.getNestedFunctionList(), "NestedFunction");
+        });
+        declare(Pattern.class, (astNode, sink) -> {
+            sink.attribute("Name", astNode.getName());
+            sink.element(astNode.getExpr());
+        });
+        declare(TypeSignature.class, (astNode, sink) -> sink.element(astNode.getType()));
+        declare(DimensionSignature.class, (astNode, sink) -> sink.list(astNode.getDimensionList(), "Dimension"));
+        declare(FullSignature.class, (astNode, sink) -> {
+            sink.element(astNode.hasTypeSignature()? astNode.getTypeSignature() : null);
+            sink.element(astNode.hasDimensionSignature()? astNode.getDimensionSignature() : null);
+        });
+        declare(PatternName.class, (astNode, sink) -> sink.element(astNode.getName()));
+        declare(PatternGet.class, (astNode, sink) -> {
+            sink.element(astNode.getIdentifier());
+            sink.element(astNode.hasFullSignature()? astNode.getFullSignature() : null);
+        });
+        declare(PatternSet.class, (astNode, sink) -> {
+            sink.element(astNode.getIdentifier());
+            sink.element(astNode.hasFullSignature()? astNode.getFullSignature() : null);
+        });
+        declare(Input.class, (astNode, sink) -> sink.list(astNode.getFullSignatureList(), "FullSignature"));
+        declare(Output.class, (astNode, sink) -> sink.list(astNode.getFullSignatureList(), "FullSignature"));
+        declare(PatternCall.class, (astNode, sink) -> {
+            sink.element(astNode.getIdentifier());
+            sink.element(astNode.getInput());
+            sink.element(astNode.getOutput());
+        });
+        declare(PatternExecution.class, (astNode, sink) -> {
+            sink.element(astNode.getIdentifier());
+            sink.element(astNode.getInput());
+            sink.element(astNode.getOutput());
+        });
+        declare(PatternMainExecution.class, (astNode, sink) -> { /* ignore */ });
+        declare(PatternLoop.class, (astNode, sink) -> {
+            sink.element(astNode.hasType()? astNode.getType() : null);
+            sink.element(astNode.getIdentifier());
+        });
+        declare(PatternLoopHead.class, (astNode, sink) -> {
+            sink.element(astNode.hasType()? astNode.getType() : null);
+            sink.element(astNode.getIdentifier());
+        });
+        declare(PatternLoopBody.class, (astNode, sink) -> {
+            sink.element(astNode.hasType()? astNode.getType() : null);
+            sink.element(astNode.getIdentifier());
+        });
+        declare(SelectorSimple.class, (astNode, sink) -> sink.element(astNode.getElement()));
+        declare(SelectorCompound.class, (astNode, sink) -> sink.list(astNode.getElementList(), "Element"));
+        declare(PatternAnnotate.class, (astNode, sink) -> {
+            sink.element(astNode.getIdentifier());
+            sink.list(astNode.getSelectorList(), "Selector");
+        });
+        declare(PatternOperator.class, (astNode, sink) -> {
+            sink.element(astNode.getType());
+            sink.list(astNode.getFullSignatureList(), "FullSignature");
+        });
+        declare(PatternWithin.class, (astNode, sink) -> {
+            sink.element(astNode.getType());
+            sink.element(astNode.getIdentifier());
+        });
+        declare(PatternDimension.class, (astNode, sink) -> sink.element(astNode.getDimensionSignature()));
+        declare(PatternIsType.class, (astNode, sink) -> sink.element(astNode.getTypeSignature()));
+    }
+
+    private static void serializeFields(ASTNode astNode, ElementSink sink) {
+        writerTable.get(astNode.getClass()).write(astNode, sink);
+    }
+
     @Override
     public Document serialize(ASTNode astNode) {
         try {
@@ -370,17 +430,200 @@ public final class XMLSerializer implements ASTNodeSerializer<ASTNode, Document>
         }
     }
 
+    /**
+     * streaming serialization, the xml document is written to {@code writer} while walking the tree, without
+     * building a dom document. the element and attribute layout is the same as {@link #serialize(ASTNode)}.
+     * @param astNode node to serialize
+     * @param writer target writer, flushed but not closed
+     * @throws XMLStreamException if writing fails
+     */
+    public void serialize(ASTNode astNode, Writer writer) throws XMLStreamException {
+        serialize(astNode, outputFactory.createXMLStreamWriter(writer), writer);
+    }
+
+    /**
+     * streaming serialization into an utf-8 encoded output stream, see {@link #serialize(ASTNode, Writer)}
+     * @param astNode node to serialize
+     * @param outputStream target output stream, flushed but not closed
+     * @throws XMLStreamException if writing fails
+     */
+    public void serialize(ASTNode astNode, OutputStream outputStream) throws XMLStreamException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        serialize(astNode, outputFactory.createXMLStreamWriter(writer), writer);
+        try {
+            writer.flush();
+        } catch (IOException exception) {
+            throw new XMLStreamException(exception);
+        }
+    }
+
+    /* the underlying writer receives the buffers of the subtrees serialized in parallel */
+    private void serialize(ASTNode astNode, XMLStreamWriter streamWriter, Writer writer) throws XMLStreamException {
+        try {
+            streamWriter.writeStartDocument("UTF-8", "1.0");
+            new StreamSink(streamWriter, writer, 0).writeNode(astNode);
+            streamWriter.writeEndDocument();
+            streamWriter.flush();
+        } catch (StreamFailure failure) {
+            throw (XMLStreamException) failure.getCause();
+        } finally {
+            streamWriter.close();
+        }
+    }
+
     @Override
     public String serializeAsString(ASTNode astNode) {
         try {
-            DOMSource domSource = new DOMSource(serialize(astNode));
             StringWriter stringWriter = new StringWriter();
-            StreamResult streamResult = new StreamResult(stringWriter);
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.transform(domSource, streamResult);
+            serialize(astNode, stringWriter);
             return stringWriter.toString();
-        } catch (TransformerException exception) {
+        } catch (XMLStreamException exception) {
             throw new RuntimeException(exception);
         }
     }
+
+    /*
+     * stax requires the attributes of an element to be written before its children, hence the fields of a node are
+     * visited twice, first for the attributes, then for the child elements.
+     */
+    private final class StreamSink implements ElementSink {
+        private final XMLStreamWriter streamWriter;
+        private final Writer writer;
+        private final java.util.List<String> indentCache = new ArrayList<>();
+        private boolean isAttributePass = false;
+        private boolean hasChildElement = false;
+        private int depth;
+
+        private StreamSink(XMLStreamWriter streamWriter, Writer writer, int depth) {
+            this.streamWriter = streamWriter;
+            this.writer = writer;
+            this.depth = depth;
+        }
+
+        private void writeNode(ASTNode astNode) {
+            startElement(astNode.getClass().getSimpleName());
+
+            isAttributePass = true;
+            serializeFields(astNode, this);
+            writeDecoration(astNode);
+            isAttributePass = false;
+            serializeFields(astNode, this);
+
+            endElement();
+        }
+
+        private void writeDecoration(ASTNode astNode) {
+            for (int index = 0; index < decoratorPipeline.size(); index++) {
+                final ASTNodeDecorator<?> decorator = decoratorPipeline.get(index);
+                if (decorator instanceof ASTNodeIntDecorator) {
+                    ASTNodeIntDecorator intDecorator = (ASTNodeIntDecorator) decorator;
+                    if (!intDecorator.isDecorated(astNode)) continue;
+                    writeAttribute(decorator.tag(), Integer.toString(intDecorator.decorateAsInt(astNode)));
+                } else if (decorator instanceof ASTNodeBooleanDecorator) {
+                    ASTNodeBooleanDecorator booleanDecorator = (ASTNodeBooleanDecorator) decorator;
+                    if (!booleanDecorator.isDecorated(astNode)) continue;
+                    writeAttribute(decorator.tag(), booleanDecorator.decorateAsBoolean(astNode) ? "true" : "false");
+                } else {
+                    final Object decoration = decorator.decorate(astNode);
+                    if (decoration == null) continue;
+                    writeAttribute(decorator.tag(), decoration.toString());
+                }
+            }
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            if (!isAttributePass) return;
+            if (value != null) writeAttribute(name, value);
+        }
+
+        @Override
+        public void element(ASTNode astNode) {
+            if (isAttributePass) return;
+            if (astNode == null) {
+                startElement("null");
+                endElement();
+            } else {
+                writeNode(astNode);
+            }
+        }
+
+        @Override
+        public void list(ast.List<? extends ASTNode> nodes, String listName) {
+            if (isAttributePass) return;
+            startElement(listName);
+            if (forkJoinPool != null && SubtreeFork.isForkable(nodes)) {
+                final int childDepth = depth;
+                java.util.List<ForkJoinTask<String>> tasks = SubtreeFork.fork(forkJoinPool, nodes, node ->
+                        serializeFragment(node, childDepth)
+                );
+                try {
+                    /* close the pending start tag, then append the buffers behind the stax writer */
+                    streamWriter.writeCharacters("");
+                    streamWriter.flush();
+                    for (ForkJoinTask<String> task : tasks) writer.write(task.join());
+                } catch (XMLStreamException exception) {
+                    throw new StreamFailure(exception);
+                } catch (IOException exception) {
+                    throw new StreamFailure(new XMLStreamException(exception));
+                }
+                hasChildElement = true;
+            } else {
+                for (int index = 0; index < nodes.getNumChild(); index++) writeNode(nodes.getChild(index));
+            }
+            endElement();
+        }
+
+        /* xml text of a subtree written at the given depth, without xml declaration */
+        private String serializeFragment(ASTNode astNode, int depth) {
+            StringWriter buffer = new StringWriter();
+            try {
+                XMLStreamWriter fragmentWriter = outputFactory.createXMLStreamWriter(buffer);
+                new StreamSink(fragmentWriter, buffer, depth).writeNode(astNode);
+                fragmentWriter.close();
+            } catch (XMLStreamException exception) {
+                throw new StreamFailure(exception);
+            }
+            return buffer.toString();
+        }
+
+        private void startElement(String name) {
+            try {
+                if (indentation != null) streamWriter.writeCharacters(getIndent(depth));
+                streamWriter.writeStartElement(name);
+                depth++;
+                hasChildElement = false;
+            } catch (XMLStreamException exception) {
+                throw new StreamFailure(exception);
+            }
+        }
+
+        private void endElement() {
+            try {
+                depth--;
+                if (indentation != null && hasChildElement) streamWriter.writeCharacters(getIndent(depth));
+                streamWriter.writeEndElement();
+                hasChildElement = true;
+            } catch (XMLStreamException exception) {
+                throw new StreamFailure(exception);
+            }
+        }
+
+        private void writeAttribute(String name, String value) {
+            try {
+                streamWriter.writeAttribute(name, value);
+            } catch (XMLStreamException exception) {
+                throw new StreamFailure(exception);
+            }
+        }
+
+        private String getIndent(int level) {
+            while (indentCache.size() <= level) {
+                StringBuilder builder = new StringBuilder("\n");
+                for (int index = 0; index < indentCache.size(); index++) builder.append(indentation);
+                indentCache.add(builder.toString());
+            }
+            return indentCache.get(level);
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package aspectMATLAB.transformer;
+
+import ast.PatternName;
+
+public final class CyclicPatternName extends RuntimeException {
+    private final PatternName patternName;
+
+    public CyclicPatternName(PatternName patternName) {
+        this.patternName = patternName;
+    }
+
+    public PatternName getPatternName() {
+        return patternName;
+    }
+}
@@ -0,0 +1,8 @@
+package aspectMATLAB.transformer;
+
+import java.util.Set;
+
+/** transformer that reports the names of the actions that matched a join point during the last transformation */
+public interface MatchReporter {
+    Set<String> getMatchedActions();
+}
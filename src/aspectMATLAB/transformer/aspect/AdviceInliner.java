@@ -0,0 +1,330 @@
+package aspectMATLAB.transformer.aspect;
+
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.abstractPattern.utils.WeaveType;
+import aspectMATLAB.utils.codeGen.AMTempVarGenerator;
+import ast.*;
+
+import java.util.*;
+
+/**
+ * inlining of small before and after advice at their join points, in place of a call to the advice. an action is
+ * inlinable if its body is at most {@code sizeThreshold} AST nodes large, exposes no content, declares no nested
+ * function, does not refer to the properties or methods of its aspect, and does not depend on running within its
+ * own function (return, persistent variables, nargin, ...). inlined bodies are hygienic: the local variables of the
+ * advice are renamed to fresh {@code AM_INLINE_} temporaries, and advice reading a name which is a variable at the
+ * join point is not inlined, as it would read that variable instead of calling the function of the same name.
+ * renamed locals outlive an execution of the advice, hence advice which may read a local before assigning it is not
+ * inlined either, as it would read the value left by the previous execution instead of failing.
+ */
+public final class AdviceInliner {
+    public static final int DEFAULT_SIZE_THRESHOLD = 32;
+
+    /* names whose meaning depends on the enclosing function */
+    private static final java.util.Set<String> CONTEXT_SENSITIVE_NAMES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(
+                    "nargin", "nargout", "varargin", "varargout", "narginchk", "nargoutchk", "inputname",
+                    "mfilename", "dbstack", "exist", "who", "whos"
+            )
+    ));
+    /* names which may define or remove variables dynamically */
+    private static final java.util.Set<String> DYNAMIC_NAMES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("eval", "evalc", "evalin", "assignin", "load", "clear", "clearvars")
+    ));
+
+    /* names read, assigned and declared global within a statement list */
+    private static final class NameUsage {
+        private final java.util.Set<String> readNames = new HashSet<>();
+        private final java.util.Set<String> assignedNames = new HashSet<>();
+        private final java.util.Set<String> globalNames = new HashSet<>();
+        private int size = 0;
+        private boolean selfContained = true;
+        private boolean dynamic = false;
+        private boolean assignedBeforeRead = true;
+    }
+
+    private final int sizeThreshold;
+    private final AMTempVarGenerator AMTempVar = new AMTempVarGenerator("AM_INLINE_");
+    private final Map<Action, NameUsage> actionUsageMap = new IdentityHashMap<>();
+    private final Map<ASTNode, NameUsage> hostUsageMap = new IdentityHashMap<>();
+
+    /**
+     * @param sizeThreshold maximum number of AST nodes of an inlined advice body, e.g.
+     *                      {@link #DEFAULT_SIZE_THRESHOLD}
+     * @throws IllegalArgumentException if {@code sizeThreshold} is negative
+     */
+    public AdviceInliner(int sizeThreshold) {
+        if (sizeThreshold < 0) throw new IllegalArgumentException();
+        this.sizeThreshold = sizeThreshold;
+    }
+
+    public int getSizeThreshold() {
+        return sizeThreshold;
+    }
+
+    /**
+     * @param name variable name
+     * @return {@code true} if the name has the form of the local variables of inlined advice
+     */
+    public boolean isTempVarName(String name) {
+        return AMTempVar.isGenerated(name);
+    }
+
+    /**
+     * {@code true} if the action can be inlined, regardless of its join points
+     * @param action action
+     * @return {@code true} if the action is inlinable
+     */
+    public boolean isInlinable(Action action) {
+        Optional.ofNullable(action).orElseThrow(NullPointerException::new);
+        if (action.getWeaveType() == WeaveType.Around) return false;
+        if (!action.getContentExposures().isEmpty()) return false;
+        if (!action.getNestedFunctionSet().isEmpty()) return false;
+
+        NameUsage usage = getActionUsage(action);
+        if (!usage.selfContained || usage.dynamic || usage.size > sizeThreshold) return false;
+        if (!usage.assignedBeforeRead) return false;
+        java.util.Set<String> aspectMemberNames = action.getAspectMemberNameSet();
+        for (String name : usage.readNames) {
+            if (aspectMemberNames.contains(name) || name.startsWith("AM_")) return false;
+        }
+        for (String name : usage.assignedNames) {
+            if (aspectMemberNames.contains(name)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * inline the body of the action at the given join point
+     * @param action action
+     * @param joinPointSite join point AST node, within the program being woven
+     * @return copy of the advice body to insert at the join point, empty if the action cannot be inlined there
+     */
+    public Optional<java.util.List<Stmt>> inline(Action action, ASTNode joinPointSite) {
+        if (!isInlinable(action)) return Optional.empty();
+        NameUsage actionUsage = getActionUsage(action);
+
+        /*
+         * free names of the advice must refer to the same entity at the join point, and global declarations must
+         * not turn variables of the join point into globals
+         */
+        for (ASTNode host = getHost(joinPointSite); host != null; host = getHost(host.getParent())) {
+            NameUsage hostUsage = getHostUsage(host);
+            if (hostUsage.dynamic) return Optional.empty();
+            for (String name : actionUsage.readNames) {
+                if (actionUsage.assignedNames.contains(name) || actionUsage.globalNames.contains(name)) continue;
+                if (hostUsage.assignedNames.contains(name) || hostUsage.globalNames.contains(name)) {
+                    return Optional.empty();
+                }
+            }
+            for (String name : actionUsage.globalNames) {
+                if (hostUsage.assignedNames.contains(name) && !hostUsage.globalNames.contains(name)) {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        Map<String, String> renameMap = new HashMap<>();
+        for (String name : actionUsage.assignedNames) {
+            if (actionUsage.globalNames.contains(name)) continue;
+            renameMap.put(name, AMTempVar.next());
+        }
+        java.util.List<Stmt> inlinedStmtList = new ArrayList<>(action.getStatementList().getNumChild());
+        for (Stmt statement : action.getStatementList()) {
+            Stmt copiedStmt = statement.treeCopy();
+            rename(copiedStmt, renameMap);
+            inlinedStmtList.add(copiedStmt);
+        }
+        return Optional.of(inlinedStmtList);
+    }
+
+    private NameUsage getActionUsage(Action action) {
+        return actionUsageMap.computeIfAbsent(action, key -> {
+            NameUsage usage = new NameUsage();
+            for (Stmt statement : key.getStatementList()) collectUsage(statement, usage, 0);
+
+            java.util.Set<String> localNames = new HashSet<>(usage.assignedNames);
+            localNames.removeAll(usage.globalNames);
+            usage.assignedBeforeRead = assignBeforeRead(key.getStatementList(), localNames, new HashSet<>()) != null;
+            return usage;
+        });
+    }
+
+    private NameUsage getHostUsage(ASTNode host) {
+        return hostUsageMap.computeIfAbsent(host, key -> {
+            NameUsage usage = new NameUsage();
+            if (key instanceof ast.Function) {
+                ((ast.Function) key).getInputParamList().forEach(name -> usage.assignedNames.add(name.getID()));
+                ((ast.Function) key).getOutputParamList().forEach(name -> usage.assignedNames.add(name.getID()));
+                for (Stmt statement : ((ast.Function) key).getStmtList()) collectUsage(statement, usage, 0);
+            } else {
+                for (Stmt statement : ((Script) key).getStmtList()) collectUsage(statement, usage, 0);
+            }
+            return usage;
+        });
+    }
+
+    /* nearest function or script enclosing the node, null if none */
+    private static ASTNode getHost(ASTNode astNode) {
+        for (ASTNode iterator = astNode; iterator != null; iterator = iterator.getParent()) {
+            if (iterator instanceof ast.Function || iterator instanceof Script) return iterator;
+        }
+        return null;
+    }
+
+    /* loop depth counts the loops enclosing the node, break and continue only stay within the advice inside one */
+    private static void collectUsage(ASTNode astNode, NameUsage usage, int loopDepth) {
+        usage.size++;
+        if (astNode instanceof ReturnStmt || astNode instanceof PersistentStmt || astNode instanceof LambdaExpr) {
+            usage.selfContained = false;
+        } else if ((astNode instanceof BreakStmt || astNode instanceof ContinueStmt) && loopDepth == 0) {
+            usage.selfContained = false;
+        } else if (astNode instanceof GlobalStmt) {
+            ((GlobalStmt) astNode).getNameList().forEach(name -> usage.globalNames.add(name.getID()));
+        } else if (astNode instanceof AssignStmt) {
+            collectAssignedNames(((AssignStmt) astNode).getLHS(), usage.assignedNames);
+        } else if (astNode instanceof NameExpr) {
+            String name = ((NameExpr) astNode).getName().getID();
+            if (CONTEXT_SENSITIVE_NAMES.contains(name)) usage.selfContained = false;
+            if (DYNAMIC_NAMES.contains(name)) usage.dynamic = true;
+            usage.readNames.add(name);
+        } else if (astNode instanceof FunctionHandleExpr) {
+            usage.readNames.add(((FunctionHandleExpr) astNode).getName().getID());
+        }
+
+        int childLoopDepth = (astNode instanceof ForStmt || astNode instanceof WhileStmt) ? loopDepth + 1 : loopDepth;
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            collectUsage(astNode.getChild(childIndex), usage, childLoopDepth);
+        }
+    }
+
+    private static void collectAssignedNames(Expr lhsExpr, java.util.Set<String> assignedNames) {
+        if (lhsExpr instanceof NameExpr) {
+            assignedNames.add(((NameExpr) lhsExpr).getName().getID());
+        } else if (lhsExpr instanceof ParameterizedExpr) {
+            collectAssignedNames(((ParameterizedExpr) lhsExpr).getTarget(), assignedNames);
+        } else if (lhsExpr instanceof CellIndexExpr) {
+            collectAssignedNames(((CellIndexExpr) lhsExpr).getTarget(), assignedNames);
+        } else if (lhsExpr instanceof DotExpr) {
+            collectAssignedNames(((DotExpr) lhsExpr).getTarget(), assignedNames);
+        } else if (lhsExpr instanceof MatrixExpr) {
+            for (Row row : ((MatrixExpr) lhsExpr).getRowList()) {
+                for (Expr element : row.getElementList()) collectAssignedNames(element, assignedNames);
+            }
+        }
+    }
+
+    /*
+     * names definitely assigned once the statements ran, starting from the given ones, null if a local variable may
+     * be read before it is assigned. loop bodies may not run, and branches only assign what all of them assign.
+     */
+    private static java.util.Set<String> assignBeforeRead(
+            Iterable<Stmt> stmtList, java.util.Set<String> localNames, java.util.Set<String> assignedNames) {
+        java.util.Set<String> currentNames = assignedNames;
+        for (Stmt statement : stmtList) {
+            currentNames = assignBeforeRead(statement, localNames, currentNames);
+            if (currentNames == null) return null;
+        }
+        return currentNames;
+    }
+
+    private static java.util.Set<String> assignBeforeRead(
+            Stmt statement, java.util.Set<String> localNames, java.util.Set<String> assignedNames) {
+        if (statement instanceof AssignStmt) {
+            /* indexed assignments update the current value, hence read it */
+            Expr lhsExpr = ((AssignStmt) statement).getLHS();
+            if (!isReadAfterAssignment(((AssignStmt) statement).getRHS(), localNames, assignedNames)) return null;
+            if (!(lhsExpr instanceof NameExpr || lhsExpr instanceof MatrixExpr)) {
+                if (!isReadAfterAssignment(lhsExpr, localNames, assignedNames)) return null;
+            } else if (lhsExpr instanceof MatrixExpr) {
+                for (Row row : ((MatrixExpr) lhsExpr).getRowList()) {
+                    for (Expr element : row.getElementList()) {
+                        if (element instanceof NameExpr) continue;
+                        if (!isReadAfterAssignment(element, localNames, assignedNames)) return null;
+                    }
+                }
+            }
+            java.util.Set<String> retSet = new HashSet<>(assignedNames);
+            collectAssignedNames(lhsExpr, retSet);
+            return retSet;
+        } else if (statement instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt) statement;
+            java.util.Set<String> retSet = null;
+            for (IfBlock ifBlock : ifStmt.getIfBlockList()) {
+                if (!isReadAfterAssignment(ifBlock.getCondition(), localNames, assignedNames)) return null;
+                retSet = intersect(retSet, assignBeforeRead(ifBlock.getStmtList(), localNames, assignedNames));
+                if (retSet == null) return null;
+            }
+            if (!ifStmt.hasElseBlock()) return intersect(retSet, assignedNames);
+            return intersect(retSet, assignBeforeRead(ifStmt.getElseBlock().getStmtList(), localNames, assignedNames));
+        } else if (statement instanceof SwitchStmt) {
+            SwitchStmt switchStmt = (SwitchStmt) statement;
+            if (!isReadAfterAssignment(switchStmt.getExpr(), localNames, assignedNames)) return null;
+            java.util.Set<String> retSet = null;
+            for (SwitchCaseBlock caseBlock : switchStmt.getSwitchCaseBlockList()) {
+                if (!isReadAfterAssignment(caseBlock.getExpr(), localNames, assignedNames)) return null;
+                retSet = intersect(retSet, assignBeforeRead(caseBlock.getStmtList(), localNames, assignedNames));
+                if (retSet == null) return null;
+            }
+            if (!switchStmt.hasDefaultCaseBlock()) return intersect(retSet, assignedNames);
+            return intersect(
+                    retSet,
+                    assignBeforeRead(switchStmt.getDefaultCaseBlock().getStmtList(), localNames, assignedNames)
+            );
+        } else if (statement instanceof ForStmt) {
+            AssignStmt headerStmt = ((ForStmt) statement).getAssignStmt();
+            if (!isReadAfterAssignment(headerStmt.getRHS(), localNames, assignedNames)) return null;
+            java.util.Set<String> bodyNames = new HashSet<>(assignedNames);
+            collectAssignedNames(headerStmt.getLHS(), bodyNames);
+            if (assignBeforeRead(((ForStmt) statement).getStmtList(), localNames, bodyNames) == null) return null;
+            return assignedNames;
+        } else if (statement instanceof WhileStmt) {
+            if (!isReadAfterAssignment(((WhileStmt) statement).getExpr(), localNames, assignedNames)) return null;
+            if (assignBeforeRead(((WhileStmt) statement).getStmtList(), localNames, assignedNames) == null) return null;
+            return assignedNames;
+        } else if (statement instanceof TryStmt) {
+            TryStmt tryStmt = (TryStmt) statement;
+            java.util.Set<String> catchNames = new HashSet<>(assignedNames);
+            if (tryStmt.hasCatchName()) catchNames.add(tryStmt.getCatchName().getID());
+            java.util.Set<String> tryNames = assignBeforeRead(tryStmt.getTryStmtList(), localNames, assignedNames);
+            if (tryNames == null) return null;
+            return intersect(tryNames, assignBeforeRead(tryStmt.getCatchStmtList(), localNames, catchNames));
+        } else {
+            return isReadAfterAssignment(statement, localNames, assignedNames) ? assignedNames : null;
+        }
+    }
+
+    /* true if every local variable read within the subtree is among the assigned names */
+    private static boolean isReadAfterAssignment(
+            ASTNode astNode, java.util.Set<String> localNames, java.util.Set<String> assignedNames) {
+        if (astNode instanceof NameExpr) {
+            String name = ((NameExpr) astNode).getName().getID();
+            return !localNames.contains(name) || assignedNames.contains(name);
+        }
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            if (!isReadAfterAssignment(astNode.getChild(childIndex), localNames, assignedNames)) return false;
+        }
+        return true;
+    }
+
+    /* intersection of two sets of assigned names, null standing for no path if first, for failure if second */
+    private static java.util.Set<String> intersect(java.util.Set<String> lhsSet, java.util.Set<String> rhsSet) {
+        if (rhsSet == null) return null;
+        if (lhsSet == null) return rhsSet;
+        java.util.Set<String> retSet = new HashSet<>(lhsSet);
+        retSet.retainAll(rhsSet);
+        return retSet;
+    }
+
+    private static void rename(ASTNode astNode, Map<String, String> renameMap) {
+        if (astNode instanceof NameExpr) {
+            Name name = ((NameExpr) astNode).getName();
+            String renamed = renameMap.get(name.getID());
+            if (renamed != null) name.setID(renamed);
+            return;
+        }
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            rename(astNode.getChild(childIndex), renameMap);
+        }
+    }
+}
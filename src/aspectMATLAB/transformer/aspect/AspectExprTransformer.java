@@ -1,10 +1,14 @@
 package aspectMATLAB.transformer.aspect;
 
 import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.abstractPattern.utils.ContentExposureType;
+import aspectMATLAB.abstractPattern.utils.WeaveType;
 import ast.*;
 import ast.List;
 import aspectMATLAB.joinpoint.AMJoinPoint;
-import natlab.toolkits.analysis.varorfun.VFAnalysis;
+import aspectMATLAB.transformer.MatchReporter;
+import aspectMATLAB.transformer.TransformQueryEnv;
+import natlab.toolkits.analysis.varorfun.VFDatum;
 import aspectMATLAB.transformer.expr.CopyExprTransformer;
 import aspectMATLAB.utils.codeGen.AMTempVarGenerator;
 import aspectMATLAB.utils.codeGen.builders.AssignStmtBuilder;
@@ -12,38 +16,285 @@ import aspectMATLAB.utils.codeGen.builders.AssignStmtBuilder;
 import java.util.*;
 import java.util.function.Supplier;
 
-public final class AspectExprTransformer extends CopyExprTransformer {
+public final class AspectExprTransformer extends CopyExprTransformer implements MatchReporter {
+    /** how exposed operands are handed over to advice */
+    public enum OperandCapture {
+        /** every exposed operand is evaluated into a temporary */
+        Copy,
+        /**
+         * operands which are already variables are referred to directly, and temporaries are released after the
+         * statement, hence no extra reference keeps a matrix alive, and later in-place updates do not copy it
+         */
+        Reference
+    }
+
+    private static final BitSet EMPTY_SUMMARY = new BitSet();
+
     private final AMTempVarGenerator AMTempVar = new AMTempVarGenerator("AM_EXPR_");
     private LinkedList<Stmt> prefixStmtList = new LinkedList<>();
     private LinkedList<Stmt> suffixStmtList = new LinkedList<>();
     private Set<AMJoinPoint> joinPointSet = new HashSet<>();
-    //private
+    private final JoinPointMatcherIndex matcherIndex;
+    private final TransformQueryEnv transformQueryEnv;
+    private final Set<String> matchedActions = new HashSet<>();
+    private final Map<ASTNode, Boolean> candidateFreeMap = new IdentityHashMap<>();
+    private final Map<ASTNode, BitSet> matchSummaryMap = new IdentityHashMap<>();
+    private OperandCapture operandCapture = OperandCapture.Copy;
+    private AdviceInliner adviceInliner = null;
+
+    /**
+     * @param matcherIndex index of the actions to weave
+     * @param transformQueryEnv query environment of the units to weave, whose kind analysis (if any) tells variables
+     *                          apart from functions
+     * @throws NullPointerException if {@code matcherIndex} or {@code transformQueryEnv} is {@code null}
+     */
+    public AspectExprTransformer(JoinPointMatcherIndex matcherIndex, TransformQueryEnv transformQueryEnv) {
+        this.matcherIndex = Optional.ofNullable(matcherIndex).orElseThrow(NullPointerException::new);
+        this.transformQueryEnv = Optional.ofNullable(transformQueryEnv).orElseThrow(NullPointerException::new);
+    }
 
-    private VFAnalysis vfAnalysis = null; // TODO
+    public OperandCapture getOperandCapture() {
+        return operandCapture;
+    }
 
-    private Set<aspectMATLAB.abstractPattern.Action> hasTransformationAt(ASTNode node) {  // TODO
-        HashSet<Action> retSet = new HashSet<>();
-        retSet.add(null);
+    public AspectExprTransformer setOperandCapture(OperandCapture operandCapture) {
+        this.operandCapture = Optional.ofNullable(operandCapture).orElseThrow(NullPointerException::new);
+        return this;
+    }
 
-        return retSet;
+    public AdviceInliner getAdviceInliner() {
+        return adviceInliner;
     }
 
-    private Set<Action> hasTransformationFrom(ASTNode node) {
-        HashSet<Action> retSet = new HashSet<>();
-        Set<Action> currentNodeTransformSet = hasTransformationAt(node);
-        retSet.addAll(currentNodeTransformSet);
-        for (int childIndex = 0; childIndex < node.getNumChild(); childIndex++) {
-            ASTNode childNode = node.getChild(childIndex);
-            Set<Action> childTransformSet = hasTransformationFrom(childNode);
-            retSet.addAll(childTransformSet);
+    /** @param adviceInliner inliner of small before and after advice, {@code null} to disable inlining */
+    public AspectExprTransformer setAdviceInliner(AdviceInliner adviceInliner) {
+        this.adviceInliner = adviceInliner;
+        return this;
+    }
+
+    /**
+     * @param name variable name
+     * @return {@code true} if the name is one of the temporaries this transformer, or its advice inliner, introduces
+     */
+    public boolean isTempVarName(String name) {
+        if (AMTempVar.isGenerated(name)) return true;
+        return adviceInliner != null && adviceInliner.isTempVarName(name);
+    }
+
+    @Override
+    public Set<String> getMatchedActions() {
+        return Collections.unmodifiableSet(matchedActions);
+    }
+
+    private Set<aspectMATLAB.abstractPattern.Action> hasTransformationAt(ASTNode node) {
+        java.util.List<Action> matched = matcherIndex.match(node, transformQueryEnv);
+        if (matched.isEmpty()) return Collections.emptySet();
+        matched.forEach(action -> matchedActions.add(action.getQualifiedName()));
+        return new LinkedHashSet<>(matched);
+    }
+
+    /**
+     * actions matching anywhere in the subtree of the given node, as bits indexed by
+     * {@link JoinPointMatcherIndex#getActionIndex}. the summary of each node is computed bottom up once and shared
+     * afterward, hence must not be modified.
+     */
+    private BitSet hasTransformationFrom(ASTNode node) {
+        BitSet memorized = matchSummaryMap.get(node);
+        if (memorized != null) return memorized;
+
+        BitSet summary = EMPTY_SUMMARY;
+        boolean ownedSummary = false;  /* summaries of single matching children are shared, not copied */
+        if (!isCandidateFree(node)) {
+            for (Action action : matcherIndex.match(node, transformQueryEnv)) {
+                if (!ownedSummary) {
+                    summary = new BitSet();
+                    ownedSummary = true;
+                }
+                summary.set(matcherIndex.getActionIndex(action));
+            }
+            for (int childIndex = 0; childIndex < node.getNumChild(); childIndex++) {
+                BitSet childSummary = hasTransformationFrom(node.getChild(childIndex));
+                if (childSummary.isEmpty()) continue;
+                if (summary.isEmpty()) {
+                    summary = childSummary;
+                    continue;
+                }
+                if (!ownedSummary) {
+                    summary = (BitSet) summary.clone();
+                    ownedSummary = true;
+                }
+                summary.or(childSummary);
+            }
+        }
+        matchSummaryMap.put(node, summary);
+        return summary;
+    }
+
+    /**
+     * a subtree is left unchanged if none of its nodes is a join point candidate of any action. the answer is
+     * computed bottom up once per node, hence deciding it for every node visited during a transformation takes
+     * linear time in the size of the tree.
+     */
+    @Override
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return isCandidateFree(astNode);
+    }
+
+    private boolean isCandidateFree(ASTNode node) {
+        Boolean memorized = candidateFreeMap.get(node);
+        if (memorized != null) return memorized;
+
+        boolean candidateFree = matcherIndex.getCandidates(node).isEmpty();
+        for (int childIndex = 0; candidateFree && childIndex < node.getNumChild(); childIndex++) {
+            candidateFree = isCandidateFree(node.getChild(childIndex));
+        }
+        candidateFreeMap.put(node, candidateFree);
+        return candidateFree;
+    }
+
+    /*
+     * operator join points only hoist the temporaries the matched actions read: operands are evaluated into
+     * temporaries if exposed (or if evaluating them ahead of the prefix statements would change the program), the
+     * result if after or around advice applies. unknown actions are assumed to read everything.
+     */
+    private static boolean isExposingOperands(Set<Action> actionSet) {
+        for (Action action : actionSet) {
+            if (action == null || action.getWeaveType() == WeaveType.Around) return true;
+            for (ContentExposureType exposure : action.getContentExposures()) {
+                if (exposure == null || exposure.isOperandValue()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isExposingResult(Set<Action> actionSet) {
+        for (Action action : actionSet) {
+            if (action == null || action.getWeaveType() != WeaveType.Before) return true;
+            for (ContentExposureType exposure : action.getContentExposures()) {
+                if (exposure == null || exposure.isResultValue()) return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * append the inlined bodies of the matching actions of the given weave type to the prefix statements, before
+     * advice right before the operator evaluates, after advice right after. actions which cannot be inlined at the
+     * join point are left to the advice dispatch.
+     */
+    private void inlineAdvice(Set<Action> actionSet, ASTNode joinPointSite, WeaveType weaveType) {
+        if (adviceInliner == null) return;
+        for (Action action : actionSet) {
+            if (action == null || action.getWeaveType() != weaveType) continue;
+            adviceInliner.inline(action, joinPointSite).ifPresent(prefixStmtList::addAll);
+        }
+    }
+
+    /*
+     * variables and temporaries are captured by reference, if enabled. operands left in place are evaluated after
+     * the prefix statements, see hoistIfOverwritten for the ones appended after the operand.
+     */
+    private boolean isHoistedOperand(Expr operandExpr, ASTNode sourceExpr, boolean exposingOperands) {
+        if (isOrderSensitive(operandExpr, sourceExpr)) return true;
+        if (!exposingOperands) return false;
+        return operandCapture != OperandCapture.Reference || !(operandExpr instanceof NameExpr);
+    }
+
+    /*
+     * an operand left in place is evaluated after the prefix statements appended since it was transformed, e.g. the
+     * calls hoisted out of a later operand, or inlined before advice. these may assign globals or variables shared
+     * with nested functions, hence if one of them may have side effects, an operand reading variables is evaluated
+     * into a temporary in front of them instead.
+     */
+    private Expr hoistIfOverwritten(Expr operandExpr, int prefixIndex, ASTNode sourceExpr) {
+        if (!isReadingVariables(operandExpr)) return operandExpr;
+        for (Stmt statement : prefixStmtList.subList(prefixIndex, prefixStmtList.size())) {
+            if (mayHaveSideEffects(statement, sourceExpr)) return hoistTempVar(operandExpr, prefixIndex);
+        }
+        return operandExpr;
+    }
+
+    private NameExpr hoistTempVar(Expr expr) {
+        return hoistTempVar(expr, prefixStmtList.size());
+    }
+
+    /*
+     * evaluate the expression into a fresh temporary, inserted at the given index of the prefix statements. capturing
+     * by reference, the temporary is released within the suffix statements, so that it no longer shares the value
+     * with a variable.
+     */
+    private NameExpr hoistTempVar(Expr expr, int prefixIndex) {
+        String tempVarName = AMTempVar.next();
+        AssignStmt prefixAssignStmt = new AssignStmtBuilder()
+                .setLHS(tempVarName)
+                .setRHS(expr)
+                .setOutputSuppressed(true)
+                .build();
+        prefixStmtList.add(prefixIndex, prefixAssignStmt);
+        if (operandCapture == OperandCapture.Reference) {
+            AssignStmt releaseAssignStmt = new AssignStmtBuilder()
+                    .setLHS(tempVarName)
+                    .setRHS(new MatrixExpr())
+                    .setOutputSuppressed(true)
+                    .build();
+            suffixStmtList.add(releaseAssignStmt);
         }
-        return Collections.unmodifiableSet(retSet);
+        return new NameExpr(new Name(tempVarName));
     }
 
-    private boolean isOrderSensitive(ASTNode node) {
+    /*
+     * false if the expression only reads literals, variables and temporaries, hence evaluates without side effects
+     * to the same value wherever it is placed, as long as no statement placed in between assigns a variable it
+     * reads (see hoistIfOverwritten). names of the transformed expression are copies, their kind is looked up on
+     * the name nodes of the source expression, the kind analysis being flow insensitive.
+     */
+    private boolean isOrderSensitive(ASTNode node, ASTNode sourceExpr) {
+        if (isLiteralExpr(node)) return false;
+        if (node instanceof ColonExpr || node instanceof EndExpr) return false;
+        if (node instanceof NameExpr) {
+            String name = ((NameExpr) node).getName().getID();
+            if (AMTempVar.isGenerated(name)) return false;
+            if (transformQueryEnv.kindAnalysis == null) return true;
+            Name sourceName = findName(sourceExpr, name);
+            if (sourceName == null) return true;
+            VFDatum kindAnalysisResult = transformQueryEnv.kindAnalysis.getResult(sourceName);
+            return kindAnalysisResult == null || !kindAnalysisResult.isVariable();
+        }
+        if (isUnaryExpr(node) || isBinaryExpr(node)) {
+            for (int childIndex = 0; childIndex < node.getNumChild(); childIndex++) {
+                if (isOrderSensitive(node.getChild(childIndex), sourceExpr)) return true;
+            }
+            return false;
+        }
         return true;
     }
 
+    private static Name findName(ASTNode node, String name) {
+        if (node instanceof Name && ((Name) node).getID().equals(name)) return (Name) node;
+        for (int childIndex = 0; childIndex < node.getNumChild(); childIndex++) {
+            Name found = findName(node.getChild(childIndex), name);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private boolean isReadingVariables(ASTNode node) {
+        if (node instanceof NameExpr) return !AMTempVar.isGenerated(((NameExpr) node).getName().getID());
+        for (int childIndex = 0; childIndex < node.getNumChild(); childIndex++) {
+            if (isReadingVariables(node.getChild(childIndex))) return true;
+        }
+        return false;
+    }
+
+    /* only the evaluation of an order insensitive expression into a temporary of this transformer is pure */
+    private boolean mayHaveSideEffects(Stmt statement, ASTNode sourceExpr) {
+        if (!(statement instanceof AssignStmt)) return true;
+        Expr lhsExpr = ((AssignStmt) statement).getLHS();
+        if (!(lhsExpr instanceof NameExpr)) return true;
+        if (!AMTempVar.isGenerated(((NameExpr) lhsExpr).getName().getID())) return true;
+        return isOrderSensitive(((AssignStmt) statement).getRHS(), sourceExpr);
+    }
+
     public java.util.List<Stmt> getPrefixStmtList() {
         return Collections.unmodifiableList(prefixStmtList);
     }
@@ -52,6 +303,40 @@ public final class AspectExprTransformer extends CopyExprTransformer {
         return Collections.unmodifiableList(suffixStmtList);
     }
 
+    /**
+     * detach the prefix statements accumulated so far, the transformer continues with an empty list
+     * @return detached prefix statements, in evaluation order
+     */
+    public java.util.List<Stmt> takePrefixStmtList() {
+        java.util.List<Stmt> retList = prefixStmtList;
+        prefixStmtList = new LinkedList<>();
+        return retList;
+    }
+
+    /**
+     * detach the suffix statements accumulated so far, the transformer continues with an empty list
+     * @return detached suffix statements, in evaluation order
+     */
+    public java.util.List<Stmt> takeSuffixStmtList() {
+        java.util.List<Stmt> retList = suffixStmtList;
+        suffixStmtList = new LinkedList<>();
+        return retList;
+    }
+
+    /**
+     * replace the prefix and suffix statements, e.g. by the ones detached before weaving a nested statement
+     * @param prefixStmtList prefix statements
+     * @param suffixStmtList suffix statements
+     */
+    public void restoreSurroundingStmtList(java.util.List<Stmt> prefixStmtList, java.util.List<Stmt> suffixStmtList) {
+        this.prefixStmtList = new LinkedList<>(
+                Optional.ofNullable(prefixStmtList).orElseThrow(NullPointerException::new)
+        );
+        this.suffixStmtList = new LinkedList<>(
+                Optional.ofNullable(suffixStmtList).orElseThrow(NullPointerException::new)
+        );
+    }
+
     // Short circuit expression -> make sure the evaluation order is correct
 
     @Override
@@ -122,6 +407,7 @@ public final class AspectExprTransformer extends CopyExprTransformer {
                     .setRHS(rhsExpr)
                     .setOutputSuppressed(true)
                     .build();
+            rhsIfBlock.addStmt(evaluatingRHSAssignStmt);
             suffixStmtList.stream()
                     .filter(statement -> !suffixStmtListRetain.contains(statement))
                     .forEachOrdered(rhsIfBlock::addStmt);
@@ -140,37 +426,41 @@ public final class AspectExprTransformer extends CopyExprTransformer {
     // Operator Pattern
 
     private Expr binaryExprTransform(BinaryExpr binaryExpr, Supplier<? extends BinaryExpr> subExprSupplier) {
-        if (!hasTransformationAt(binaryExpr).isEmpty()) {
+        Set<Action> matchedActionSet = hasTransformationAt(binaryExpr);
+        if (!matchedActionSet.isEmpty()) {
+            boolean exposingOperands = isExposingOperands(matchedActionSet);
+
             Expr lhsExpr = this.transform(binaryExpr.getLHS());
-            String lhsTempVarName = AMTempVar.next();
-            AssignStmt lhsPrefixAssignStmt = new AssignStmtBuilder()
-                    .setLHS(lhsTempVarName)
-                    .setRHS(lhsExpr)
-                    .setOutputSuppressed(true)
-                    .build();
-            prefixStmtList.add(lhsPrefixAssignStmt);
+            if (isHoistedOperand(lhsExpr, binaryExpr, exposingOperands)) lhsExpr = hoistTempVar(lhsExpr);
+            int lhsPrefixEnd = prefixStmtList.size();
 
             Expr rhsExpr = this.transform(binaryExpr.getRHS());
-            String rhsTempVarName = AMTempVar.next();
-            AssignStmt rhsPrefixAssignStmt = new AssignStmtBuilder()
-                    .setLHS(rhsTempVarName)
-                    .setRHS(rhsExpr)
-                    .setOutputSuppressed(true)
-                    .build();
-            prefixStmtList.add(rhsPrefixAssignStmt);
+            if (isHoistedOperand(rhsExpr, binaryExpr, exposingOperands)) rhsExpr = hoistTempVar(rhsExpr);
+            int rhsPrefixEnd = prefixStmtList.size();
+
+            inlineAdvice(matchedActionSet, binaryExpr, WeaveType.Before);
+            rhsExpr = hoistIfOverwritten(rhsExpr, rhsPrefixEnd, binaryExpr);
+            lhsExpr = hoistIfOverwritten(lhsExpr, lhsPrefixEnd, binaryExpr);
 
-            String resultTempVarName = AMTempVar.next();
             BinaryExpr evaluatingExpr = subExprSupplier.get();
-            evaluatingExpr.setLHS(new NameExpr(new Name(lhsTempVarName)));
-            evaluatingExpr.setRHS(new NameExpr(new Name(rhsTempVarName)));
-            AssignStmt evaluatingStmt = new AssignStmtBuilder()
-                    .setLHS(resultTempVarName)
-                    .setRHS(evaluatingExpr)
-                    .setOutputSuppressed(true)
-                    .build();
-            prefixStmtList.add(evaluatingStmt);
+            evaluatingExpr.setLHS(lhsExpr);
+            evaluatingExpr.setRHS(rhsExpr);
+            if (!isExposingResult(matchedActionSet)) return evaluatingExpr;
+
+            NameExpr resultExpr = hoistTempVar(evaluatingExpr);
+            inlineAdvice(matchedActionSet, binaryExpr, WeaveType.After);
+            return resultExpr;
+        } else if (!hasTransformationFrom(binaryExpr.getRHS()).isEmpty()) {
+            /* the right operand may hoist calls or inline advice ahead of the left one */
+            Expr lhsExpr = this.transform(binaryExpr.getLHS());
+            int lhsPrefixEnd = prefixStmtList.size();
+            Expr rhsExpr = this.transform(binaryExpr.getRHS());
+            lhsExpr = hoistIfOverwritten(lhsExpr, lhsPrefixEnd, binaryExpr);
 
-            return new NameExpr(new Name(resultTempVarName));
+            BinaryExpr copiedExpr = (BinaryExpr) ASTNodeHandle(binaryExpr);
+            copiedExpr.setLHS(lhsExpr);
+            copiedExpr.setRHS(rhsExpr);
+            return copiedExpr;
         } else {
             if (binaryExpr instanceof PlusExpr)   return super.casePlusExpr(((PlusExpr) binaryExpr));
             if (binaryExpr instanceof MinusExpr)  return super.caseMinusExpr(((MinusExpr) binaryExpr));
@@ -206,27 +496,24 @@ public final class AspectExprTransformer extends CopyExprTransformer {
     }
 
     private Expr unaryExprTransform(UnaryExpr unaryExpr, Supplier<? extends UnaryExpr> subExprSupplier) {
-        if (!hasTransformationAt(unaryExpr).isEmpty()) {
+        Set<Action> matchedActionSet = hasTransformationAt(unaryExpr);
+        if (!matchedActionSet.isEmpty()) {
             Expr operandExpr = this.transform(unaryExpr.getOperand());
-            String operandTempVarName = AMTempVar.next();
-            AssignStmt operandPrefixAssignStmt = new AssignStmtBuilder()
-                    .setLHS(operandTempVarName)
-                    .setRHS(operandExpr)
-                    .setOutputSuppressed(true)
-                    .build();
-            prefixStmtList.add(operandPrefixAssignStmt);
+            if (isHoistedOperand(operandExpr, unaryExpr, isExposingOperands(matchedActionSet))) {
+                operandExpr = hoistTempVar(operandExpr);
+            }
+            int operandPrefixEnd = prefixStmtList.size();
+
+            inlineAdvice(matchedActionSet, unaryExpr, WeaveType.Before);
+            operandExpr = hoistIfOverwritten(operandExpr, operandPrefixEnd, unaryExpr);
 
-            String resultTempVarName = AMTempVar.next();
             UnaryExpr evaluatingExpr = subExprSupplier.get();
-            evaluatingExpr.setOperand(new NameExpr(new Name(operandTempVarName)));
-            AssignStmt evaluatingStmt = new AssignStmtBuilder()
-                    .setLHS(resultTempVarName)
-                    .setRHS(evaluatingExpr)
-                    .setOutputSuppressed(true)
-                    .build();
-            prefixStmtList.add(evaluatingStmt);
+            evaluatingExpr.setOperand(operandExpr);
+            if (!isExposingResult(matchedActionSet)) return evaluatingExpr;
 
-            return new NameExpr(new Name(resultTempVarName));
+            NameExpr resultExpr = hoistTempVar(evaluatingExpr);
+            inlineAdvice(matchedActionSet, unaryExpr, WeaveType.After);
+            return resultExpr;
         } else {
             if (unaryExpr instanceof UMinusExpr)     return super.caseUMinusExpr(((UMinusExpr) unaryExpr));
             if (unaryExpr instanceof UPlusExpr)      return super.caseUPlusExpr(((UPlusExpr) unaryExpr));
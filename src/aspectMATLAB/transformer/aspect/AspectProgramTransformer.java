@@ -0,0 +1,86 @@
+package aspectMATLAB.transformer.aspect;
+
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.transformer.TransformQueryEnv;
+import aspectMATLAB.transformer.pattern.CopyPatternTransformer;
+import aspectMATLAB.transformer.program.CopyProgramTransformer;
+import aspectMATLAB.transformer.stmt.LoopInvariantHoister;
+import ast.ASTNode;
+import ast.FunctionList;
+import ast.Program;
+import ast.Script;
+import natlab.toolkits.analysis.varorfun.VFAnalysis;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * program transformer weaving a set of actions into a copy of the compilation units. once a script or a function
+ * is woven, the invariant temporaries introduced by weaving are moved out of its loops (see
+ * {@link LoopInvariantHoister}).
+ */
+public final class AspectProgramTransformer
+        extends CopyProgramTransformer<AspectStmtTransformer, CopyPatternTransformer> {
+    private final LoopInvariantHoister loopInvariantHoister;
+
+    public AspectProgramTransformer(AspectStmtTransformer statementTransformer) {
+        super(
+                Optional.ofNullable(statementTransformer).orElseThrow(NullPointerException::new),
+                new CopyPatternTransformer()
+        );
+        this.loopInvariantHoister = new LoopInvariantHoister(statementTransformer.getExprTransformer()::isTempVarName);
+    }
+
+    /**
+     * @param actions actions to weave
+     * @param kindAnalysis kind analysis of the compilation units to weave
+     * @throws NullPointerException if {@code actions} or {@code kindAnalysis} is {@code null}
+     */
+    public AspectProgramTransformer(Collection<Action> actions, VFAnalysis kindAnalysis) {
+        this(new AspectStmtTransformer(new AspectExprTransformer(
+                new JoinPointMatcherIndex(actions),
+                buildQueryEnv(Optional.ofNullable(kindAnalysis).orElseThrow(NullPointerException::new))
+        )));
+    }
+
+    /**
+     * @param adviceInliner inliner of small before and after advice, {@code null} to disable inlining. inliners keep
+     *                      per unit state, hence each transformer should be given its own.
+     */
+    public AspectProgramTransformer setAdviceInliner(AdviceInliner adviceInliner) {
+        statementTransformer.getExprTransformer().setAdviceInliner(adviceInliner);
+        return this;
+    }
+
+    /** @param operandCapture how exposed operands are handed over to advice */
+    public AspectProgramTransformer setOperandCapture(AspectExprTransformer.OperandCapture operandCapture) {
+        statementTransformer.getExprTransformer().setOperandCapture(operandCapture);
+        return this;
+    }
+
+    private static TransformQueryEnv buildQueryEnv(VFAnalysis kindAnalysis) {
+        TransformQueryEnv transformQueryEnv = new TransformQueryEnv();
+        transformQueryEnv.kindAnalysis = kindAnalysis;
+        return transformQueryEnv;
+    }
+
+    @Override
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return statementTransformer.isUnchangedSubtree(astNode);
+    }
+
+    @Override
+    public Program caseScript(Script script) {
+        Script wovenScript = (Script) super.caseScript(script);
+        loopInvariantHoister.hoist(wovenScript);
+        return wovenScript;
+    }
+
+    /* nested functions share the workspace of their enclosing function, hence are hoisted along with it */
+    @Override
+    public Program caseFunctionList(FunctionList functionList) {
+        FunctionList wovenFunctionList = (FunctionList) super.caseFunctionList(functionList);
+        wovenFunctionList.getFunctionList().forEach(loopInvariantHoister::hoist);
+        return wovenFunctionList;
+    }
+}
@@ -0,0 +1,186 @@
+package aspectMATLAB.transformer.aspect;
+
+import ast.*;
+import aspectMATLAB.transformer.stmt.CopyStmtTransformer;
+import aspectMATLAB.utils.codeGen.collectors.ASTListMergeCollector;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * statement level weaving, placing the statements hoisted out of the expressions of a statement (temporaries,
+ * inlined advice) around that statement: prefix statements in front of it, suffix statements after it. expressions
+ * evaluated once ahead of their statement (assignments, for ranges, first if condition, switch subject) are woven
+ * in place. a while condition is evaluated at each iteration, hence a loop whose condition needs prefix statements
+ * is rewritten as {@code while true} testing the condition first; an elseif condition needing prefix statements
+ * starts a nested if statement within the else block of the previous conditions. case labels are copied unwoven.
+ */
+public final class AspectStmtTransformer extends CopyStmtTransformer<AspectExprTransformer> {
+    public AspectStmtTransformer(AspectExprTransformer exprTransformer) {
+        super(Optional.ofNullable(exprTransformer).orElseThrow(NullPointerException::new));
+    }
+
+    @Override
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return exprTransformer.isUnchangedSubtree(astNode);
+    }
+
+    /* statements nested within the statement are surrounded by their own prefix and suffix statements */
+    @Override
+    public java.util.List<Stmt> transform(Stmt statement) {
+        if (isUnchangedSubtree(statement)) return Collections.singletonList(statement.treeCopy());
+
+        java.util.List<Stmt> retList = new LinkedList<>();
+        java.util.List<Stmt> suffixStmtList = new LinkedList<>();
+        java.util.List<Stmt> transformedStmtList = weaveDetached(
+                () -> super.transform(statement),
+                retList,
+                suffixStmtList
+        );
+        retList.addAll(transformedStmtList);
+        retList.addAll(suffixStmtList);
+        return Collections.unmodifiableList(retList);
+    }
+
+    /*
+     * weave with empty prefix and suffix statements, appending the ones produced to the given lists, the prefix and
+     * suffix statements of the enclosing statement are restored afterward
+     */
+    private <T> T weaveDetached(
+            Supplier<T> weaving, java.util.List<Stmt> prefixStmtList, java.util.List<Stmt> suffixStmtList) {
+        java.util.List<Stmt> enclosingPrefixStmtList = exprTransformer.takePrefixStmtList();
+        java.util.List<Stmt> enclosingSuffixStmtList = exprTransformer.takeSuffixStmtList();
+
+        T result = weaving.get();
+        prefixStmtList.addAll(exprTransformer.takePrefixStmtList());
+        suffixStmtList.addAll(exprTransformer.takeSuffixStmtList());
+
+        exprTransformer.restoreSurroundingStmtList(enclosingPrefixStmtList, enclosingSuffixStmtList);
+        return result;
+    }
+
+    private ast.List<Stmt> transformStmtList(ast.List<Stmt> stmtList) {
+        return stmtList.stream()
+                .map(this::transform)
+                .collect(new ASTListMergeCollector<>());
+    }
+
+    /* the loop variable is copied as is, the header has to remain a single assignment */
+    @Override
+    protected java.util.List<Stmt> caseForStmt(ForStmt forStmt) {
+        AssignStmt headerStmt = forStmt.getAssignStmt();
+        Expr transformedRangeExpr = this.exprTransformer.transform(headerStmt.getRHS());
+
+        AssignStmt copiedHeaderStmt = (AssignStmt) ASTNodeHandle(headerStmt);
+        copiedHeaderStmt.setLHS(headerStmt.getLHS().treeCopy());
+        copiedHeaderStmt.setRHS(transformedRangeExpr);
+
+        ForStmt copiedStmt = (ForStmt) ASTNodeHandle(forStmt);
+        copiedStmt.setAssignStmt(copiedHeaderStmt);
+        copiedStmt.setStmtList(transformStmtList(forStmt.getStmtList()));
+
+        return Collections.singletonList(copiedStmt);
+    }
+
+    /*
+     * while true
+     *     <prefix>
+     *     if ~(<condition>), <suffix>, break, end
+     *     <suffix>
+     *     <body>
+     * end
+     */
+    @Override
+    protected java.util.List<Stmt> caseWhileStmt(WhileStmt whileStmt) {
+        java.util.List<Stmt> prefixStmtList = new LinkedList<>();
+        java.util.List<Stmt> suffixStmtList = new LinkedList<>();
+        Expr transformedConditionExpr = weaveDetached(
+                () -> this.exprTransformer.transform(whileStmt.getExpr()),
+                prefixStmtList,
+                suffixStmtList
+        );
+        ast.List<Stmt> newStmtList = transformStmtList(whileStmt.getStmtList());
+
+        WhileStmt copiedStmt = (WhileStmt) ASTNodeHandle(whileStmt);
+        copiedStmt.setStmtList(newStmtList);
+        if (prefixStmtList.isEmpty() && suffixStmtList.isEmpty()) {
+            copiedStmt.setExpr(transformedConditionExpr);
+            return Collections.singletonList(copiedStmt);
+        }
+
+        IfBlock exitIfBlock = new IfBlock();
+        exitIfBlock.setCondition(new NotExpr(transformedConditionExpr));
+        suffixStmtList.forEach(statement -> exitIfBlock.addStmt(statement.treeCopy()));
+        exitIfBlock.addStmt(new BreakStmt());
+
+        ast.List<Stmt> loopStmtList = new ast.List<>();
+        prefixStmtList.forEach(loopStmtList::add);
+        loopStmtList.add(new IfStmt(new ast.List<>(exitIfBlock), new Opt<>()));
+        suffixStmtList.forEach(loopStmtList::add);
+        newStmtList.forEach(loopStmtList::add);
+
+        copiedStmt.setExpr(new NameExpr(new Name("true")));
+        copiedStmt.setStmtList(loopStmtList);
+        return Collections.singletonList(copiedStmt);
+    }
+
+    /*
+     * the first condition is evaluated ahead of the statement, the following ones only if the previous ones failed.
+     * from the first following condition needing prefix statements on, the blocks move to a nested if statement:
+     *     if c1, ..., elseif c2, ..., else <prefix> if c3, ..., else ..., end <suffix> end
+     */
+    @Override
+    protected java.util.List<Stmt> caseIfStmt(IfStmt ifStmt) {
+        java.util.List<IfBlock> ifBlockList = new ArrayList<>(ifStmt.getNumIfBlock());
+        java.util.List<java.util.List<Stmt>> prefixStmtLists = new ArrayList<>(ifStmt.getNumIfBlock());
+        java.util.List<java.util.List<Stmt>> suffixStmtLists = new ArrayList<>(ifStmt.getNumIfBlock());
+        for (IfBlock ifBlock : ifStmt.getIfBlockList()) {
+            java.util.List<Stmt> prefixStmtList = new LinkedList<>();
+            java.util.List<Stmt> suffixStmtList = new LinkedList<>();
+            if (ifBlockList.isEmpty()) {
+                ifBlockList.addAll(this.caseIfBlock(ifBlock));
+            } else {
+                ifBlockList.addAll(weaveDetached(() -> this.caseIfBlock(ifBlock), prefixStmtList, suffixStmtList));
+            }
+            prefixStmtLists.add(prefixStmtList);
+            suffixStmtLists.add(suffixStmtList);
+        }
+        ElseBlock elseBlock = ifStmt.hasElseBlock() ? this.caseElseBlock(ifStmt.getElseBlock()) : null;
+
+        LinkedList<IfBlock> pendingIfBlockList = new LinkedList<>();
+        for (int blockIndex = ifBlockList.size() - 1; blockIndex >= 0; blockIndex--) {
+            pendingIfBlockList.addFirst(ifBlockList.get(blockIndex));
+            if (blockIndex == 0) break;
+            if (prefixStmtLists.get(blockIndex).isEmpty() && suffixStmtLists.get(blockIndex).isEmpty()) continue;
+
+            ElseBlock nestingElseBlock = new ElseBlock();
+            prefixStmtLists.get(blockIndex).forEach(nestingElseBlock::addStmt);
+            nestingElseBlock.addStmt(buildIfStmt(pendingIfBlockList, elseBlock));
+            suffixStmtLists.get(blockIndex).forEach(nestingElseBlock::addStmt);
+            pendingIfBlockList = new LinkedList<>();
+            elseBlock = nestingElseBlock;
+        }
+
+        IfStmt copiedStmt = (IfStmt) ASTNodeHandle(ifStmt);
+        ast.List<IfBlock> newIfBlockList = new ast.List<>();
+        pendingIfBlockList.forEach(newIfBlockList::add);
+        copiedStmt.setIfBlockList(newIfBlockList);
+        if (elseBlock != null) copiedStmt.setElseBlock(elseBlock);
+        return Collections.singletonList(copiedStmt);
+    }
+
+    private static IfStmt buildIfStmt(java.util.List<IfBlock> ifBlockList, ElseBlock elseBlock) {
+        ast.List<IfBlock> newIfBlockList = new ast.List<>();
+        ifBlockList.forEach(newIfBlockList::add);
+        return new IfStmt(newIfBlockList, (elseBlock == null) ? new Opt<>() : new Opt<>(elseBlock));
+    }
+
+    @Override
+    protected java.util.List<SwitchCaseBlock> caseSwitchCaseBlock(SwitchCaseBlock switchCaseBlock) {
+        SwitchCaseBlock copiedBlock = (SwitchCaseBlock) ASTNodeHandle(switchCaseBlock);
+        copiedBlock.setExpr(switchCaseBlock.getExpr().treeCopy());
+        copiedBlock.setStmtList(transformStmtList(switchCaseBlock.getStmtList()));
+
+        return Collections.singletonList(copiedBlock);
+    }
+}
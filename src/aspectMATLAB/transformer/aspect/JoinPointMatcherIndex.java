@@ -0,0 +1,249 @@
+package aspectMATLAB.transformer.aspect;
+
+import aspectMATLAB.abstractPattern.Action;
+import aspectMATLAB.abstractPattern.primitive.Primitive;
+import aspectMATLAB.transformer.TransformQueryEnv;
+import ast.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * dispatch table from AST node types to the actions whose pattern can possibly match a node of that type,
+ * built once per set of actions. within a node type, actions restricted to specific identifier names (e.g.
+ * {@code get(x)}, {@code call(foo)}) are further bucketed by name, apart from the unrestricted ones. only the
+ * candidate actions of a node are tested against it, hence the matching cost of a node is proportional to the
+ * number of relevant patterns.
+ */
+public final class JoinPointMatcherIndex {
+    /**
+     * node types (with their super types) and referred identifiers occurring within a subtree, i.e. the keys under
+     * which its nodes look up their candidate actions. an action which is a candidate under none of these keys
+     * cannot match any node of the subtree, hence the summary tells without the subtree at hand whether a new
+     * action may match it.
+     */
+    public static final class KeySummary {
+        private final java.util.Set<String> nodeClassNames;
+        private final java.util.Set<String> identifiers;
+
+        /**
+         * @param nodeClassNames fully qualified names of the node types, super types included
+         * @param identifiers identifiers referred by the nodes, see {@link #getCandidates}
+         * @throws NullPointerException if {@code nodeClassNames} or {@code identifiers} is {@code null}
+         */
+        public KeySummary(Collection<String> nodeClassNames, Collection<String> identifiers) {
+            this.nodeClassNames = Collections.unmodifiableSet(new HashSet<>(
+                    Optional.ofNullable(nodeClassNames).orElseThrow(NullPointerException::new)
+            ));
+            this.identifiers = Collections.unmodifiableSet(new HashSet<>(
+                    Optional.ofNullable(identifiers).orElseThrow(NullPointerException::new)
+            ));
+        }
+
+        /** summarize the keys of every node within the subtree */
+        public static KeySummary of(ASTNode astNode) {
+            java.util.Set<Class<?>> nodeClasses = new HashSet<>();
+            java.util.Set<String> identifiers = new HashSet<>();
+            collectKeys(Optional.ofNullable(astNode).orElseThrow(NullPointerException::new), nodeClasses, identifiers);
+
+            java.util.Set<String> nodeClassNames = new HashSet<>();
+            for (Class<?> nodeClass : nodeClasses) {
+                for (Class<?> iterator = nodeClass; iterator != null; iterator = iterator.getSuperclass()) {
+                    if (!ASTNode.class.isAssignableFrom(iterator)) break;
+                    nodeClassNames.add(iterator.getName());
+                }
+            }
+            return new KeySummary(nodeClassNames, identifiers);
+        }
+
+        private static void collectKeys(
+                ASTNode astNode, java.util.Set<Class<?>> nodeClasses, java.util.Set<String> identifiers) {
+            nodeClasses.add(astNode.getClass());
+            String identifier = getReferredIdentifier(astNode);
+            if (identifier != null) identifiers.add(identifier);
+            for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+                collectKeys(astNode.getChild(childIndex), nodeClasses, identifiers);
+            }
+        }
+
+        public java.util.Set<String> getNodeClassNames() {
+            return nodeClassNames;
+        }
+
+        public java.util.Set<String> getIdentifiers() {
+            return identifiers;
+        }
+
+        /**
+         * @param action action
+         * @return {@code false} if the action is a candidate of none of the nodes summarized, hence cannot match
+         */
+        public boolean mayMatch(Action action) {
+            Optional.ofNullable(action).orElseThrow(NullPointerException::new);
+            if (!(action.getPattern() instanceof Primitive)) return false;
+            Primitive primitive = (Primitive) action.getPattern();
+
+            boolean hasNodeClass = false;
+            for (Class<? extends ASTNode> nodeClass : primitive.getJoinPointNodeClasses()) {
+                if (nodeClassNames.contains(nodeClass.getName())) hasNodeClass = true;
+            }
+            if (!hasNodeClass) return false;
+
+            Optional<java.util.Set<String>> identifierKeys = primitive.getIdentifierKeys();
+            if (!identifierKeys.isPresent()) return true;
+            for (String identifier : identifierKeys.get()) {
+                if (identifiers.contains(identifier)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Candidates {
+        private final java.util.List<Action> wildcardList = new ArrayList<>();
+        private final Map<String, java.util.List<Action>> identifierMap = new HashMap<>();
+    }
+
+    private final java.util.List<Action> actionList;
+    private final Map<Action, Integer> actionOrder = new IdentityHashMap<>();
+    private final Map<Class<?>, Candidates> declaredMap = new HashMap<>();
+    private final Map<Class<?>, Candidates> candidateCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param actions actions to index, the candidate lists preserve the iteration order of {@code actions}
+     * @throws NullPointerException if {@code actions} is {@code null}
+     */
+    public JoinPointMatcherIndex(Collection<Action> actions) {
+        actionList = Collections.unmodifiableList(new ArrayList<>(
+                Optional.ofNullable(actions).orElseThrow(NullPointerException::new)
+        ));
+        for (Action action : actionList) {
+            actionOrder.putIfAbsent(action, actionOrder.size());
+            if (!(action.getPattern() instanceof Primitive)) continue;
+            Primitive primitive = (Primitive) action.getPattern();
+            Optional<java.util.Set<String>> identifierKeys = primitive.getIdentifierKeys();
+            for (Class<? extends ASTNode> nodeClass : primitive.getJoinPointNodeClasses()) {
+                Candidates candidates = declaredMap.computeIfAbsent(nodeClass, key -> new Candidates());
+                if (identifierKeys.isPresent()) {
+                    for (String identifier : identifierKeys.get()) {
+                        candidates.identifierMap.computeIfAbsent(identifier, key -> new ArrayList<>()).add(action);
+                    }
+                } else {
+                    candidates.wildcardList.add(action);
+                }
+            }
+        }
+    }
+
+    public java.util.List<Action> getActions() {
+        return actionList;
+    }
+
+    /**
+     * @param action action
+     * @return position of the first occurrence of the action in {@link #getActions()}, {@code -1} if not indexed
+     */
+    public int getActionIndex(Action action) {
+        return actionOrder.getOrDefault(action, -1);
+    }
+
+    /**
+     * actions which can possibly match the given node, i.e. the actions declaring the type of the node (or one of
+     * its super types) as a join point node type, and either not restricted to specific identifier names or
+     * restricted to the name the node refers to
+     * @param astNode AST node
+     * @return candidate actions, in declaration order
+     */
+    public java.util.List<Action> getCandidates(ASTNode astNode) {
+        Candidates candidates = getClassCandidates(
+                Optional.ofNullable(astNode).orElseThrow(NullPointerException::new).getClass()
+        );
+        if (candidates.identifierMap.isEmpty()) return candidates.wildcardList;
+
+        String identifier = getReferredIdentifier(astNode);
+        java.util.List<Action> identifierList = (identifier == null) ?
+                Collections.emptyList() :
+                candidates.identifierMap.getOrDefault(identifier, Collections.emptyList());
+        if (identifierList.isEmpty()) return candidates.wildcardList;
+        if (candidates.wildcardList.isEmpty()) return identifierList;
+
+        /* merge both bucket, keeping the declaration order */
+        java.util.List<Action> merged = new ArrayList<>(candidates.wildcardList.size() + identifierList.size());
+        int wildcardIndex = 0;
+        int identifierIndex = 0;
+        while (wildcardIndex < candidates.wildcardList.size() && identifierIndex < identifierList.size()) {
+            Action wildcardAction = candidates.wildcardList.get(wildcardIndex);
+            Action identifierAction = identifierList.get(identifierIndex);
+            if (actionOrder.get(wildcardAction) < actionOrder.get(identifierAction)) {
+                merged.add(wildcardAction);
+                wildcardIndex++;
+            } else {
+                merged.add(identifierAction);
+                identifierIndex++;
+            }
+        }
+        merged.addAll(candidates.wildcardList.subList(wildcardIndex, candidates.wildcardList.size()));
+        merged.addAll(identifierList.subList(identifierIndex, identifierList.size()));
+        return merged;
+    }
+
+    /**
+     * actions matching the given node
+     * @param astNode AST node
+     * @param transformQueryEnv transforming environment
+     * @return matching actions, in declaration order
+     */
+    public java.util.List<Action> match(ASTNode astNode, TransformQueryEnv transformQueryEnv) {
+        java.util.List<Action> candidates = getCandidates(astNode);
+        if (candidates.isEmpty()) return Collections.emptyList();
+
+        java.util.List<Action> matched = new LinkedList<>();
+        for (Action action : candidates) {
+            if (((Primitive) action.getPattern()).isPossibleJoinPoint(astNode, transformQueryEnv)) matched.add(action);
+        }
+        return matched;
+    }
+
+    private Candidates getClassCandidates(Class<?> nodeClass) {
+        return candidateCache.computeIfAbsent(nodeClass, key -> {
+            java.util.Set<Action> wildcardSet = new HashSet<>();
+            Map<String, java.util.Set<Action>> identifierSetMap = new HashMap<>();
+            for (Class<?> iterator = key; iterator != null; iterator = iterator.getSuperclass()) {
+                Candidates declared = declaredMap.get(iterator);
+                if (declared == null) continue;
+                wildcardSet.addAll(declared.wildcardList);
+                declared.identifierMap.forEach((identifier, actions) ->
+                        identifierSetMap.computeIfAbsent(identifier, name -> new HashSet<>()).addAll(actions)
+                );
+            }
+
+            Candidates candidates = new Candidates();
+            for (Action action : actionList) {
+                if (wildcardSet.contains(action) && !candidates.wildcardList.contains(action)) {
+                    candidates.wildcardList.add(action);
+                }
+            }
+            identifierSetMap.forEach((identifier, actionSet) -> {
+                java.util.List<Action> actions = new ArrayList<>();
+                for (Action action : actionList) {
+                    if (actionSet.contains(action) && !wildcardSet.contains(action) && !actions.contains(action)) {
+                        actions.add(action);
+                    }
+                }
+                if (!actions.isEmpty()) candidates.identifierMap.put(identifier, actions);
+            });
+            return candidates;
+        });
+    }
+
+    /* name referred by a get, set or call join point candidate, null if the node does not refer to a name */
+    private static String getReferredIdentifier(ASTNode astNode) {
+        if (astNode instanceof NameExpr) return ((NameExpr) astNode).getName().getID();
+
+        Expr targetExpr = null;
+        if (astNode instanceof ParameterizedExpr) targetExpr = ((ParameterizedExpr) astNode).getTarget();
+        if (astNode instanceof CellIndexExpr) targetExpr = ((CellIndexExpr) astNode).getTarget();
+        if (astNode instanceof DotExpr) targetExpr = ((DotExpr) astNode).getTarget();
+        if (targetExpr instanceof NameExpr) return ((NameExpr) targetExpr).getName().getID();
+        return null;
+    }
+}
@@ -9,6 +9,27 @@ public class CopyExprTransformer extends AbstractExprTransformer {
         return operand.copy();
     }
 
+    /**
+     * expressions within unchanged subtrees (see {@link #isUnchangedSubtree}) are copied in bulk with
+     * {@link ASTNode#treeCopy()}, instead of rebuilt node by node through the case methods
+     */
+    @Override
+    public Expr transform(Expr target) {
+        if (isUnchangedSubtree(target)) return target.treeCopy();
+        return super.transform(target);
+    }
+
+    /**
+     * {@code true} if transforming the expressions within the given subtree yields plain copies of them. the plain
+     * copy transformer leaves every subtree unchanged, subclasses overriding case methods are assumed to change
+     * everything unless they override this query as well.
+     * @param astNode root of the subtree
+     * @return {@code true} if the subtree can be copied as a whole
+     */
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return getClass() == CopyExprTransformer.class;
+    }
+
     @Override
     protected Expr caseRangeExpr(RangeExpr rangeExpr) {
         if (rangeExpr.hasIncr()) {
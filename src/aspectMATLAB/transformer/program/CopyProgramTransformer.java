@@ -23,6 +23,28 @@ public class CopyProgramTransformer
         return operand.copy();
     }
 
+    /**
+     * programs within unchanged subtrees (see {@link #isUnchangedSubtree}) are copied in bulk with
+     * {@link ASTNode#treeCopy()}, instead of rebuilt node by node through the case methods. aspect definitions are
+     * always rebuilt, as their patterns go through the pattern transformer.
+     */
+    @Override
+    public Program transform(Program program) {
+        if (!(program instanceof AspectDef) && isUnchangedSubtree(program)) return program.treeCopy();
+        return super.transform(program);
+    }
+
+    /**
+     * {@code true} if transforming the given subtree yields a plain copy of it, i.e. if neither this transformer
+     * nor its statement transformer changes anything in it. subclasses overriding case methods are assumed to
+     * change everything unless they override this query as well.
+     * @param astNode root of the subtree, holding no pattern
+     * @return {@code true} if the subtree can be copied as a whole
+     */
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return getClass() == CopyProgramTransformer.class && statementTransformer.isUnchangedSubtree(astNode);
+    }
+
     @Override
     public CompilationUnits transform(CompilationUnits compilationUnits) {
         ast.List<Program> newProgramList = compilationUnits.getProgramList().stream()
@@ -313,6 +335,8 @@ public class CopyProgramTransformer
 
     @Override
     public List<Function> caseFunction(Function function) {
+        if (isUnchangedSubtree(function)) return Collections.singletonList(function.treeCopy());
+
         ast.List<Function> newNestedFunctionList = function.getNestedFunctionList().stream()
                 .map(this::caseFunction)
                 .collect(new ASTListMergeCollector<>());
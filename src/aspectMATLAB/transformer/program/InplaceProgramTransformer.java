@@ -10,6 +10,7 @@ import aspectMATLAB.utils.codeGen.collectors.ASTListMergeCollector;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class InplaceProgramTransformer
         <TStmt extends InplaceStmtTransformer, TPattern extends InplacePatternTransformer>
@@ -33,6 +34,16 @@ public class InplaceProgramTransformer
         return compilationUnits;
     }
 
+    /** transform only the programs accepted by the filter, the other programs are kept untouched */
+    public CompilationUnits transform(CompilationUnits compilationUnits, Predicate<Program> filter) {
+        ast.List<Program> newProgramList = compilationUnits.getProgramList().stream()
+                .map(program -> filter.test(program) ? this.transform(program) : program)
+                .collect(new ASTListCollector<>());
+
+        compilationUnits.setProgramList(newProgramList);
+        return compilationUnits;
+    }
+
     @Override
     public Program caseScript(Script script) {
         ast.List<Stmt> newStmtList = new ast.List<>();
@@ -19,6 +19,27 @@ public class CopyStmtTransformer<T extends CopyExprTransformer> extends Abstract
         return operand.copy();
     }
 
+    /**
+     * statements within unchanged subtrees (see {@link #isUnchangedSubtree}) are copied in bulk with
+     * {@link ASTNode#treeCopy()}, instead of rebuilt node by node through the case methods
+     */
+    @Override
+    public List<Stmt> transform(Stmt statement) {
+        if (isUnchangedSubtree(statement)) return Collections.singletonList(statement.treeCopy());
+        return super.transform(statement);
+    }
+
+    /**
+     * {@code true} if transforming the statements and expressions within the given subtree yields plain copies of
+     * them, i.e. if neither this transformer nor its expression transformer changes anything in it. subclasses
+     * overriding case methods are assumed to change everything unless they override this query as well.
+     * @param astNode root of the subtree
+     * @return {@code true} if the subtree can be copied as a whole
+     */
+    public boolean isUnchangedSubtree(ASTNode astNode) {
+        return getClass() == CopyStmtTransformer.class && exprTransformer.isUnchangedSubtree(astNode);
+    }
+
     @Override
     protected List<Stmt> caseExprStmt(ExprStmt exprStmt) {
         Expr copiedExpr = this.exprTransformer.transform(exprStmt.getExpr());
@@ -0,0 +1,202 @@
+package aspectMATLAB.transformer.stmt;
+
+import ast.*;
+import aspectMATLAB.transformer.expr.AbstractExprTransformer;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * loop invariant code motion for the temporaries introduced by weaving. a temporary assigned at the top level of a
+ * loop body is moved in front of the loop if its value is a constant (literals, matrices or cell arrays of
+ * constants, and temporaries already moved), and if every other occurrence of the temporary within the function
+ * or script is a read within the statements following the assignment in the loop body. every read then follows
+ * the assignment within the same iteration, and the temporary is neither read nor overwritten anywhere else, hence
+ * moving it cannot be observed, even if the loop runs zero times. such values are the same at every iteration and
+ * cannot fail, hence advice arguments like scope names or signature strings are built once instead of once per
+ * iteration.
+ */
+public final class LoopInvariantHoister {
+    private final Predicate<String> tempVarPredicate;
+
+    /**
+     * @param tempVarPredicate tells whether a name is a temporary introduced by weaving, e.g.
+     *                         {@link aspectMATLAB.utils.codeGen.AMTempVarGenerator#isGenerated}
+     * @throws NullPointerException if {@code tempVarPredicate} is {@code null}
+     */
+    public LoopInvariantHoister(Predicate<String> tempVarPredicate) {
+        this.tempVarPredicate = Optional.ofNullable(tempVarPredicate).orElseThrow(NullPointerException::new);
+    }
+
+    /** move the invariant temporaries out of the loops of the function and of its nested functions, in place */
+    public void hoist(ast.Function function) {
+        Optional.ofNullable(function).orElseThrow(NullPointerException::new);
+        Map<String, Integer> occurrenceCountMap = new HashMap<>();
+        collectOccurrences(function, occurrenceCountMap);
+        hoistWithin(function, occurrenceCountMap);
+    }
+
+    /** move the invariant temporaries out of the loops of the script, in place */
+    public void hoist(Script script) {
+        Optional.ofNullable(script).orElseThrow(NullPointerException::new);
+        Map<String, Integer> occurrenceCountMap = new HashMap<>();
+        collectOccurrences(script, occurrenceCountMap);
+        hoistWithin(script, occurrenceCountMap);
+    }
+
+    /* replace the statement lists within the subtree by their hoisted form, inner loops first */
+    private void hoistWithin(ASTNode astNode, Map<String, Integer> occurrenceCountMap) {
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            ASTNode child = astNode.getChild(childIndex);
+            if (child instanceof Expr) continue;
+            if (child instanceof ast.List && child.getNumChild() > 0 && child.getChild(0) instanceof Stmt) {
+                @SuppressWarnings("unchecked")
+                ast.List<Stmt> stmtList = (ast.List<Stmt>) child;
+                astNode.setChild(hoistStmtList(stmtList, occurrenceCountMap), childIndex);
+            } else {
+                hoistWithin(child, occurrenceCountMap);
+            }
+        }
+    }
+
+    private ast.List<Stmt> hoistStmtList(ast.List<Stmt> stmtList, Map<String, Integer> occurrenceCountMap) {
+        ast.List<Stmt> newStmtList = new ast.List<>();
+        for (Stmt statement : toJavaList(stmtList)) {
+            hoistWithin(statement, occurrenceCountMap);
+            if (statement instanceof ForStmt || statement instanceof WhileStmt) {
+                hoistLoop(statement, occurrenceCountMap).forEach(newStmtList::add);
+            } else {
+                newStmtList.add(statement);
+            }
+        }
+        return newStmtList;
+    }
+
+    /* the moved assignments followed by the loop, whose body is modified in place */
+    private java.util.List<Stmt> hoistLoop(Stmt loopStmt, Map<String, Integer> occurrenceCountMap) {
+        ast.List<Stmt> bodyStmtList;
+        if (loopStmt instanceof ForStmt) {
+            bodyStmtList = ((ForStmt) loopStmt).getStmtList();
+        } else {
+            bodyStmtList = ((WhileStmt) loopStmt).getStmtList();
+        }
+
+        java.util.List<Stmt> statements = toJavaList(bodyStmtList);
+        java.util.Set<String> invariantNames = new HashSet<>();
+        java.util.List<Stmt> hoistedStmtList = new ArrayList<>();
+        java.util.List<Stmt> retainedStmtList = new ArrayList<>();
+        for (int stmtIndex = 0; stmtIndex < statements.size(); stmtIndex++) {
+            Stmt statement = statements.get(stmtIndex);
+            String hoistedName = getHoistableName(statement, invariantNames);
+            java.util.List<Stmt> followingStmtList = statements.subList(stmtIndex + 1, statements.size());
+            if (hoistedName == null || !isReadOnlyWithin(hoistedName, followingStmtList, occurrenceCountMap)) {
+                retainedStmtList.add(statement);
+            } else {
+                hoistedStmtList.add(statement);
+                invariantNames.add(hoistedName);
+            }
+        }
+        if (hoistedStmtList.isEmpty()) return Collections.singletonList(loopStmt);
+
+        ast.List<Stmt> newStmtList = new ast.List<>();
+        retainedStmtList.forEach(newStmtList::add);
+        if (loopStmt instanceof ForStmt) {
+            ((ForStmt) loopStmt).setStmtList(newStmtList);
+        } else {
+            ((WhileStmt) loopStmt).setStmtList(newStmtList);
+        }
+
+        hoistedStmtList.add(loopStmt);
+        return hoistedStmtList;
+    }
+
+    private static java.util.List<Stmt> toJavaList(ast.List<Stmt> stmtList) {
+        java.util.List<Stmt> retList = new ArrayList<>(stmtList.getNumChild());
+        for (Stmt statement : stmtList) retList.add(statement);
+        return retList;
+    }
+
+    /* name of the temporary assigned by the statement if its value is invariant, null otherwise */
+    private String getHoistableName(Stmt statement, java.util.Set<String> invariantNames) {
+        if (!(statement instanceof AssignStmt)) return null;
+        Expr lhsExpr = ((AssignStmt) statement).getLHS();
+        if (!(lhsExpr instanceof NameExpr)) return null;
+        String name = ((NameExpr) lhsExpr).getName().getID();
+        if (!tempVarPredicate.test(name)) return null;
+        if (!isInvariant(((AssignStmt) statement).getRHS(), invariantNames)) return null;
+        return name;
+    }
+
+    /*
+     * true if the only occurrences of the name apart from the assignment of the temporary are reads within the
+     * given statements, i.e. the statements following the assignment in the loop body
+     */
+    private static boolean isReadOnlyWithin(
+            String name, java.util.List<Stmt> followingStmtList, Map<String, Integer> occurrenceCountMap) {
+        Map<String, Integer> followingCountMap = new HashMap<>();
+        java.util.Set<String> followingDefinitions = new HashSet<>();
+        for (Stmt statement : followingStmtList) {
+            collectOccurrences(statement, followingCountMap);
+            collectDefinitions(statement, followingDefinitions);
+        }
+        if (followingDefinitions.contains(name)) return false;
+        return occurrenceCountMap.getOrDefault(name, 0) == 1 + followingCountMap.getOrDefault(name, 0);
+    }
+
+    private static boolean isInvariant(Expr expr, java.util.Set<String> invariantNames) {
+        if (AbstractExprTransformer.isLiteralExpr(expr)) return true;
+        if (expr instanceof NameExpr) return invariantNames.contains(((NameExpr) expr).getName().getID());
+        if (expr instanceof UMinusExpr) return isInvariant(((UMinusExpr) expr).getOperand(), invariantNames);
+        if (expr instanceof UPlusExpr) return isInvariant(((UPlusExpr) expr).getOperand(), invariantNames);
+        if (expr instanceof MatrixExpr) return isInvariant(((MatrixExpr) expr).getRowList(), invariantNames);
+        if (expr instanceof CellArrayExpr) return isInvariant(((CellArrayExpr) expr).getRowList(), invariantNames);
+        return false;
+    }
+
+    private static boolean isInvariant(ast.List<Row> rowList, java.util.Set<String> invariantNames) {
+        for (Row row : rowList) {
+            for (Expr element : row.getElementList()) {
+                if (!isInvariant(element, invariantNames)) return false;
+            }
+        }
+        return true;
+    }
+
+    /* number of name nodes of each identifier within the subtree: variables, parameters, declarations, handles */
+    private static void collectOccurrences(ASTNode astNode, Map<String, Integer> occurrenceCountMap) {
+        if (astNode instanceof Name) occurrenceCountMap.merge(((Name) astNode).getID(), 1, Integer::sum);
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            collectOccurrences(astNode.getChild(childIndex), occurrenceCountMap);
+        }
+    }
+
+    /* names defined within the subtree: assignments, global and persistent declarations */
+    private static void collectDefinitions(ASTNode astNode, java.util.Set<String> definedNames) {
+        if (astNode instanceof AssignStmt) {
+            collectAssignedNames(((AssignStmt) astNode).getLHS(), definedNames);
+        } else if (astNode instanceof GlobalStmt) {
+            ((GlobalStmt) astNode).getNameList().forEach(name -> definedNames.add(name.getID()));
+        } else if (astNode instanceof PersistentStmt) {
+            ((PersistentStmt) astNode).getNameList().forEach(name -> definedNames.add(name.getID()));
+        }
+        for (int childIndex = 0; childIndex < astNode.getNumChild(); childIndex++) {
+            collectDefinitions(astNode.getChild(childIndex), definedNames);
+        }
+    }
+
+    private static void collectAssignedNames(Expr lhsExpr, java.util.Set<String> definedNames) {
+        if (lhsExpr instanceof NameExpr) {
+            definedNames.add(((NameExpr) lhsExpr).getName().getID());
+        } else if (lhsExpr instanceof ParameterizedExpr) {
+            collectAssignedNames(((ParameterizedExpr) lhsExpr).getTarget(), definedNames);
+        } else if (lhsExpr instanceof CellIndexExpr) {
+            collectAssignedNames(((CellIndexExpr) lhsExpr).getTarget(), definedNames);
+        } else if (lhsExpr instanceof DotExpr) {
+            collectAssignedNames(((DotExpr) lhsExpr).getTarget(), definedNames);
+        } else if (lhsExpr instanceof MatrixExpr) {
+            for (Row row : ((MatrixExpr) lhsExpr).getRowList()) {
+                for (Expr element : row.getElementList()) collectAssignedNames(element, definedNames);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package aspectMATLAB.transformer.stmt.examples;
+
+import ast.*;
+import aspectMATLAB.transformer.expr.InplaceExprTransformer;
+import aspectMATLAB.transformer.stmt.InplaceStmtTransformer;
+import aspectMATLAB.utils.codeGen.builders.AssignStmtBuilder;
+import aspectMATLAB.utils.codeGen.builders.IntLiteralExprBuilder;
+import aspectMATLAB.utils.codeGen.builders.ParameterizedExprBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Optional;
+
+/**
+ * statement tracing recording events into a preallocated buffer instead of printing one line per execution (see
+ * {@link StatementTracing}). each executed statement appends a record, its join point id and a numeric payload
+ * ({@code cputime} by default), to {@code AM_TRACE_BUF}; the buffer is printed in batches, once full, before a
+ * return, and at the end of the instrumented function or script. join point ids are numbered densely across
+ * everything instrumented by one instance, hence the records of every buffer decode against the single table returned
+ * by {@link #getJoinPointTable()}, which has to be written out along the woven programs.
+ */
+public final class BufferedStatementTracing extends InplaceStmtTransformer<InplaceExprTransformer> {
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final String BUFFER_NAME = "AM_TRACE_BUF";
+    private static final String COUNT_NAME = "AM_TRACE_N";
+
+    private final int capacity;
+    private final Expr payloadExpr;
+    private final java.util.List<String> joinPointTable = new ArrayList<>();
+    private String source = null;
+
+    public BufferedStatementTracing() {
+        this(DEFAULT_CAPACITY, new NameExpr(new Name("cputime")));
+    }
+
+    /**
+     * @param capacity number of records buffered before printing them
+     * @param payloadExpr numeric value recorded along the join point id, copied at each statement
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public BufferedStatementTracing(int capacity, Expr payloadExpr) {
+        super(new InplaceExprTransformer());
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.payloadExpr = Optional.ofNullable(payloadExpr).orElseThrow(NullPointerException::new);
+    }
+
+    /**
+     * join point table of everything instrumented so far, the description of the statement of id {@code i} being at
+     * index {@code i - 1}
+     * @return join point descriptions, e.g. {@code AssignStmt:12}, or {@code dir/foo.m:AssignStmt:12} for units
+     *         instrumented along their source path
+     */
+    public java.util.List<String> getJoinPointTable() {
+        return Collections.unmodifiableList(joinPointTable);
+    }
+
+    /**
+     * instrument the scripts and the top level functions of the units, in place
+     * @param source source path of the units, prefixed to the descriptions of their join points
+     * @param compilationUnits units to instrument
+     */
+    public void instrument(String source, CompilationUnits compilationUnits) {
+        Optional.ofNullable(source).orElseThrow(NullPointerException::new);
+        Optional.ofNullable(compilationUnits).orElseThrow(NullPointerException::new);
+        this.source = source;
+        try {
+            for (Program program : compilationUnits.getProgramList()) {
+                if (program instanceof Script) {
+                    instrument((Script) program);
+                } else if (program instanceof FunctionList) {
+                    ((FunctionList) program).getFunctionList().forEach(this::instrument);
+                }
+            }
+        } finally {
+            this.source = null;
+        }
+    }
+
+    /** instrument the statements of the function and of its nested functions, which share its trace buffer */
+    public void instrument(ast.Function function) {
+        Optional.ofNullable(function).orElseThrow(NullPointerException::new);
+        ast.List<Stmt> newStmtList = new ast.List<>();
+        getPrologue().forEach(newStmtList::add);
+        instrumentStmtList(function.getStmtList()).forEach(newStmtList::add);
+        getFlushStmtList().forEach(newStmtList::add);
+        function.setStmtList(newStmtList);
+        function.getNestedFunctionList().forEach(this::instrumentNested);
+    }
+
+    /** instrument the statements of the script */
+    public void instrument(Script script) {
+        Optional.ofNullable(script).orElseThrow(NullPointerException::new);
+        ast.List<Stmt> newStmtList = new ast.List<>();
+        getPrologue().forEach(newStmtList::add);
+        instrumentStmtList(script.getStmtList()).forEach(newStmtList::add);
+        getFlushStmtList().forEach(newStmtList::add);
+        script.setStmtList(newStmtList);
+    }
+
+    private void instrumentNested(ast.Function function) {
+        ast.List<Stmt> newStmtList = new ast.List<>();
+        instrumentStmtList(function.getStmtList()).forEach(newStmtList::add);
+        function.setStmtList(newStmtList);
+        function.getNestedFunctionList().forEach(this::instrumentNested);
+    }
+
+    private java.util.List<Stmt> instrumentStmtList(ast.List<Stmt> stmtList) {
+        java.util.List<Stmt> statements = new ArrayList<>(stmtList.getNumChild());
+        for (Stmt statement : stmtList) statements.add(statement);
+
+        java.util.List<Stmt> retList = new ArrayList<>();
+        for (Stmt statement : statements) retList.addAll(this.transform(statement));
+        return retList;
+    }
+
+    /*
+     * control transfer statements are recorded before they execute, other statements after. the header of a for
+     * loop has to remain a single assignment, its execution being recorded by the loop itself.
+     */
+    @Override
+    public java.util.List<Stmt> transform(Stmt statement) {
+        if (statement instanceof AssignStmt && statement.getParent() instanceof ForStmt) {
+            return super.transform(statement);
+        }
+
+        int joinPointId = joinPointTable.size() + 1;
+        String description = String.format("%s:%d", statement.getClass().getSimpleName(), statement.getStartLine());
+        joinPointTable.add((source == null) ? description : String.format("%s:%s", source, description));
+
+        java.util.List<Stmt> retList = new LinkedList<>();
+        if (statement instanceof ReturnStmt || statement instanceof BreakStmt || statement instanceof ContinueStmt) {
+            retList.addAll(getRecordStmtList(joinPointId));
+            if (statement instanceof ReturnStmt) retList.addAll(getFlushStmtList());
+            retList.addAll(super.transform(statement));
+        } else {
+            retList.addAll(super.transform(statement));
+            retList.addAll(getRecordStmtList(joinPointId));
+        }
+        return Collections.unmodifiableList(retList);
+    }
+
+    /* AM_TRACE_BUF = zeros(capacity, 2); AM_TRACE_N = 0; */
+    private java.util.List<Stmt> getPrologue() {
+        java.util.List<Stmt> retList = new LinkedList<>();
+        retList.add(new AssignStmtBuilder()
+                .setLHS(BUFFER_NAME)
+                .setRHS(new ParameterizedExprBuilder()
+                        .setTarget("zeros")
+                        .addParameter(capacity)
+                        .addParameter(2)
+                        .build())
+                .setOutputSuppressed(true)
+                .build());
+        retList.add(new AssignStmtBuilder()
+                .setLHS(COUNT_NAME)
+                .setRHS(new IntLiteralExprBuilder().setValue(0).build())
+                .setOutputSuppressed(true)
+                .build());
+        return retList;
+    }
+
+    /*
+     * AM_TRACE_N = AM_TRACE_N + 1;
+     * AM_TRACE_BUF(AM_TRACE_N, 1) = id;
+     * AM_TRACE_BUF(AM_TRACE_N, 2) = payload;
+     * if AM_TRACE_N == capacity, <flush>, end
+     */
+    private java.util.List<Stmt> getRecordStmtList(int joinPointId) {
+        java.util.List<Stmt> retList = new LinkedList<>();
+        retList.add(new AssignStmtBuilder()
+                .setLHS(COUNT_NAME)
+                .setRHS(new PlusExpr(
+                        new NameExpr(new Name(COUNT_NAME)),
+                        new IntLiteralExprBuilder().setValue(1).build()
+                ))
+                .setOutputSuppressed(true)
+                .build());
+        retList.add(new AssignStmtBuilder()
+                .setLHS(new ParameterizedExprBuilder()
+                        .setTarget(BUFFER_NAME)
+                        .addParameter(COUNT_NAME)
+                        .addParameter(1)
+                        .build())
+                .setRHS(new IntLiteralExprBuilder().setValue(joinPointId).build())
+                .setOutputSuppressed(true)
+                .build());
+        retList.add(new AssignStmtBuilder()
+                .setLHS(new ParameterizedExprBuilder()
+                        .setTarget(BUFFER_NAME)
+                        .addParameter(COUNT_NAME)
+                        .addParameter(2)
+                        .build())
+                .setRHS(payloadExpr.treeCopy())
+                .setOutputSuppressed(true)
+                .build());
+
+        IfBlock flushIfBlock = new IfBlock();
+        flushIfBlock.setCondition(new EQExpr(
+                new NameExpr(new Name(COUNT_NAME)),
+                new IntLiteralExprBuilder().setValue(capacity).build()
+        ));
+        getFlushStmtList().forEach(flushIfBlock::addStmt);
+        ast.List<IfBlock> ifBlockList = new ast.List<>();
+        ifBlockList.add(flushIfBlock);
+        retList.add(new IfStmt(ifBlockList, new Opt<>()));
+        return retList;
+    }
+
+    /* fprintf('%d %.17g\n', AM_TRACE_BUF(1:AM_TRACE_N, :).'); AM_TRACE_N = 0; */
+    private java.util.List<Stmt> getFlushStmtList() {
+        java.util.List<Stmt> retList = new LinkedList<>();
+        ParameterizedExpr pendingRecordExpr = new ParameterizedExprBuilder()
+                .setTarget(BUFFER_NAME)
+                .addParameter(new RangeExpr(
+                        new IntLiteralExprBuilder().setValue(1).build(),
+                        new Opt<>(),
+                        new NameExpr(new Name(COUNT_NAME))
+                ))
+                .addParameter(new ColonExpr())
+                .build();
+        ExprStmt printStmt = new ExprStmt(new ParameterizedExprBuilder()
+                .setTarget("fprintf")
+                .addParameter(new StringLiteralExpr("%d %.17g\\n"))
+                .addParameter(new ArrayTransposeExpr(pendingRecordExpr))
+                .build());
+        printStmt.setOutputSuppressed(true);
+        retList.add(printStmt);
+        retList.add(new AssignStmtBuilder()
+                .setLHS(COUNT_NAME)
+                .setRHS(new IntLiteralExprBuilder().setValue(0).build())
+                .setOutputSuppressed(true)
+                .build());
+        return retList;
+    }
+}
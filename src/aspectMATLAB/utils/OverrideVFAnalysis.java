@@ -37,6 +37,21 @@ public class OverrideVFAnalysis extends VFFlowInsensitiveAnalysis {
         super(node);
     }
 
+    /**
+     * perform a kind analysis to AST, using default function or script query handler
+     * @param node AST to perform kind analysis
+     * @return the analyzed kind analysis
+     * @throws NullPointerException if {@code node} is {@code null}
+     */
+    @SuppressWarnings("deprecation")
+    public static OverrideVFAnalysis analyzeKinds(ASTNode node) {
+        OverrideVFAnalysis kindAnalysis = new OverrideVFAnalysis(
+                Optional.ofNullable(node).orElseThrow(NullPointerException::new)
+        );
+        kindAnalysis.analyze();
+        return kindAnalysis;
+    }
+
     /**
      * override result in kind analysis
      * @param name AST node of the name to override result
@@ -20,6 +20,18 @@ public final class AMTempVarGenerator implements Iterator<String> {
         return String.format("%s%d", prefix, indexStream.next());
     }
 
+    /**
+     * @param name variable name
+     * @return {@code true} if the name has the form of the names produced by this generator
+     */
+    public boolean isGenerated(String name) {
+        if (name == null || name.length() <= prefix.length() || !name.startsWith(prefix)) return false;
+        for (int index = prefix.length(); index < name.length(); index++) {
+            if (!Character.isDigit(name.charAt(index))) return false;
+        }
+        return true;
+    }
+
     @Override
     public boolean hasNext() {
         return indexStream.hasNext();
@@ -0,0 +1,174 @@
+package aspectMATLAB.serialization.deserializers;
+
+import aspectMATLAB.Main;
+import aspectMATLAB.driver.DiagnosticsCollector;
+import aspectMATLAB.serialization.ASTNodeSchema;
+import aspectMATLAB.serialization.decorators.ColumnNumberDecorator;
+import aspectMATLAB.serialization.decorators.LineNumberDecorator;
+import aspectMATLAB.serialization.decorators.OutputSupressedDecorator;
+import aspectMATLAB.serialization.serializers.BinarySerializer;
+import aspectMATLAB.serialization.serializers.JSONSerializer;
+import aspectMATLAB.serialization.serializers.XMLSerializer;
+import ast.*;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** a serialized tree has to deserialize into a tree equal to the original one, for every serialized form */
+public class RoundTripTest {
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    /* numeric and imaginary literals, an if without else, ranges with and without increment, unsuppressed output */
+    private static CompilationUnits parseUnits() throws IOException {
+        File file = new File(folder.getRoot(), "literals.m");
+        Files.write(file.toPath(), String.join("\n",
+                "function y = f(x)",
+                "    y = x + 2i;",
+                "    z = 2.5e3;",
+                "    w = 1.5i;",
+                "    r = 1:3",
+                "    s = 1:2:9;",
+                "    if x > 0, y = 0; end",
+                "end",
+                ""
+        ).getBytes(StandardCharsets.UTF_8));
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+        CompilationUnits compilationUnits = Main.parse(file.getPath(), diagnostics).orElse(null);
+        assertTrue(diagnostics.isOk());
+        return compilationUnits;
+    }
+
+    private static void assertSameTree(ASTNode<?> expected, ASTNode<?> actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getStartLine(), actual.getStartLine());
+        assertEquals(expected.getStartColumn(), actual.getStartColumn());
+        if (expected instanceof Stmt) {
+            assertEquals(((Stmt) expected).isOutputSuppressed(), ((Stmt) actual).isOutputSuppressed());
+        }
+        for (ASTNodeSchema.Token token : ASTNodeSchema.getTokens(expected.getClass())) {
+            assertEquals(token.getName(), token.get(expected), token.get(actual));
+        }
+        assertEquals(expected.getNumChild(), actual.getNumChild());
+        for (int index = 0; index < expected.getNumChild(); index++) {
+            assertSameTree(expected.getChild(index), actual.getChild(index));
+        }
+    }
+
+    private static <T extends ASTNode> java.util.List<T> collect(ASTNode<?> astNode, Class<T> nodeClass) {
+        java.util.List<T> collected = new ArrayList<>();
+        if (nodeClass.isInstance(astNode)) collected.add(nodeClass.cast(astNode));
+        for (int index = 0; index < astNode.getNumChild(); index++) {
+            collected.addAll(collect(astNode.getChild(index), nodeClass));
+        }
+        return collected;
+    }
+
+    private static void assertLiteralsAndOptionalChildren(ASTNode<?> astNode) {
+        java.util.List<IntLiteralExpr> intLiterals = collect(astNode, IntLiteralExpr.class);
+        assertTrue(intLiterals.stream().anyMatch(literal -> literal.getValue().isImaginary()));
+        assertTrue(intLiterals.stream().anyMatch(literal -> !literal.getValue().isImaginary()));
+        java.util.List<FPLiteralExpr> fpLiterals = collect(astNode, FPLiteralExpr.class);
+        assertTrue(fpLiterals.stream().anyMatch(literal -> literal.getValue().isImaginary()));
+        assertTrue(fpLiterals.stream().anyMatch(literal -> !literal.getValue().isImaginary()));
+
+        java.util.List<RangeExpr> rangeExprs = collect(astNode, RangeExpr.class);
+        assertEquals(2, rangeExprs.size());
+        assertFalse(rangeExprs.get(0).hasIncr());
+        assertTrue(rangeExprs.get(1).hasIncr());
+        java.util.List<IfStmt> ifStmts = collect(astNode, IfStmt.class);
+        assertEquals(1, ifStmts.size());
+        assertFalse(ifStmts.get(0).hasElseBlock());
+    }
+
+    private static void assertRoundTrip(CompilationUnits expected, ASTNode actual) {
+        assertTrue(actual instanceof CompilationUnits);
+        assertSameTree(expected, actual);
+        assertLiteralsAndOptionalChildren(actual);
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new BinarySerializer().serialize(compilationUnits, outputStream);
+        ASTNode deserialized = new BinaryDeserializer()
+                .deserialize(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertRoundTrip(compilationUnits, deserialized);
+    }
+
+    @Test
+    public void binaryRoundTripWithDecorations() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        String serialized = new BinarySerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .serializeAsString(compilationUnits);
+        ASTNode deserialized = new BinaryDeserializer()
+                .appendDecorator(new ColumnNumberDecorator())
+                .appendDecorator(new LineNumberDecorator())
+                .appendDecorator(new OutputSupressedDecorator())
+                .deserializeFromString(serialized);
+        assertRoundTrip(compilationUnits, deserialized);
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new JSONSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .serialize(compilationUnits, outputStream);
+        ASTNode deserialized = new JSONDeserializer()
+                .appendDecorator(new ColumnNumberDecorator())
+                .appendDecorator(new LineNumberDecorator())
+                .appendDecorator(new OutputSupressedDecorator())
+                .deserialize(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertRoundTrip(compilationUnits, deserialized);
+    }
+
+    @Test
+    public void xmlRoundTrip() throws Exception {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new XMLSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator())
+                .setIndentation("    ")
+                .serialize(compilationUnits, outputStream);
+        ASTNode deserialized = new XMLDeserializer()
+                .appendDecorator(new ColumnNumberDecorator())
+                .appendDecorator(new LineNumberDecorator())
+                .appendDecorator(new OutputSupressedDecorator())
+                .deserialize(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertRoundTrip(compilationUnits, deserialized);
+    }
+
+    /* decorations of unknown tags are skipped, the tree is rebuilt regardless */
+    @Test
+    public void jsonRoundTripSkipsUnknownDecorations() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        String serialized = new JSONSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .serializeAsString(compilationUnits);
+        ASTNode deserialized = new JSONDeserializer().deserializeFromString(serialized);
+        assertTrue(deserialized instanceof CompilationUnits);
+        assertLiteralsAndOptionalChildren(deserialized);
+    }
+}
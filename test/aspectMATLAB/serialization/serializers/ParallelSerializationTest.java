@@ -0,0 +1,134 @@
+package aspectMATLAB.serialization.serializers;
+
+import aspectMATLAB.Main;
+import aspectMATLAB.driver.DiagnosticsCollector;
+import aspectMATLAB.serialization.decorators.ColumnNumberDecorator;
+import aspectMATLAB.serialization.decorators.LineNumberDecorator;
+import aspectMATLAB.serialization.decorators.OutputSupressedDecorator;
+import ast.CompilationUnits;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** the parallel serializers have to produce the same output as the sequential ones */
+public class ParallelSerializationTest {
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static ForkJoinPool forkJoinPool;
+
+    @BeforeClass
+    public static void startPool() {
+        forkJoinPool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        forkJoinPool.shutdownNow();
+    }
+
+    /* a function file of several functions followed by a script, i.e. forkable programs and forkable functions */
+    private static CompilationUnits parseUnits() throws IOException {
+        CompilationUnits compilationUnits = parse("functions.m", String.join("\n",
+                "function y = f(x)",
+                "    y = x + 1i;",
+                "end",
+                "function z = g(x)",
+                "    z = f(x) * 2.5;",
+                "end",
+                "function h()",
+                "    disp('h');",
+                "end",
+                ""
+        ));
+        CompilationUnits script = parse("script.m", String.join("\n",
+                "a = 3;",
+                "b = a .^ 2",
+                "if b > 4, disp(b); end",
+                ""
+        ));
+        compilationUnits.addProgram(script.getProgram(0).treeCopy());
+        assertTrue(compilationUnits.getNumProgram() > 1);
+        return compilationUnits;
+    }
+
+    private static CompilationUnits parse(String fileName, String source) throws IOException {
+        File file = new File(folder.getRoot(), fileName);
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        DiagnosticsCollector diagnostics = new DiagnosticsCollector();
+        CompilationUnits compilationUnits = Main.parse(file.getPath(), diagnostics).orElse(null);
+        assertTrue(diagnostics.isOk());
+        return compilationUnits;
+    }
+
+    private static JSONSerializer newJSONSerializer() {
+        return new JSONSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator());
+    }
+
+    private static XMLSerializer newXMLSerializer() {
+        return new XMLSerializer()
+                .appendNumberDecorator(new ColumnNumberDecorator())
+                .appendNumberDecorator(new LineNumberDecorator())
+                .appendBooleanDecorator(new OutputSupressedDecorator());
+    }
+
+    @Test
+    public void jsonTreeMatchesSequential() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        String sequential = newJSONSerializer().serialize(compilationUnits).toJSONString();
+        String parallel = newJSONSerializer()
+                .setForkJoinPool(forkJoinPool)
+                .serialize(compilationUnits)
+                .toJSONString();
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void jsonStreamMatchesSequential() throws IOException {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        newJSONSerializer().serialize(compilationUnits, sequential);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        newJSONSerializer().setForkJoinPool(forkJoinPool).serialize(compilationUnits, parallel);
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    public void xmlStreamMatchesSequential() throws Exception {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        newXMLSerializer().serialize(compilationUnits, sequential);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        newXMLSerializer().setForkJoinPool(forkJoinPool).serialize(compilationUnits, parallel);
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    public void indentedXMLStreamMatchesSequential() throws Exception {
+        CompilationUnits compilationUnits = parseUnits();
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        newXMLSerializer().setIndentation("    ").serialize(compilationUnits, sequential);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        newXMLSerializer()
+                .setIndentation("    ")
+                .setForkJoinPool(forkJoinPool)
+                .serialize(compilationUnits, parallel);
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+}